@@ -27,6 +27,8 @@ import { LinearGradient } from 'expo-linear-gradient';
 import * as FileSystem from 'expo-file-system';
 import { format } from 'date-fns';
 import recordingService from './components/RecordingService';
+import CameraStream, { CameraStreamView } from './CameraStream';
+import CameraHealth from './CameraHealth';
 
 const { width } = Dimensions.get('window');
 const CARD_WIDTH = width * 0.85;
@@ -176,6 +178,15 @@ const App = () => {
 
   // Function to check camera status
   const checkCameraStatus = useCallback(async (camera) => {
+    if (CameraHealth.isAvailable()) {
+      try {
+        const [result] = await CameraHealth.check([camera.ip]);
+        return CameraHealth.toDisplayStatus(result.status);
+      } catch (error) {
+        return 'Offline';
+      }
+    }
+
     try {
       // Format IP properly for WebSocket URL
       let formattedIP = camera.ip;
@@ -217,12 +228,25 @@ const App = () => {
     setRefreshing(true);
     
     try {
-      const updatedCameras = await Promise.all(
-        currentUser.cameras.map(async (camera) => {
-          const status = await checkCameraStatus(camera);
-          return { ...camera, status };
-        })
-      );
+      let updatedCameras;
+      if (CameraHealth.isAvailable()) {
+        // One batched native check; pull-to-refresh skips the cache
+        const results = await CameraHealth.check(
+          currentUser.cameras.map((camera) => camera.ip),
+          { force: true }
+        );
+        updatedCameras = currentUser.cameras.map((camera, index) => ({
+          ...camera,
+          status: CameraHealth.toDisplayStatus(results[index].status),
+        }));
+      } else {
+        updatedCameras = await Promise.all(
+          currentUser.cameras.map(async (camera) => {
+            const status = await checkCameraStatus(camera);
+            return { ...camera, status };
+          })
+        );
+      }
 
       const updatedUser = { ...currentUser, cameras: updatedCameras };
       setCurrentUser(updatedUser);
@@ -239,6 +263,27 @@ const App = () => {
     }
   }, [currentUser, users, checkCameraStatus]);
 
+  // Keep card statuses in step with native health transitions
+  useEffect(() => {
+    return CameraHealth.onStatusChange(({ cameraId, status }) => {
+      const displayStatus = CameraHealth.toDisplayStatus(status);
+      setCurrentUser((prevUser) => {
+        if (!prevUser || !prevUser.cameras) {
+          return prevUser;
+        }
+        if (!prevUser.cameras.some((camera) => camera.ip === cameraId && camera.status !== displayStatus)) {
+          return prevUser;
+        }
+        return {
+          ...prevUser,
+          cameras: prevUser.cameras.map((camera) =>
+            camera.ip === cameraId ? { ...camera, status: displayStatus } : camera
+          ),
+        };
+      });
+    });
+  }, []);
+
   // Handle pull-to-refresh
   const onRefresh = useCallback(() => {
     refreshCameraStatuses();
@@ -274,6 +319,8 @@ const App = () => {
 // Add after other useCallback functions
 const fetchPreviewFrame = useCallback(async (camera) => {
   if (camera.status !== 'Online') return null;
+  // Cards render live through the native stream hub instead
+  if (CameraStreamView) return null;
   
   try {
     // Format IP properly for WebSocket URL
@@ -483,7 +530,11 @@ const handleAddCamera = async (newCamera) => {
         }
       }
       
-      setSocketUrl(formattedIP);
+      // The native stream renders frames itself; the JS socket is only the
+      // fallback where it is unavailable
+      if (!CameraStream.isAvailable()) {
+        setSocketUrl(formattedIP);
+      }
       
       // Setup HTML template for WebView
       const htmlTemplate = `
@@ -684,6 +735,90 @@ const handleAddCamera = async (newCamera) => {
     };
   }, [processNextFrame, isConnected]);
 
+  const applyVideoConfig = (message) => {
+    console.log('Received video config:', message);
+    setVideoConfig(message);
+
+    if (message.width && message.height) {
+      const pixels = message.width * message.height;
+      if (pixels > 1000000) {
+        setFrameRate(15);
+      } else if (pixels > 500000) {
+        setFrameRate(20);
+      } else {
+        setFrameRate(30);
+      }
+    }
+  };
+
+  // Native stream for the selected camera; frames go straight to
+  // CameraStreamView, so only state and control messages reach JS
+  const selectedCameraIP = selectedCamera ? selectedCamera.ip : null;
+  useEffect(() => {
+    if (!selectedCameraIP || !CameraStream.isAvailable()) {
+      return undefined;
+    }
+
+    const setStatus = (status) => {
+      setSelectedCamera((prevCamera) => (prevCamera ? { ...prevCamera, status } : prevCamera));
+    };
+
+    // The native hub keeps retrying while we are subscribed; alert on the
+    // first failure only, until the stream opens again
+    let failureAlerted = false;
+
+    const unsubscribeState = CameraStream.onStateChange(({ cameraId, state }) => {
+      if (cameraId !== selectedCameraIP) {
+        return;
+      }
+      if (state === 'open') {
+        console.log('Camera stream opened');
+        failureAlerted = false;
+        setIsConnected(true);
+        setStatus('Online');
+        CameraStream.send(cameraId, { command: 'setVideoQuality', quality: 'medium' });
+      } else if (state === 'closed') {
+        console.log('Camera stream closed');
+        setIsConnected(false);
+        setStatus('Offline');
+        setVideoConfig(null);
+      } else if (state === 'error') {
+        setIsConnected(false);
+        if (!failureAlerted) {
+          failureAlerted = true;
+          Alert.alert('Connection Error', 'Failed to connect to the camera. Please check the IP address and try again.');
+          setStatus('Offline');
+        } else {
+          setStatus('Reconnecting...');
+        }
+      }
+    });
+
+    const unsubscribeMessage = CameraStream.onMessage(({ cameraId, data }) => {
+      if (cameraId !== selectedCameraIP) {
+        return;
+      }
+      try {
+        const message = JSON.parse(data);
+        if (message.type === 'config') {
+          applyVideoConfig(message);
+        }
+      } catch (error) {
+        console.error('Error processing camera message:', error);
+      }
+    });
+
+    CameraStream.connect(selectedCameraIP, selectedCameraIP).catch((error) => {
+      console.error('Failed to open camera stream:', error);
+    });
+
+    return () => {
+      unsubscribeState();
+      unsubscribeMessage();
+      CameraStream.disconnect(selectedCameraIP);
+    };
+  }, [selectedCameraIP]);
+
   // WebSocket connection - removed auto-reconnect
   const { sendMessage, readyState } = useWebSocket(socketUrl, {
     onOpen: () => {
@@ -719,19 +854,7 @@ const handleAddCamera = async (newCamera) => {
         const message = JSON.parse(event.data);
 
         if (message.type === 'config') {
-          console.log('Received video config:', message);
-          setVideoConfig(message);
-
-          if (message.width && message.height) {
-            const pixels = message.width * message.height;
-            if (pixels > 1000000) {
-              setFrameRate(15);
-            } else if (pixels > 500000) {
-              setFrameRate(20);
-            } else {
-              setFrameRate(30);
-            }
-          }
+          applyVideoConfig(message);
         } else if (message.type === 'video') {
           frameQueue.current.push(message.data);
 
@@ -809,7 +932,14 @@ const renderCameraCard = ({ item: camera, index }) => {
         activeOpacity={0.9}
       >
         <View style={styles.cardContainer}>
-          {previewFrame ? (
+          {CameraStreamView && camera.status === 'Online' ? (
+            <CameraStreamView
+              cameraId={camera.ip}
+              ip={camera.ip}
+              resizeMode="cover"
+              style={styles.previewImage}
+            />
+          ) : previewFrame ? (
             <Image
               source={{ uri: `data:image/jpeg;base64,${previewFrame}` }}
               style={styles.previewImage}
@@ -0,0 +1,69 @@
+import { NativeModules, NativeEventEmitter, Platform } from 'react-native';
+
+// Extract the CameraDiscovery and CameraPresence modules, if available
+const { CameraDiscovery, CameraPresence } = NativeModules;
+const discoveryEventEmitter = CameraDiscovery ? new NativeEventEmitter(CameraDiscovery) : null;
+const presenceEventEmitter = CameraPresence ? new NativeEventEmitter(CameraPresence) : null;
+
+const CameraDiscoveryModule = {
+  isAvailable: () => Platform.OS === 'android' && !!CameraDiscovery,
+
+  // Sweep the current subnet for cameras answering a WebSocket upgrade on
+  // ws://<ip>/ws. onCameraFound({ ip, port }) fires as each camera is found;
+  // resolves with { probed, found, cancelled, durationMs }.
+  // options: { port, path, hosts, concurrency, connectTimeoutMs, probeTimeoutMs }
+  discover: async (onCameraFound, options = {}) => {
+    if (!CameraDiscoveryModule.isAvailable()) {
+      throw new Error('Camera discovery is not available on this platform');
+    }
+
+    const subscription = onCameraFound
+      ? discoveryEventEmitter.addListener('CameraDiscoveryHit', onCameraFound)
+      : null;
+    try {
+      return await CameraDiscovery.startDiscovery(options);
+    } finally {
+      if (subscription) {
+        subscription.remove();
+      }
+    }
+  },
+
+  stop: () => {
+    if (CameraDiscoveryModule.isAvailable()) {
+      CameraDiscovery.stopDiscovery();
+    }
+  },
+
+  // Passive discovery: listen for mDNS/SSDP announcements and keep a TTL
+  // cache of camera hosts natively. onChange(event, camera) is called with
+  // 'found' or 'lost'. options.nameFilter overrides the default name match
+  // (['cam', 'esp32']; [] accepts every host). Returns an unsubscribe function.
+  listenForAnnouncements: (onChange, options = {}) => {
+    if (Platform.OS !== 'android' || !CameraPresence) {
+      return () => {};
+    }
+
+    const found = presenceEventEmitter.addListener('CameraPresenceFound', camera => onChange('found', camera));
+    const lost = presenceEventEmitter.addListener('CameraPresenceLost', camera => onChange('lost', camera));
+    CameraPresence.startListening(options).catch(error => {
+      console.error('Failed to listen for camera announcements:', error);
+    });
+
+    return () => {
+      found.remove();
+      lost.remove();
+      CameraPresence.stopListening();
+    };
+  },
+
+  // Cameras currently in the announcement cache: [{ ip, name, port, source, expiresAt }]
+  getAnnouncedCameras: async () => {
+    if (Platform.OS !== 'android' || !CameraPresence) {
+      return [];
+    }
+    return CameraPresence.getCameras();
+  },
+};
+
+export default CameraDiscoveryModule;
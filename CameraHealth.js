@@ -0,0 +1,46 @@
+import { NativeModules, NativeEventEmitter, Platform } from 'react-native';
+
+// Extract the CameraHealth module, if available
+const { CameraHealth } = NativeModules;
+const healthEventEmitter = CameraHealth ? new NativeEventEmitter(CameraHealth) : null;
+
+// Native camera health checks. Cameras with a live native stream count as
+// online without a probe; the rest are probed together with bounded
+// parallelism. Results are cached, and offline cameras are re-probed with
+// growing backoff unless force is set.
+const CameraHealthModule = {
+  isAvailable: () => Platform.OS === 'android' && !!CameraHealth,
+
+  // Resolves with [{ cameraId, status, source, checkedAt, failures }] in the
+  // order of ips, where status is 'online', 'offline' or 'unknown'.
+  // options: { force }
+  check: async (ips, options = {}) => {
+    if (!CameraHealthModule.isAvailable()) {
+      throw new Error('Native camera health checks are not available on this platform');
+    }
+    return CameraHealth.checkCameras(ips, options);
+  },
+
+  // Cached statuses for every camera seen so far, without probing
+  getStatuses: async () => {
+    if (!CameraHealthModule.isAvailable()) {
+      return [];
+    }
+    return CameraHealth.getStatuses();
+  },
+
+  // onChange({ cameraId, status, previous, source, checkedAt, failures }) on
+  // every online/offline transition. Returns an unsubscribe function.
+  onStatusChange: (onChange) => {
+    if (!healthEventEmitter) {
+      return () => {};
+    }
+    const subscription = healthEventEmitter.addListener('CameraHealthChanged', onChange);
+    return () => subscription.remove();
+  },
+
+  // Maps a native status to the 'Online' / 'Offline' labels the UI uses
+  toDisplayStatus: (status) => (status === 'online' ? 'Online' : 'Offline'),
+};
+
+export default CameraHealthModule;
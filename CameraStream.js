@@ -0,0 +1,71 @@
+import { NativeModules, NativeEventEmitter, Platform, requireNativeComponent } from 'react-native';
+
+// Extract the CameraStream module, if available
+const { CameraStream } = NativeModules;
+const streamEventEmitter = CameraStream ? new NativeEventEmitter(CameraStream) : null;
+
+// Native renderer: <CameraStreamView cameraId={id} ip={ip}
+// resizeMode="contain" | "cover" />. With ip the view subscribes to the
+// camera itself; without it, it shows a stream opened with connect(). null
+// where unavailable.
+export const CameraStreamView = CameraStream ? requireNativeComponent('CameraStreamView') : null;
+
+// Native camera streams. The WebSocket to ws://<ip>/ws and all frame parsing
+// live on the native side; JS only sees state changes, control messages and
+// once-a-second stats for each camera.
+const CameraStreamModule = {
+  isAvailable: () => Platform.OS === 'android' && !!CameraStream,
+
+  // Subscribes to cameraId's shared native connection, opening it if needed.
+  // ip may include ws:// and /ws. Each connect must be balanced by a
+  // disconnect; the socket closes shortly after the last subscriber leaves.
+  connect: async (cameraId, ip) => {
+    if (!CameraStreamModule.isAvailable()) {
+      throw new Error('Native camera streams are not available on this platform');
+    }
+    return CameraStream.connect(cameraId, ip);
+  },
+
+  disconnect: (cameraId) => {
+    if (CameraStreamModule.isAvailable()) {
+      CameraStream.disconnect(cameraId);
+    }
+  },
+
+  // Sends a control command (object or string) to the camera. Resolves with
+  // false if the stream is not open.
+  send: async (cameraId, command) => {
+    if (!CameraStreamModule.isAvailable()) {
+      return false;
+    }
+    const text = typeof command === 'string' ? command : JSON.stringify(command);
+    return CameraStream.send(cameraId, text);
+  },
+
+  // onState({ cameraId, state, message }) where state is one of
+  // 'connecting', 'open', 'closed', 'error'. Returns an unsubscribe function.
+  onStateChange: (onState) => subscribe('CameraStreamState', onState),
+
+  // onMessage({ cameraId, data }) for every non-video message; data is the
+  // raw text as sent by the camera. Returns an unsubscribe function.
+  onMessage: (onMessage) => subscribe('CameraStreamMessage', onMessage),
+
+  // onStats({ cameraId, state, format, fps, kbps, frames, badFrames,
+  // droppedFrames, subscribers, consumers }) once a second per stream.
+  // format is 'binary' once the camera has switched to binary frames, 'json'
+  // otherwise; droppedFrames counts frames refused by the per-camera memory
+  // cap; subscribers is the number of users sharing the connection;
+  // consumers is [{ name, droppedFrames }] for each native consumer (live
+  // view, recorder). Returns an unsubscribe function.
+  onStats: (onStats) => subscribe('CameraStreamStats', onStats),
+};
+
+const subscribe = (eventName, handler) => {
+  if (!streamEventEmitter) {
+    return () => {};
+  }
+  const subscription = streamEventEmitter.addListener(eventName, handler);
+  return () => subscription.remove();
+};
+
+export default CameraStreamModule;
@@ -0,0 +1,124 @@
+import { NativeModules, NativeEventEmitter, Platform } from 'react-native';
+
+// Extract the NativeRecorder module, if available
+const { NativeRecorder } = NativeModules;
+const recorderEventEmitter = NativeRecorder ? new NativeEventEmitter(NativeRecorder) : null;
+
+// Native recording. The recorder shares the camera's native stream and
+// writes frames straight to MJPEG AVI segments on disk; JS only starts and
+// stops it and observes state, finished segments and stats.
+const NativeRecorderModule = {
+  isAvailable: () => Platform.OS === 'android' && !!NativeRecorder,
+
+  // ip may include ws:// and /ws. options: { directory, filePrefix,
+  // segmentDurationMs, maxSegmentBytes }; directory may be a file:// URI.
+  // Resolves with the recorder status (see getStatus).
+  start: async (cameraId, ip, options = {}) => {
+    if (!NativeRecorderModule.isAvailable()) {
+      throw new Error('Native recording is not available on this platform');
+    }
+    return NativeRecorder.startRecording(cameraId, ip, options);
+  },
+
+  // Resolves with the final status once the last segment is closed, or null
+  // if the camera was not recording
+  stop: async (cameraId) => {
+    if (!NativeRecorderModule.isAvailable()) {
+      return null;
+    }
+    return NativeRecorder.stopRecording(cameraId);
+  },
+
+  // Resolves with { cameraId, state, startTime, frames, bytes, segments,
+  // lastFrameTime, droppedFrames, currentPath, currentFileSize } or null.
+  // state is 'recording', 'stopped' or 'error'; droppedFrames counts frames
+  // lost because the disk fell behind.
+  getStatus: async (cameraId) => {
+    if (!NativeRecorderModule.isAvailable()) {
+      return null;
+    }
+    return NativeRecorder.getStatus(cameraId);
+  },
+
+  getStatuses: async () => {
+    if (!NativeRecorderModule.isAvailable()) {
+      return [];
+    }
+    return NativeRecorder.getStatuses();
+  },
+
+  // Saves the frame that was showing at timestamp (ms) in the segment at
+  // path as a JPEG. Resolves with { uri, timestamp, frame }, timestamp being
+  // the frame's own time. Uses the segment's frame index, so it costs one
+  // lookup and one read however long the segment is.
+  extractFrame: async (path, timestamp) => {
+    if (!NativeRecorderModule.isAvailable()) {
+      throw new Error('Native recording is not available on this platform');
+    }
+    return NativeRecorder.extractFrame(path, timestamp);
+  },
+
+  // Looks up what cameraId recorded at timestamp (ms) in the native time
+  // index. Resolves with { cameraId, path, indexPath, startTime, endTime,
+  // frames, bytes, frame, frameOffset, frameLength, frameTimestamp }, or null
+  // if nothing was recorded then.
+  findRecording: async (cameraId, timestamp) => {
+    if (!NativeRecorderModule.isAvailable()) {
+      return null;
+    }
+    return NativeRecorder.findRecording(cameraId, timestamp);
+  },
+
+  // Segments overlapping [from, to] (ms), oldest first, for cameraId or for
+  // every camera when cameraId is null. Each is shaped like onSegment's.
+  listRecordings: async (cameraId, from, to) => {
+    if (!NativeRecorderModule.isAvailable()) {
+      return [];
+    }
+    return NativeRecorder.listRecordings(cameraId, from, to);
+  },
+
+  // Segments that were still open when the app last died, repaired and
+  // indexed in the background at startup, plus finished ones never passed
+  // to markSaved. Resolves once that is done; each segment (shaped like
+  // onSegment's) is returned only once per run.
+  getRecoveredSegments: async () => {
+    if (!NativeRecorderModule.isAvailable()) {
+      return [];
+    }
+    return NativeRecorder.getRecoveredSegments();
+  },
+
+  // Tells the recorder the segment at path has been saved to the album.
+  // Until then it is kept and returned by getRecoveredSegments after a
+  // restart.
+  markSaved: async (path) => {
+    if (!NativeRecorderModule.isAvailable()) {
+      return;
+    }
+    return NativeRecorder.markSaved(path);
+  },
+
+  // onState({ cameraId, state, message }). Returns an unsubscribe function.
+  onStateChange: (onState) => subscribe('NativeRecorderState', onState),
+
+  // onSegment({ cameraId, path, indexPath, startTime, endTime, frames,
+  // bytes }) each time a segment file is closed and indexed; indexPath is
+  // its frame index. Call markSaved(path) once it is saved. Returns an
+  // unsubscribe function.
+  onSegment: (onSegment) => subscribe('NativeRecorderSegment', onSegment),
+
+  // onStats(status + { fps }) once a second per active recorder. Returns an
+  // unsubscribe function.
+  onStats: (onStats) => subscribe('NativeRecorderStats', onStats),
+};
+
+const subscribe = (eventName, handler) => {
+  if (!recorderEventEmitter) {
+    return () => {};
+  }
+  const subscription = recorderEventEmitter.addListener(eventName, handler);
+  return () => subscription.remove();
+};
+
+export default NativeRecorderModule;
@@ -1,4 +1,4 @@
-import { NativeModules, Platform } from 'react-native';
+import { NativeModules, NativeEventEmitter, Platform } from 'react-native';
 import NetInfo from '@react-native-community/netinfo';
 
 // Check if we're running in bridgeless mode
@@ -8,10 +8,28 @@ console.log('Running in bridgeless mode:', isBridgeless);
 // Extract the WifiScanner module, if available
 const { WifiScanner } = NativeModules;
 
+// Event emitter for pushed scan results (Android native module only)
+const wifiEventEmitter = WifiScanner && !isBridgeless ? new NativeEventEmitter(WifiScanner) : null;
+
+// Current Wi-Fi link as tracked by the native NetworkCallback, or null when
+// the native module is unavailable
+const getNativeLink = async () => {
+  if (Platform.OS !== 'android' || !WifiScanner || isBridgeless) {
+    return null;
+  }
+  try {
+    return await WifiScanner.getCurrentLink();
+  } catch (error) {
+    console.error('Native link snapshot failed:', error);
+    return null;
+  }
+};
+
 // REAL-TIME WiFi implementation
 const WifiScannerModule = {
-  // Get available networks using actual hardware when possible
-  getAvailableNetworks: async () => {
+  // Get available networks using actual hardware when possible.
+  // options.maxAgeMs accepts cached native scan results up to that age.
+  getAvailableNetworks: async (options = {}) => {
     // First try using NetInfo which works in bridgeless mode
     try {
       // Get real network info (works with or without bridge)
@@ -58,7 +76,7 @@ const WifiScannerModule = {
         if (Platform.OS === 'android' && WifiScanner && !isBridgeless) {
           try {
             // Get additional networks from native module
-            const nativeNetworks = await WifiScanner.getAvailableNetworks();
+            const nativeNetworks = await WifiScanner.getAvailableNetworks(options);
             
             // Filter out the current network to avoid duplicates
             const otherNetworks = nativeNetworks.filter(n => n.BSSID !== realWifiNetwork.BSSID);
@@ -78,7 +96,7 @@ const WifiScannerModule = {
       // Fall back to native scanning if no WiFi info from NetInfo
       if (Platform.OS === 'android' && WifiScanner && !isBridgeless) {
         try {
-          return await WifiScanner.getAvailableNetworks();
+          return await WifiScanner.getAvailableNetworks(options);
         } catch (error) {
           console.error('Native WiFi scan failed:', error.message);
           throw new Error('Cannot access WiFi hardware: ' + error.message);
@@ -93,6 +111,65 @@ const WifiScannerModule = {
     }
   },
   
+  // Raw native scan in compact form: { count, SSID[], BSSID[], level[],
+  // frequency[], security[] }, where security is a bitmask of the module's
+  // SECURITY_* constants. Cheaper to marshal than one object per network.
+  getPackedNetworks: async (options = {}) => {
+    if (Platform.OS !== 'android' || !WifiScanner || isBridgeless) {
+      throw new Error('Native WiFi scanning is not available');
+    }
+    return WifiScanner.getAvailableNetworks({ ...options, compact: true });
+  },
+  
+  // Subscribe to pushed scan results. The native side keeps one scan receiver
+  // alive while subscribed and sends only added/changed/removed networks
+  // (keyed by BSSID); the full list is rebuilt here so onNetworks always
+  // receives every visible network. Returns an unsubscribe function.
+  startScanStream: (onNetworks, options = {}) => {
+    if (Platform.OS !== 'android' || !wifiEventEmitter) {
+      return () => {};
+    }
+
+    const networksByBssid = new Map();
+    let lastSeq = 0;
+    let resyncing = false;
+
+    const resync = async () => {
+      resyncing = true;
+      try {
+        const snapshot = await WifiScanner.getScanSnapshot();
+        networksByBssid.clear();
+        snapshot.networks.forEach(n => networksByBssid.set(n.BSSID, n));
+        lastSeq = snapshot.seq;
+        onNetworks([...networksByBssid.values()]);
+      } catch (error) {
+        console.error('Failed to resync WiFi scan snapshot:', error);
+      } finally {
+        resyncing = false;
+      }
+    };
+
+    const subscription = wifiEventEmitter.addListener('WifiScanDelta', (delta) => {
+      if (resyncing) return;
+      if (delta.seq !== lastSeq + 1) {
+        // Missed an update; the snapshot carries the native table as a whole
+        resync();
+        return;
+      }
+      lastSeq = delta.seq;
+      delta.removed.forEach(bssid => networksByBssid.delete(bssid));
+      delta.added.forEach(n => networksByBssid.set(n.BSSID, n));
+      delta.changed.forEach(n => networksByBssid.set(n.BSSID, n));
+      onNetworks([...networksByBssid.values()]);
+    });
+    WifiScanner.startScanStream({ ...options, delta: true });
+
+    return () => {
+      subscription.remove();
+      WifiScanner.stopScanStream();
+    };
+  },
+  
   // Check if WiFi is enabled using real hardware info
   isWifiEnabled: async () => {
     try {
@@ -126,6 +203,21 @@ const WifiScannerModule = {
   // Get details about current connection
   getCurrentConnection: async () => {
     try {
+      // Native link snapshot is an in-memory read, no NetInfo round trip
+      const link = await getNativeLink();
+      if (link) {
+        return link.isConnected ? {
+          ssid: link.SSID,
+          bssid: link.BSSID,
+          ipAddress: link.ipAddress,
+          frequency: link.frequency,
+          linkSpeed: link.linkSpeed,
+          rssi: link.rssi,
+          isConnected: true,
+          timestamp: new Date().toISOString()
+        } : null;
+      }
+
       const netInfo = await NetInfo.fetch();
       if (netInfo.type === 'wifi' && netInfo.details) {
         return {
@@ -142,9 +234,43 @@ const WifiScannerModule = {
     }
   },
   
+  // RSSI trend for one access point (Android native only): ewma, mean,
+  // variance, min, max plus the raw level/timestamp samples. Resolves null
+  // when the AP has not been seen recently.
+  getSignalHistory: async (bssid) => {
+    if (Platform.OS !== 'android' || !WifiScanner || isBridgeless) {
+      return null;
+    }
+    return WifiScanner.getSignalHistory(bssid);
+  },
+  
+  // Per-band channel congestion from the latest scan (Android native only):
+  // { '2.4': { recommendedChannel, channels[], interferenceDbm[], apCount }, '5': ..., '6': ... }
+  analyzeChannels: async (options = {}) => {
+    if (Platform.OS !== 'android' || !WifiScanner || isBridgeless) {
+      return null;
+    }
+    return WifiScanner.analyzeChannels(options);
+  },
+  
+  // Subscribe to native link changes (connect, disconnect, roam, signal).
+  // Returns an unsubscribe function.
+  onLinkChange: (listener) => {
+    if (!wifiEventEmitter) {
+      return () => {};
+    }
+    const subscription = wifiEventEmitter.addListener('WifiLinkChanged', listener);
+    return () => subscription.remove();
+  },
+  
   // Get current WiFi SSID directly from the device
   getCurrentWifiSSID: async () => {
     try {
+      const link = await getNativeLink();
+      if (link && link.isConnected && link.SSID) {
+        return { SSID: link.SSID, BSSID: link.BSSID || '', rssi: link.rssi, available: true };
+      }
+      
       // Try with NetInfo first (most reliable on iOS)
       const netInfo = await NetInfo.fetch();
       if (netInfo.type === 'wifi' && netInfo.details && netInfo.details.ssid) {
@@ -169,7 +295,7 @@ const WifiScannerModule = {
           // Try one more approach - get from scan results if available
           try {
             console.log('Trying to get SSID from scan results...');
-            const networks = await WifiScanner.getAvailableNetworks();
+            const networks = await WifiScanner.getAvailableNetworks({ maxAgeMs: 30000 });
             
             // Find the network marked as current
             const connectedNetwork = networks.find(n => n.isCurrentNetwork);
@@ -0,0 +1,203 @@
+package com.nvr.camera;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// A host announcing itself over mDNS or SSDP, plus the parsers that turn
+// raw datagrams into announcements. ttlMs == 0 means the host said goodbye.
+final class Announcement {
+    static final String SOURCE_MDNS = "mdns";
+    static final String SOURCE_SSDP = "ssdp";
+
+    final String ip;
+    final String name;
+    final int port;
+    final String source;
+    final long ttlMs;
+
+    Announcement(String ip, String name, int port, String source, long ttlMs) {
+        this.ip = ip;
+        this.name = name;
+        this.port = port;
+        this.source = source;
+        this.ttlMs = ttlMs;
+    }
+
+    private static final int TYPE_A = 1;
+    private static final int TYPE_SRV = 33;
+    private static final long DEFAULT_SSDP_MAX_AGE_MS = 1800 * 1000L;
+
+    // mDNS responses: A records give host -> address, SRV records give the
+    // port a host serves on. Queries and malformed packets yield nothing.
+    static List<Announcement> parseMdns(byte[] data, int length) {
+        List<Announcement> result = new ArrayList<>();
+        if (length < 12 || (data[2] & 0x80) == 0) {
+            return result;
+        }
+
+        try {
+            int questions = u16(data, 4);
+            int records = u16(data, 6) + u16(data, 8) + u16(data, 10);
+            int[] offset = {12};
+
+            for (int i = 0; i < questions; i++) {
+                readName(data, length, offset);
+                offset[0] += 4;
+            }
+
+            Map<String, Integer> ports = new HashMap<>();
+            List<String[]> addresses = new ArrayList<>();
+            List<Long> ttls = new ArrayList<>();
+            for (int i = 0; i < records && offset[0] < length; i++) {
+                String name = readName(data, length, offset);
+                int type = u16(data, offset[0]);
+                long ttl = ((long) u16(data, offset[0] + 4) << 16) | u16(data, offset[0] + 6);
+                int rdLength = u16(data, offset[0] + 8);
+                int rdata = offset[0] + 10;
+                if (rdata + rdLength > length) {
+                    break;
+                }
+
+                if (type == TYPE_A && rdLength == 4) {
+                    String ip = (data[rdata] & 0xff) + "." + (data[rdata + 1] & 0xff) + "."
+                        + (data[rdata + 2] & 0xff) + "." + (data[rdata + 3] & 0xff);
+                    addresses.add(new String[]{ip, hostName(name)});
+                    ttls.add(ttl * 1000);
+                } else if (type == TYPE_SRV && rdLength >= 7) {
+                    int[] targetOffset = {rdata + 6};
+                    ports.put(hostName(readName(data, length, targetOffset)), u16(data, rdata + 4));
+                }
+                offset[0] = rdata + rdLength;
+            }
+
+            for (int i = 0; i < addresses.size(); i++) {
+                String[] address = addresses.get(i);
+                Integer port = ports.get(address[1]);
+                result.add(new Announcement(address[0], address[1], port != null ? port : 0, SOURCE_MDNS, ttls.get(i)));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated packet; keep whatever parsed cleanly
+        }
+        return result;
+    }
+
+    // SSDP NOTIFY (ssdp:alive / ssdp:byebye) and M-SEARCH responses. The
+    // host comes from LOCATION, falling back to the sender address.
+    static Announcement parseSsdp(byte[] data, int length, String senderIp) {
+        String text = new String(data, 0, length, StandardCharsets.UTF_8);
+        String[] lines = text.split("\r\n");
+        if (lines.length == 0
+            || !(lines[0].startsWith("NOTIFY") || lines[0].startsWith("HTTP/1.1 200"))) {
+            return null;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toUpperCase(Locale.ROOT),
+                    lines[i].substring(colon + 1).trim());
+            }
+        }
+
+        String ip = senderIp;
+        int port = 0;
+        String location = headers.get("LOCATION");
+        if (location != null) {
+            int hostStart = location.indexOf("://");
+            if (hostStart >= 0) {
+                String rest = location.substring(hostStart + 3);
+                int end = rest.indexOf('/');
+                String hostPort = end >= 0 ? rest.substring(0, end) : rest;
+                int colon = hostPort.lastIndexOf(':');
+                if (colon > 0) {
+                    ip = hostPort.substring(0, colon);
+                    try {
+                        port = Integer.parseInt(hostPort.substring(colon + 1));
+                    } catch (NumberFormatException e) {
+                        port = 0;
+                    }
+                } else {
+                    ip = hostPort;
+                    port = 80;
+                }
+            }
+        }
+
+        String name = headers.get("SERVER");
+        if (name == null) {
+            name = headers.get("USN");
+        }
+
+        if ("ssdp:byebye".equalsIgnoreCase(headers.get("NTS"))) {
+            return new Announcement(ip, name, port, SOURCE_SSDP, 0);
+        }
+
+        long ttlMs = DEFAULT_SSDP_MAX_AGE_MS;
+        String cacheControl = headers.get("CACHE-CONTROL");
+        if (cacheControl != null) {
+            int maxAge = cacheControl.toLowerCase(Locale.ROOT).indexOf("max-age");
+            int equals = maxAge >= 0 ? cacheControl.indexOf('=', maxAge) : -1;
+            if (equals > 0) {
+                try {
+                    ttlMs = Long.parseLong(cacheControl.substring(equals + 1).trim().split("[ ,;]")[0]) * 1000;
+                } catch (NumberFormatException e) {
+                    // Keep the default
+                }
+            }
+        }
+        return new Announcement(ip, name, port, SOURCE_SSDP, ttlMs);
+    }
+
+    // DNS name with compression pointers; offset[0] moves past the name
+    private static String readName(byte[] data, int length, int[] offset) {
+        StringBuilder name = new StringBuilder();
+        int position = offset[0];
+        boolean jumped = false;
+        int jumps = 0;
+
+        while (position < length) {
+            int labelLength = data[position] & 0xff;
+            if (labelLength == 0) {
+                position++;
+                break;
+            }
+            if ((labelLength & 0xc0) == 0xc0) {
+                int pointer = ((labelLength & 0x3f) << 8) | (data[position + 1] & 0xff);
+                if (!jumped) {
+                    offset[0] = position + 2;
+                }
+                jumped = true;
+                if (++jumps > 16) {
+                    throw new IndexOutOfBoundsException("DNS name pointer loop");
+                }
+                position = pointer;
+                continue;
+            }
+            if (name.length() > 0) {
+                name.append('.');
+            }
+            name.append(new String(data, position + 1, labelLength, StandardCharsets.UTF_8));
+            position += labelLength + 1;
+        }
+
+        if (!jumped) {
+            offset[0] = position;
+        }
+        return name.toString();
+    }
+
+    // "esp32-cam.local" -> "esp32-cam"
+    private static String hostName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".local") ? lower.substring(0, lower.length() - 6) : lower;
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+    }
+}
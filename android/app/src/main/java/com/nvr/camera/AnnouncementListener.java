@@ -0,0 +1,141 @@
+package com.nvr.camera;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Listens on the mDNS and SSDP multicast groups, one blocking receiver
+// thread per group, and hands every parsed announcement to the callback.
+// On start it sends one mDNS query and one SSDP M-SEARCH so devices that
+// only announce on boot answer now instead of at their next refresh.
+//
+// Groups are joined and queries sent on the given interface, the Wi-Fi one
+// on a device, rather than whichever interface the OS would pick. Groups,
+// ports and interface are constructor arguments so a loopback harness can
+// stand in for the real network.
+final class AnnouncementListener {
+    static final String MDNS_GROUP = "224.0.0.251";
+    static final int MDNS_PORT = 5353;
+    static final String SSDP_GROUP = "239.255.255.250";
+    static final int SSDP_PORT = 1900;
+
+    interface Callback {
+        void onAnnouncement(Announcement announcement);
+    }
+
+    private static final int MAX_DATAGRAM = 9000;
+
+    // PTR query for _http._tcp.local, the service ESP32 camera firmware registers
+    private static final byte[] MDNS_QUERY = {
+        0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0,
+        5, '_', 'h', 't', 't', 'p', 4, '_', 't', 'c', 'p', 5, 'l', 'o', 'c', 'a', 'l', 0,
+        0, 12, 0, 1,
+    };
+
+    private final String mdnsGroup;
+    private final int mdnsPort;
+    private final String ssdpGroup;
+    private final int ssdpPort;
+    private final NetworkInterface networkInterface;
+    private final Callback callback;
+    private final List<MulticastSocket> sockets = new ArrayList<>();
+    private volatile boolean running = false;
+
+    AnnouncementListener(NetworkInterface networkInterface, Callback callback) {
+        this(MDNS_GROUP, MDNS_PORT, SSDP_GROUP, SSDP_PORT, networkInterface, callback);
+    }
+
+    AnnouncementListener(String mdnsGroup, int mdnsPort, String ssdpGroup, int ssdpPort,
+                         NetworkInterface networkInterface, Callback callback) {
+        this.mdnsGroup = mdnsGroup;
+        this.mdnsPort = mdnsPort;
+        this.ssdpGroup = ssdpGroup;
+        this.ssdpPort = ssdpPort;
+        this.networkInterface = networkInterface;
+        this.callback = callback;
+    }
+
+    synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        running = true;
+        try {
+            MulticastSocket mdns = open(mdnsGroup, mdnsPort);
+            MulticastSocket ssdp = open(ssdpGroup, ssdpPort);
+            listen(mdns, false, "MdnsListener");
+            listen(ssdp, true, "SsdpListener");
+
+            mdns.send(new DatagramPacket(MDNS_QUERY, MDNS_QUERY.length, InetAddress.getByName(mdnsGroup), mdnsPort));
+            byte[] search = ("M-SEARCH * HTTP/1.1\r\n"
+                + "HOST: " + ssdpGroup + ":" + ssdpPort + "\r\n"
+                + "MAN: \"ssdp:discover\"\r\n"
+                + "MX: 2\r\n"
+                + "ST: ssdp:all\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            ssdp.send(new DatagramPacket(search, search.length, InetAddress.getByName(ssdpGroup), ssdpPort));
+        } catch (IOException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    synchronized void stop() {
+        running = false;
+        for (MulticastSocket socket : sockets) {
+            socket.close();
+        }
+        sockets.clear();
+    }
+
+    private MulticastSocket open(String group, int port) throws IOException {
+        MulticastSocket socket = new MulticastSocket(null);
+        sockets.add(socket);
+        socket.setReuseAddress(true);
+        socket.bind(new InetSocketAddress(port));
+        socket.setNetworkInterface(networkInterface);
+        socket.joinGroup(new InetSocketAddress(InetAddress.getByName(group), 0), networkInterface);
+        return socket;
+    }
+
+    private void listen(final MulticastSocket socket, final boolean ssdp, String threadName) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[MAX_DATAGRAM];
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                while (running) {
+                    try {
+                        packet.setLength(buffer.length);
+                        socket.receive(packet);
+                    } catch (SocketException e) {
+                        // Socket closed by stop()
+                        return;
+                    } catch (IOException e) {
+                        continue;
+                    }
+
+                    if (ssdp) {
+                        Announcement announcement = Announcement.parseSsdp(
+                            buffer, packet.getLength(), packet.getAddress().getHostAddress());
+                        if (announcement != null) {
+                            callback.onAnnouncement(announcement);
+                        }
+                    } else {
+                        for (Announcement announcement : Announcement.parseMdns(buffer, packet.getLength())) {
+                            callback.onAnnouncement(announcement);
+                        }
+                    }
+                }
+            }
+        }, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
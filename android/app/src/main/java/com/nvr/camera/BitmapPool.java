@@ -0,0 +1,81 @@
+package com.nvr.camera;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+// Idle mutable bitmaps keyed by their dimensions, for JPEG decodes with
+// inBitmap. Shared by every stream view, so a grid of same-sized cameras
+// cycles through a handful of bitmaps instead of allocating one per frame.
+// Idle bitmaps are capped in total bytes; anything over is recycled.
+public class BitmapPool {
+    private static final long DEFAULT_MAX_IDLE_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_IDLE_PER_SIZE = 4;
+
+    // Guarded by this
+    private final Map<Long, ArrayDeque<Bitmap>> idle = new HashMap<>();
+    private long idleBytes = 0;
+    private long maxIdleBytes = DEFAULT_MAX_IDLE_BYTES;
+
+    public synchronized void setMaxIdleBytes(long bytes) {
+        maxIdleBytes = bytes;
+        if (idleBytes > maxIdleBytes) {
+            clear();
+        }
+    }
+
+    // An idle bitmap of exactly width x height, or null
+    public synchronized Bitmap get(int width, int height) {
+        ArrayDeque<Bitmap> bitmaps = idle.get(key(width, height));
+        Bitmap bitmap = bitmaps != null ? bitmaps.pollFirst() : null;
+        if (bitmap != null) {
+            idleBytes -= bitmap.getAllocationByteCount();
+        }
+        return bitmap;
+    }
+
+    // Takes ownership of bitmap; the caller must not use it afterwards
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || !offer(bitmap)) {
+            bitmap.recycle();
+        }
+    }
+
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> bitmaps : idle.values()) {
+            for (Bitmap bitmap : bitmaps) {
+                bitmap.recycle();
+            }
+        }
+        idle.clear();
+        idleBytes = 0;
+    }
+
+    private synchronized boolean offer(Bitmap bitmap) {
+        int bytes = bitmap.getAllocationByteCount();
+        if (idleBytes + bytes > maxIdleBytes) {
+            return false;
+        }
+        Long key = key(bitmap.getWidth(), bitmap.getHeight());
+        ArrayDeque<Bitmap> bitmaps = idle.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            idle.put(key, bitmaps);
+        }
+        if (bitmaps.size() >= MAX_IDLE_PER_SIZE) {
+            return false;
+        }
+        bitmaps.addFirst(bitmap);
+        idleBytes += bytes;
+        return true;
+    }
+
+    private static Long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+}
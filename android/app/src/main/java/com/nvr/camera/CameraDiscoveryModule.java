@@ -0,0 +1,210 @@
+package com.nvr.camera;
+
+import android.net.LinkAddress;
+import android.net.LinkProperties;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.nvr.wifi.WifiLinkMonitor;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CameraDiscoveryModule extends ReactContextBaseJavaModule {
+    static final String CAMERA_FOUND_EVENT = "CameraDiscoveryHit";
+
+    private static final int DEFAULT_PORT = 80;
+    private static final String DEFAULT_PATH = "/ws";
+    private static final int DEFAULT_CONCURRENCY = 64;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 700;
+    private static final int DEFAULT_PROBE_TIMEOUT_MS = 1000;
+    // Never sweep more than a /24, whatever the netmask says
+    private static final int MIN_PREFIX_LENGTH = 24;
+
+    private final ReactApplicationContext reactContext;
+    private final WifiLinkMonitor linkMonitor;
+    private LanSweeper activeSweep = null;
+
+    public CameraDiscoveryModule(ReactApplicationContext reactContext, WifiLinkMonitor linkMonitor) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.linkMonitor = linkMonitor;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "CameraDiscovery";
+    }
+
+    // Sweeps the current subnet (or options.hosts) for camera WebSocket
+    // endpoints. Each hit is emitted as it is found; the promise resolves
+    // with a summary when the sweep ends.
+    @ReactMethod
+    public void startDiscovery(ReadableMap options, final Promise promise) {
+        try {
+            synchronized (this) {
+                if (activeSweep != null) {
+                    promise.reject("DISCOVERY_IN_PROGRESS", "A camera discovery sweep is already running");
+                    return;
+                }
+            }
+
+            int port = getInt(options, "port", DEFAULT_PORT);
+            String path = DEFAULT_PATH;
+            if (options != null && options.hasKey("path") && !options.isNull("path")) {
+                path = options.getString("path");
+            }
+
+            List<InetSocketAddress> targets = new ArrayList<>();
+            if (options != null && options.hasKey("hosts") && !options.isNull("hosts")) {
+                ReadableArray hosts = options.getArray("hosts");
+                for (int i = 0; i < hosts.size(); i++) {
+                    // Resolved by the sweep, not here on the modules thread
+                    targets.add(InetSocketAddress.createUnresolved(hosts.getString(i), port));
+                }
+            } else {
+                targets = subnetTargets(port);
+                if (targets == null) {
+                    promise.reject("NO_NETWORK", "Not connected to an IPv4 Wi-Fi network");
+                    return;
+                }
+            }
+
+            final long startedAt = System.currentTimeMillis();
+            final List<String> found = new ArrayList<>();
+            final LanSweeper sweep = new LanSweeper(
+                targets,
+                path,
+                getInt(options, "concurrency", DEFAULT_CONCURRENCY),
+                getInt(options, "connectTimeoutMs", DEFAULT_CONNECT_TIMEOUT_MS),
+                getInt(options, "probeTimeoutMs", DEFAULT_PROBE_TIMEOUT_MS),
+                new LanSweeper.Listener() {
+                    @Override
+                    public void onCameraFound(InetSocketAddress address) {
+                        String ip = address.getAddress().getHostAddress();
+                        found.add(ip);
+                        WritableMap event = Arguments.createMap();
+                        event.putString("ip", ip);
+                        event.putInt("port", address.getPort());
+                        sendEvent(CAMERA_FOUND_EVENT, event);
+                    }
+
+                    @Override
+                    public void onComplete(int probed, int foundCount, boolean cancelled) {
+                        synchronized (CameraDiscoveryModule.this) {
+                            activeSweep = null;
+                        }
+                        WritableArray ips = Arguments.createArray();
+                        for (String ip : found) {
+                            ips.pushString(ip);
+                        }
+                        WritableMap result = Arguments.createMap();
+                        result.putInt("probed", probed);
+                        result.putArray("found", ips);
+                        result.putBoolean("cancelled", cancelled);
+                        result.putDouble("durationMs", System.currentTimeMillis() - startedAt);
+                        promise.resolve(result);
+                    }
+                });
+
+            synchronized (this) {
+                activeSweep = sweep;
+            }
+            Thread thread = new Thread(sweep, "CameraDiscovery");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void stopDiscovery() {
+        LanSweeper sweep;
+        synchronized (this) {
+            sweep = activeSweep;
+        }
+        if (sweep != null) {
+            sweep.cancel();
+        }
+    }
+
+    // Required by NativeEventEmitter on the JS side
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    @Override
+    public void invalidate() {
+        stopDiscovery();
+        super.invalidate();
+    }
+
+    // Every host address on our IPv4 Wi-Fi subnet except our own. The Wi-Fi
+    // network is looked up by transport: on a camera AP without internet the
+    // default network is cellular.
+    private List<InetSocketAddress> subnetTargets(int port) throws Exception {
+        LinkProperties linkProperties = linkMonitor.getLinkProperties();
+        if (linkProperties == null) {
+            return null;
+        }
+
+        for (LinkAddress linkAddress : linkProperties.getLinkAddresses()) {
+            InetAddress address = linkAddress.getAddress();
+            if (!(address instanceof Inet4Address)) {
+                continue;
+            }
+
+            byte[] bytes = address.getAddress();
+            int self = ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+            int prefix = Math.max(MIN_PREFIX_LENGTH, Math.min(30, linkAddress.getPrefixLength()));
+            int mask = -1 << (32 - prefix);
+            int networkAddress = self & mask;
+            int broadcast = networkAddress | ~mask;
+
+            List<InetSocketAddress> targets = new ArrayList<>();
+            for (int host = networkAddress + 1; host < broadcast; host++) {
+                if (host == self) {
+                    continue;
+                }
+                byte[] hostBytes = {(byte) (host >>> 24), (byte) (host >>> 16), (byte) (host >>> 8), (byte) host};
+                targets.add(new InetSocketAddress(InetAddress.getByAddress(hostBytes), port));
+            }
+            return targets;
+        }
+        return null;
+    }
+
+    private static int getInt(ReadableMap options, String key, int defaultValue) {
+        if (options != null && options.hasKey(key) && !options.isNull(key)) {
+            return options.getInt(key);
+        }
+        return defaultValue;
+    }
+
+    private void sendEvent(String eventName, Object params) {
+        if (reactContext.hasActiveReactInstance()) {
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+        }
+    }
+}
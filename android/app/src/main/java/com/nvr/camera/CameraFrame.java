@@ -0,0 +1,87 @@
+package com.nvr.camera;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One JPEG frame received from a camera, held in a pooled direct buffer and
+// shared between consumers without copying. A frame passed to
+// FrameListener.onFrame is only valid for the duration of the call; a
+// consumer that keeps it (queues it for another thread) must retain() it
+// first and release() it when done. The buffer goes back to the pool when
+// the last reference is released.
+public final class CameraFrame {
+    public final String cameraId;
+    // Per-camera receive sequence, starting at 1 for each connection
+    public final long seq;
+    // Wall-clock receive time in milliseconds
+    public final long timestampMs;
+    // Capture time from the camera clock, or 0 when the format doesn't carry it
+    public final long captureTimeMs;
+
+    private final FramePool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    // Set by the producer before the frame is dispatched
+    private int length;
+    // Owned by the pool
+    FramePool.Tracker tracker;
+
+    CameraFrame(FramePool pool, String cameraId, long seq, long timestampMs, long captureTimeMs,
+            ByteBuffer buffer, int length) {
+        this.pool = pool;
+        this.cameraId = cameraId;
+        this.seq = seq;
+        this.timestampMs = timestampMs;
+        this.captureTimeMs = captureTimeMs;
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    // Trims the frame to the bytes actually written; producer only
+    void setLength(int length) {
+        this.length = length;
+        buffer.limit(length);
+    }
+
+    // Producer-side access to the buffer for filling it in place
+    ByteBuffer writableBuffer() {
+        return buffer;
+    }
+
+    // Read-only view of the JPEG, positioned at 0 with limit getLength()
+    public ByteBuffer data() {
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.position(0);
+        view.limit(length);
+        return view;
+    }
+
+    // Copies the JPEG into dst, which must hold getLength() bytes
+    public void copyTo(byte[] dst) {
+        data().get(dst, 0, length);
+    }
+
+    public CameraFrame retain() {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Frame already released");
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            pool.recycle(this);
+        } else if (count < 0) {
+            throw new IllegalStateException("Frame released too many times");
+        }
+    }
+}
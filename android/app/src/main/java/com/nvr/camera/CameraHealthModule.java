@@ -0,0 +1,114 @@
+package com.nvr.camera;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CameraHealthModule extends ReactContextBaseJavaModule {
+    static final String STATUS_CHANGED_EVENT = "CameraHealthChanged";
+
+    private final ReactApplicationContext reactContext;
+    private final CameraHealthMonitor monitor;
+
+    public CameraHealthModule(ReactApplicationContext reactContext, CameraStreamRegistry registry) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.monitor = new CameraHealthMonitor(registry, new CameraHealthMonitor.Listener() {
+            @Override
+            public void onStatusChanged(CameraHealthMonitor.Status status, String previous) {
+                WritableMap event = toWritableMap(status);
+                event.putString("previous", previous);
+                sendEvent(STATUS_CHANGED_EVENT, event);
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "CameraHealth";
+    }
+
+    // Resolves with [{ cameraId, status, source, checkedAt, failures }] in the
+    // order of cameraIds (camera addresses as stored in JS). Cached results
+    // are used where still fresh unless options.force is set.
+    @ReactMethod
+    public void checkCameras(ReadableArray cameraIds, ReadableMap options, final Promise promise) {
+        try {
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < cameraIds.size(); i++) {
+                ids.add(cameraIds.getString(i));
+            }
+            boolean force = options != null && options.hasKey("force") && options.getBoolean("force");
+            monitor.check(ids, force, new CameraHealthMonitor.Callback() {
+                @Override
+                public void onChecked(List<CameraHealthMonitor.Status> statuses) {
+                    promise.resolve(toWritableArray(statuses));
+                }
+            });
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    // Every cached status, without probing
+    @ReactMethod
+    public void getStatuses(Promise promise) {
+        promise.resolve(toWritableArray(monitor.getStatuses()));
+    }
+
+    // Required by NativeEventEmitter on the JS side
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    @Override
+    public void invalidate() {
+        monitor.release();
+        super.invalidate();
+    }
+
+    private static WritableArray toWritableArray(List<CameraHealthMonitor.Status> statuses) {
+        WritableArray array = Arguments.createArray();
+        for (CameraHealthMonitor.Status status : statuses) {
+            array.pushMap(toWritableMap(status));
+        }
+        return array;
+    }
+
+    private static WritableMap toWritableMap(CameraHealthMonitor.Status status) {
+        WritableMap map = Arguments.createMap();
+        map.putString("cameraId", status.cameraId);
+        map.putString("status", status.status);
+        if (status.source != null) {
+            map.putString("source", status.source);
+        }
+        map.putDouble("checkedAt", status.checkedAt);
+        map.putInt("failures", status.failures);
+        return map;
+    }
+
+    private void sendEvent(String eventName, Object params) {
+        if (reactContext.hasActiveReactInstance()) {
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+        }
+    }
+}
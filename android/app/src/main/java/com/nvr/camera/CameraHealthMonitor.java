@@ -0,0 +1,274 @@
+package com.nvr.camera;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Cached online/offline status for cameras. A camera with an open stream in
+// the hub is online without any probe. Everything else is probed in one
+// batch by a LanSweeper (WebSocket upgrade, bounded parallelism), and the
+// result is cached: online for ONLINE_TTL_MS, offline until a backoff that
+// doubles with each consecutive failure. Checks run one at a time on a
+// worker thread, so overlapping callers are served from the first one's
+// results instead of probing twice. Status changes, from probes or from
+// hub stream state, are reported to the listener.
+final class CameraHealthMonitor {
+    static final String STATUS_ONLINE = "online";
+    static final String STATUS_OFFLINE = "offline";
+    static final String STATUS_UNKNOWN = "unknown";
+
+    static final String SOURCE_STREAM = "stream";
+    static final String SOURCE_PROBE = "probe";
+
+    private static final long ONLINE_TTL_MS = 15000;
+    private static final long BASE_BACKOFF_MS = 5000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private static final int MAX_IN_FLIGHT = 8;
+    private static final long CONNECT_TIMEOUT_MS = 1000;
+    private static final long PROBE_TIMEOUT_MS = 2000;
+
+    interface Listener {
+        void onStatusChanged(Status status, String previous);
+    }
+
+    interface Callback {
+        void onChecked(List<Status> statuses);
+    }
+
+    // Snapshot of one camera's health; immutable once handed out
+    static final class Status {
+        final String cameraId;
+        final String status;
+        final String source;
+        // Wall-clock time of the observation
+        final long checkedAt;
+        final int failures;
+
+        Status(String cameraId, String status, String source, long checkedAt, int failures) {
+            this.cameraId = cameraId;
+            this.status = status;
+            this.source = source;
+            this.checkedAt = checkedAt;
+            this.failures = failures;
+        }
+    }
+
+    private static final class Entry {
+        Status status;
+        // Elapsed-realtime deadlines
+        long freshUntil;
+        long nextProbeAt;
+    }
+
+    private final CameraStreamRegistry registry;
+    private final Listener listener;
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    // Guarded by this
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private final CameraStreamClient.EventListener streamListener = new CameraStreamClient.EventListener() {
+        @Override
+        public void onStateChanged(String cameraId, String state, String message) {
+            if (CameraStreamClient.STATE_OPEN.equals(state)) {
+                record(cameraId, true, SOURCE_STREAM);
+            } else if (CameraStreamClient.STATE_ERROR.equals(state)) {
+                record(cameraId, false, SOURCE_STREAM);
+            }
+        }
+
+        @Override
+        public void onControlMessage(String cameraId, String text) {
+        }
+    };
+
+    CameraHealthMonitor(CameraStreamRegistry registry, Listener listener) {
+        this.registry = registry;
+        this.listener = listener;
+        this.thread = new HandlerThread("CameraHealth");
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+        this.registry.addEventListener(streamListener);
+    }
+
+    void release() {
+        registry.removeEventListener(streamListener);
+        thread.quitSafely();
+    }
+
+    // Checks every camera (ids are addresses as stored in JS) and reports
+    // their statuses in the same order. force skips the cache and backoff.
+    void check(final List<String> cameraIds, final boolean force, final Callback callback) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                runCheck(cameraIds, force);
+                List<Status> statuses = new ArrayList<>();
+                for (String cameraId : cameraIds) {
+                    statuses.add(getStatus(cameraId));
+                }
+                callback.onChecked(statuses);
+            }
+        });
+    }
+
+    synchronized Status getStatus(String cameraId) {
+        Entry entry = entries.get(cameraId);
+        return entry != null ? entry.status : new Status(cameraId, STATUS_UNKNOWN, null, 0, 0);
+    }
+
+    synchronized List<Status> getStatuses() {
+        List<Status> statuses = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            statuses.add(entry.status);
+        }
+        return statuses;
+    }
+
+    // Worker thread only
+    private void runCheck(List<String> cameraIds, boolean force) {
+        long now = SystemClock.elapsedRealtime();
+        Map<InetSocketAddress, List<String>> toProbe = new LinkedHashMap<>();
+        for (String cameraId : new HashSet<>(cameraIds)) {
+            CameraStreamClient client = registry.get(cameraId);
+            String state = client != null ? client.getState() : null;
+            if (CameraStreamClient.STATE_OPEN.equals(state)) {
+                // The live connection is proof enough
+                record(cameraId, true, SOURCE_STREAM);
+                continue;
+            }
+            if (CameraStreamClient.STATE_CONNECTING.equals(state)) {
+                // Its outcome will be recorded; a probe would only take one of
+                // the camera's few client slots
+                continue;
+            }
+            if (!force && !isDue(cameraId, now)) {
+                continue;
+            }
+            InetSocketAddress address = probeAddress(cameraId);
+            if (address == null || address.isUnresolved()) {
+                // Bad address, or a host name that does not resolve right now
+                // (e.g. a .local name off the LAN): offline, with backoff
+                record(cameraId, false, SOURCE_PROBE);
+                continue;
+            }
+            List<String> ids = toProbe.get(address);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                toProbe.put(address, ids);
+            }
+            ids.add(cameraId);
+        }
+        if (toProbe.isEmpty()) {
+            return;
+        }
+
+        // Group by path; the sweeper probes one path per run
+        Map<String, List<InetSocketAddress>> byPath = new HashMap<>();
+        for (InetSocketAddress address : toProbe.keySet()) {
+            String path = probePath(toProbe.get(address).get(0));
+            List<InetSocketAddress> targets = byPath.get(path);
+            if (targets == null) {
+                targets = new ArrayList<>();
+                byPath.put(path, targets);
+            }
+            targets.add(address);
+        }
+
+        final Set<InetSocketAddress> reachable = new HashSet<>();
+        for (Map.Entry<String, List<InetSocketAddress>> batch : byPath.entrySet()) {
+            new LanSweeper(batch.getValue(), batch.getKey(), MAX_IN_FLIGHT, CONNECT_TIMEOUT_MS, PROBE_TIMEOUT_MS,
+                new LanSweeper.Listener() {
+                    @Override
+                    public void onCameraFound(InetSocketAddress address) {
+                        reachable.add(address);
+                    }
+
+                    @Override
+                    public void onComplete(int probed, int found, boolean cancelled) {
+                    }
+                }).run();
+        }
+
+        for (Map.Entry<InetSocketAddress, List<String>> target : toProbe.entrySet()) {
+            boolean online = reachable.contains(target.getKey());
+            for (String cameraId : target.getValue()) {
+                record(cameraId, online, SOURCE_PROBE);
+            }
+        }
+    }
+
+    private synchronized boolean isDue(String cameraId, long now) {
+        Entry entry = entries.get(cameraId);
+        if (entry == null) {
+            return true;
+        }
+        if (STATUS_ONLINE.equals(entry.status.status)) {
+            return now >= entry.freshUntil;
+        }
+        return now >= entry.nextProbeAt;
+    }
+
+    private void record(String cameraId, boolean online, String source) {
+        Status next;
+        String previous;
+        synchronized (this) {
+            Entry entry = entries.get(cameraId);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(cameraId, entry);
+            }
+            previous = entry.status != null ? entry.status.status : STATUS_UNKNOWN;
+            int failures = online ? 0 : (entry.status != null ? entry.status.failures : 0) + 1;
+            next = new Status(cameraId, online ? STATUS_ONLINE : STATUS_OFFLINE, source,
+                System.currentTimeMillis(), failures);
+            entry.status = next;
+
+            long now = SystemClock.elapsedRealtime();
+            entry.freshUntil = online ? now + ONLINE_TTL_MS : now;
+            entry.nextProbeAt = online ? now : now + backoff(failures);
+        }
+        if (!previous.equals(next.status)) {
+            listener.onStatusChanged(next, previous);
+        }
+    }
+
+    // 5 s, 10 s, 20 s ... capped at 5 minutes
+    private static long backoff(int failures) {
+        int shift = Math.min(Math.max(failures - 1, 0), 16);
+        return Math.min(BASE_BACKOFF_MS << shift, MAX_BACKOFF_MS);
+    }
+
+    private static InetSocketAddress probeAddress(String cameraId) {
+        try {
+            URI uri = new URI(CameraStreamClient.toWebSocketUrl(cameraId));
+            if (uri.getHost() == null) {
+                return null;
+            }
+            return new InetSocketAddress(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 80);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String probePath(String cameraId) {
+        try {
+            String path = new URI(CameraStreamClient.toWebSocketUrl(cameraId)).getRawPath();
+            return path != null && !path.isEmpty() ? path : "/";
+        } catch (Exception e) {
+            return "/ws";
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.nvr.camera;
+
+import android.content.Context;
+import android.net.LinkProperties;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.nvr.wifi.WifiLinkMonitor;
+
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Passive counterpart to CameraDiscoveryModule: keeps a TTL cache of camera
+// hosts announced over mDNS/SSDP so the camera list can be filled without a
+// sweep.
+public class CameraPresenceModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "CameraPresence";
+    static final String CAMERA_FOUND_EVENT = "CameraPresenceFound";
+    static final String CAMERA_LOST_EVENT = "CameraPresenceLost";
+
+    private static final long EXPIRY_SWEEP_MS = 5000;
+    // Announced names containing any of these count as cameras by default
+    private static final List<String> DEFAULT_NAME_FILTER = Arrays.asList("cam", "esp32");
+
+    private final ReactApplicationContext reactContext;
+    private final WifiLinkMonitor linkMonitor;
+    private final PresenceCache cache = new PresenceCache();
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    // Only touched on the handler thread
+    private AnnouncementListener listener = null;
+    private WifiManager.MulticastLock multicastLock = null;
+    private List<String> nameFilter = DEFAULT_NAME_FILTER;
+
+    private final Runnable expirySweep = new Runnable() {
+        @Override
+        public void run() {
+            for (PresenceCache.Entry entry : cache.expire(System.currentTimeMillis())) {
+                sendEvent(CAMERA_LOST_EVENT, toWritableMap(entry));
+            }
+            handler.postDelayed(this, EXPIRY_SWEEP_MS);
+        }
+    };
+
+    public CameraPresenceModule(ReactApplicationContext reactContext, WifiLinkMonitor linkMonitor) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.linkMonitor = linkMonitor;
+        this.thread = new HandlerThread("CameraPresence");
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "CameraPresence";
+    }
+
+    // options.nameFilter: substrings a host name must contain (empty = all)
+    @ReactMethod
+    public void startListening(final ReadableMap options, final Promise promise) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (options != null && options.hasKey("nameFilter") && !options.isNull("nameFilter")) {
+                        ReadableArray filter = options.getArray("nameFilter");
+                        List<String> names = new ArrayList<>();
+                        for (int i = 0; i < filter.size(); i++) {
+                            names.add(filter.getString(i).toLowerCase(Locale.ROOT));
+                        }
+                        nameFilter = names;
+                    }
+
+                    if (listener == null) {
+                        // Cameras announce on the Wi-Fi network, which need not be the default one
+                        LinkProperties link = linkMonitor.getLinkProperties();
+                        NetworkInterface wifi = link != null && link.getInterfaceName() != null
+                            ? NetworkInterface.getByName(link.getInterfaceName()) : null;
+                        if (wifi == null) {
+                            promise.reject("NO_NETWORK", "Not connected to a Wi-Fi network");
+                            return;
+                        }
+
+                        // Wi-Fi drops multicast frames unless a lock is held
+                        WifiManager wifiManager = (WifiManager) reactContext.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+                        multicastLock = wifiManager.createMulticastLock(TAG);
+                        multicastLock.setReferenceCounted(false);
+                        multicastLock.acquire();
+
+                        listener = new AnnouncementListener(wifi, new AnnouncementListener.Callback() {
+                            @Override
+                            public void onAnnouncement(final Announcement announcement) {
+                                handler.post(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        onAnnounced(announcement);
+                                    }
+                                });
+                            }
+                        });
+                        listener.start();
+                        handler.postDelayed(expirySweep, EXPIRY_SWEEP_MS);
+                    }
+                    promise.resolve(true);
+                } catch (Exception e) {
+                    Log.w(TAG, "Could not start listening for announcements: " + e.getMessage());
+                    stopOnHandler();
+                    promise.reject("ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void stopListening() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                stopOnHandler();
+            }
+        });
+    }
+
+    // Cached hosts stay valid after stopListening() until their TTL runs out
+    @ReactMethod
+    public void getCameras(Promise promise) {
+        WritableArray cameras = Arguments.createArray();
+        for (PresenceCache.Entry entry : cache.snapshot(System.currentTimeMillis())) {
+            cameras.pushMap(toWritableMap(entry));
+        }
+        promise.resolve(cameras);
+    }
+
+    // Required by NativeEventEmitter on the JS side
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    @Override
+    public void invalidate() {
+        stopListening();
+        thread.quitSafely();
+        super.invalidate();
+    }
+
+    private void onAnnounced(Announcement announcement) {
+        if (announcement.ttlMs <= 0) {
+            PresenceCache.Entry removed = cache.remove(announcement.ip);
+            if (removed != null) {
+                sendEvent(CAMERA_LOST_EVENT, toWritableMap(removed));
+            }
+            return;
+        }
+        if (!matchesFilter(announcement.name)) {
+            return;
+        }
+        PresenceCache.Entry added = cache.update(announcement, System.currentTimeMillis());
+        if (added != null) {
+            sendEvent(CAMERA_FOUND_EVENT, toWritableMap(added));
+        }
+    }
+
+    private boolean matchesFilter(String name) {
+        if (nameFilter.isEmpty()) {
+            return true;
+        }
+        if (name == null) {
+            return false;
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String part : nameFilter) {
+            if (lower.contains(part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void stopOnHandler() {
+        handler.removeCallbacks(expirySweep);
+        if (listener != null) {
+            listener.stop();
+            listener = null;
+        }
+        if (multicastLock != null && multicastLock.isHeld()) {
+            multicastLock.release();
+        }
+        multicastLock = null;
+    }
+
+    private static WritableMap toWritableMap(PresenceCache.Entry entry) {
+        WritableMap map = Arguments.createMap();
+        map.putString("ip", entry.ip);
+        map.putString("name", entry.name);
+        map.putInt("port", entry.port);
+        map.putString("source", entry.source);
+        map.putDouble("expiresAt", entry.expiresAt);
+        return map;
+    }
+
+    private void sendEvent(String eventName, Object params) {
+        if (reactContext.hasActiveReactInstance()) {
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.nvr.camera;
+
+import android.util.Base64;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+// Owns the WebSocket to one camera (ws://<ip>/ws). Messages are parsed on
+// OkHttp's reader thread: video frames go straight to native FrameListeners,
+// everything else (config, acks) is passed on as control text. Nothing per
+// frame touches the JS thread.
+//
+// On open the client asks for binary frames (see FrameCodec). Cameras that
+// support it switch to binary messages; older firmware keeps sending JSON
+// with base64 data, and both are accepted for the life of the socket.
+public class CameraStreamClient {
+    public static final String STATE_CONNECTING = "connecting";
+    public static final String STATE_OPEN = "open";
+    public static final String STATE_CLOSED = "closed";
+    public static final String STATE_ERROR = "error";
+
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_BINARY = "binary";
+
+    public interface EventListener {
+        void onStateChanged(String cameraId, String state, String message);
+
+        void onControlMessage(String cameraId, String text);
+    }
+
+    private final String cameraId;
+    private final String url;
+    private final OkHttpClient httpClient;
+    private final FramePool pool;
+    private final EventListener events;
+    private final CopyOnWriteArrayList<FrameListener> frameListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong badFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    // Written under the lock; read without it to drop stale socket callbacks
+    private volatile WebSocket socket = null;
+    // Format of the last video message on the current socket
+    private volatile String format = FORMAT_JSON;
+    // Reader thread only
+    private final FrameCodec.Header header = new FrameCodec.Header();
+    private final JsonVideoScanner.Spans spans = new JsonVideoScanner.Spans();
+    // Guarded by this
+    private String state = STATE_CLOSED;
+    private long seq = 0;
+
+    CameraStreamClient(String cameraId, String url, OkHttpClient httpClient, FramePool pool, EventListener events) {
+        this.cameraId = cameraId;
+        this.url = url;
+        this.httpClient = httpClient;
+        this.pool = pool;
+        this.events = events;
+    }
+
+    // Same normalisation the JS side applies to camera.ip
+    public static String toWebSocketUrl(String ip) {
+        String formatted = ip.startsWith("ws://") ? ip : "ws://" + ip;
+        if (!formatted.endsWith("/ws")) {
+            formatted = formatted + "/ws";
+        }
+        return formatted;
+    }
+
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    public synchronized String getState() {
+        return state;
+    }
+
+    public void addFrameListener(FrameListener listener) {
+        frameListeners.addIfAbsent(listener);
+    }
+
+    public void removeFrameListener(FrameListener listener) {
+        frameListeners.remove(listener);
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getBadFrames() {
+        return badFrames.get();
+    }
+
+    // Frames discarded because the camera was at its frame memory cap
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    // Starts a connection attempt unless one is open or in progress; returns
+    // whether it did
+    public synchronized boolean connect() {
+        if (socket != null) {
+            return false;
+        }
+        seq = 0;
+        format = FORMAT_JSON;
+        Request request = new Request.Builder().url(url).build();
+        socket = httpClient.newWebSocket(request, new Listener());
+        setState(STATE_CONNECTING, null);
+        return true;
+    }
+
+    public synchronized void close() {
+        if (socket == null) {
+            return;
+        }
+        socket.close(1000, "Client closed");
+        socket = null;
+        setState(STATE_CLOSED, null);
+    }
+
+    public synchronized boolean send(String text) {
+        return socket != null && socket.send(text);
+    }
+
+    // Caller holds the lock
+    private void setState(String next, String message) {
+        if (!next.equals(state)) {
+            state = next;
+            events.onStateChanged(cameraId, next, message);
+        }
+    }
+
+    private void handleText(String text) {
+        // Fast path for legacy video messages: decode the data span in place
+        if (JsonVideoScanner.scanVideo(text, spans)) {
+            CameraFrame frame = acquireFrame(JsonVideoScanner.maxDecodedLength(spans), 0);
+            if (frame == null) {
+                return;
+            }
+            int length = JsonVideoScanner.decodeBase64(text, spans, frame.writableBuffer());
+            if (length > 0) {
+                frame.setLength(length);
+                dispatch(frame);
+                return;
+            }
+            frame.release();
+            if (length == 0) {
+                badFrames.incrementAndGet();
+                return;
+            }
+            // An escape the scanner doesn't handle, such as a unicode one: full parse below
+        }
+
+        // Control messages, and video the scanner couldn't follow (unusual
+        // escapes), go through a full parse
+        String type;
+        JSONObject message;
+        try {
+            message = new JSONObject(text);
+            type = message.optString("type");
+        } catch (JSONException e) {
+            events.onControlMessage(cameraId, text);
+            return;
+        }
+
+        if (!"video".equals(type)) {
+            events.onControlMessage(cameraId, text);
+            return;
+        }
+
+        byte[] jpeg;
+        try {
+            jpeg = Base64.decode(message.optString("data"), Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            badFrames.incrementAndGet();
+            return;
+        }
+        CameraFrame frame = acquireFrame(jpeg.length, 0);
+        if (frame != null) {
+            frame.writableBuffer().put(jpeg);
+            dispatch(frame);
+        }
+    }
+
+    private void handleBinary(ByteString bytes) {
+        ByteBuffer message = bytes.asByteBuffer();
+        if (!FrameCodec.decodeHeader(message, header)) {
+            badFrames.incrementAndGet();
+            return;
+        }
+        format = FORMAT_BINARY;
+
+        CameraFrame frame = acquireFrame(header.length, header.timestampMs);
+        if (frame == null) {
+            return;
+        }
+        message.position(message.position() + FrameCodec.HEADER_SIZE);
+        frame.writableBuffer().put(message);
+        dispatch(frame);
+    }
+
+    // A pooled frame with room for size bytes, or null (counted as dropped)
+    // when the camera is at its memory cap
+    private CameraFrame acquireFrame(int size, long captureTimeMs) {
+        long frameSeq;
+        synchronized (this) {
+            frameSeq = ++seq;
+        }
+        CameraFrame frame = pool.acquire(cameraId, frameSeq, System.currentTimeMillis(), captureTimeMs, size);
+        if (frame == null) {
+            droppedFrames.incrementAndGet();
+        }
+        return frame;
+    }
+
+    // Hands the frame to every listener, then drops the client's reference
+    private void dispatch(CameraFrame frame) {
+        framesReceived.incrementAndGet();
+        bytesReceived.addAndGet(frame.getLength());
+        try {
+            for (FrameListener listener : frameListeners) {
+                listener.onFrame(frame);
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    private class Listener extends WebSocketListener {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            synchronized (CameraStreamClient.this) {
+                if (webSocket == socket) {
+                    webSocket.send(FrameCodec.negotiateCommand());
+                    setState(STATE_OPEN, null);
+                }
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            if (webSocket == socket) {
+                handleText(text);
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, ByteString bytes) {
+            if (webSocket == socket) {
+                handleBinary(bytes);
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            synchronized (CameraStreamClient.this) {
+                if (webSocket == socket) {
+                    socket = null;
+                    setState(STATE_CLOSED, reason);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            synchronized (CameraStreamClient.this) {
+                if (webSocket == socket) {
+                    socket = null;
+                    setState(STATE_ERROR, t.getMessage());
+                }
+            }
+        }
+    }
+}
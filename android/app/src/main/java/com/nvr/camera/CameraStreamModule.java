@@ -0,0 +1,192 @@
+package com.nvr.camera;
+
+import android.content.pm.ApplicationInfo;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// JS control surface for native camera streams. JS opens and closes streams
+// and sends commands; it only ever receives state changes, control
+// messages and once-a-second stats, never frames.
+public class CameraStreamModule extends ReactContextBaseJavaModule {
+    static final String STATE_EVENT = "CameraStreamState";
+    static final String MESSAGE_EVENT = "CameraStreamMessage";
+    static final String STATS_EVENT = "CameraStreamStats";
+
+    private static final long STATS_INTERVAL_MS = 1000;
+
+    private final ReactApplicationContext reactContext;
+    private final CameraStreamRegistry registry;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Counters at the previous stats tick, per camera; main thread only
+    private final Map<String, long[]> lastCounters = new HashMap<>();
+    // Hub subscriptions held on behalf of JS, per camera; guarded by this
+    private final Map<String, Integer> jsSubscriptions = new HashMap<>();
+
+    private final CameraStreamClient.EventListener eventListener = new CameraStreamClient.EventListener() {
+        @Override
+        public void onStateChanged(String cameraId, String state, String message) {
+            WritableMap event = Arguments.createMap();
+            event.putString("cameraId", cameraId);
+            event.putString("state", state);
+            if (message != null) {
+                event.putString("message", message);
+            }
+            sendEvent(STATE_EVENT, event);
+        }
+
+        @Override
+        public void onControlMessage(String cameraId, String text) {
+            WritableMap event = Arguments.createMap();
+            event.putString("cameraId", cameraId);
+            event.putString("data", text);
+            sendEvent(MESSAGE_EVENT, event);
+        }
+    };
+
+    private final Runnable statsTick = new Runnable() {
+        @Override
+        public void run() {
+            emitStats();
+            handler.postDelayed(this, STATS_INTERVAL_MS);
+        }
+    };
+
+    public CameraStreamModule(ReactApplicationContext reactContext, CameraStreamRegistry registry) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.registry = registry;
+        this.registry.addEventListener(eventListener);
+        this.registry.getFramePool().setLeakDetection(
+            (reactContext.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
+        this.handler.postDelayed(statsTick, STATS_INTERVAL_MS);
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "CameraStream";
+    }
+
+    // ip is the camera address as stored in JS (with or without ws:// and /ws).
+    // Each connect subscribes JS to the camera's shared connection once more
+    // and must be balanced by a disconnect.
+    @ReactMethod
+    public void connect(String cameraId, String ip, Promise promise) {
+        try {
+            registry.acquire(cameraId, CameraStreamClient.toWebSocketUrl(ip));
+            synchronized (this) {
+                Integer count = jsSubscriptions.get(cameraId);
+                jsSubscriptions.put(cameraId, count == null ? 1 : count + 1);
+            }
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void disconnect(String cameraId) {
+        synchronized (this) {
+            Integer count = jsSubscriptions.get(cameraId);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                jsSubscriptions.put(cameraId, count - 1);
+            } else {
+                jsSubscriptions.remove(cameraId);
+            }
+        }
+        registry.release(cameraId);
+    }
+
+    @ReactMethod
+    public void send(String cameraId, String text, Promise promise) {
+        CameraStreamClient client = registry.get(cameraId);
+        promise.resolve(client != null && client.send(text));
+    }
+
+    // Required by NativeEventEmitter on the JS side
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    @Override
+    public void invalidate() {
+        handler.removeCallbacks(statsTick);
+        registry.removeEventListener(eventListener);
+        // Native subscribers (views, recorder) keep their connections
+        synchronized (this) {
+            for (Map.Entry<String, Integer> entry : jsSubscriptions.entrySet()) {
+                for (int i = 0; i < entry.getValue(); i++) {
+                    registry.release(entry.getKey());
+                }
+            }
+            jsSubscriptions.clear();
+        }
+        super.invalidate();
+    }
+
+    private void emitStats() {
+        for (CameraStreamClient client : registry.all()) {
+            long frames = client.getFramesReceived();
+            long bytes = client.getBytesReceived();
+            long[] last = lastCounters.get(client.getCameraId());
+            if (last == null || frames < last[0]) {
+                // New camera, or a new client after disconnect/connect
+                last = new long[2];
+                lastCounters.put(client.getCameraId(), last);
+            }
+
+            WritableMap event = Arguments.createMap();
+            event.putString("cameraId", client.getCameraId());
+            event.putString("state", client.getState());
+            event.putString("format", client.getFormat());
+            event.putInt("subscribers", registry.getSubscriberCount(client.getCameraId()));
+            event.putDouble("fps", (frames - last[0]) * 1000.0 / STATS_INTERVAL_MS);
+            event.putDouble("kbps", (bytes - last[1]) * 8.0 / STATS_INTERVAL_MS);
+            event.putDouble("frames", frames);
+            event.putDouble("badFrames", client.getBadFrames());
+            event.putDouble("droppedFrames", client.getDroppedFrames());
+            WritableArray consumers = Arguments.createArray();
+            for (FrameQueue queue : registry.frameQueues(client.getCameraId())) {
+                WritableMap consumer = Arguments.createMap();
+                consumer.putString("name", queue.getName());
+                consumer.putDouble("droppedFrames", queue.getDroppedFrames());
+                consumers.pushMap(consumer);
+            }
+            event.putArray("consumers", consumers);
+            sendEvent(STATS_EVENT, event);
+
+            last[0] = frames;
+            last[1] = bytes;
+        }
+    }
+
+    private void sendEvent(String eventName, Object params) {
+        if (reactContext.hasActiveReactInstance()) {
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+        }
+    }
+}
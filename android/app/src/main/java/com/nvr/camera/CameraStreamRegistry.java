@@ -0,0 +1,234 @@
+package com.nvr.camera;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.facebook.react.modules.network.OkHttpClientProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+// Connection hub: exactly one stream client (one WebSocket) per camera,
+// shared by everything that wants its frames (JS live view, stream views,
+// recorder). Users acquire() the camera and release() it when done; the
+// socket opens with the first subscriber and closes a few seconds after the
+// last one leaves, so a quick screen switch doesn't drop the connection.
+// Connects and reconnects go through the ReconnectScheduler, which keeps a
+// dropped camera retrying for as long as it has subscribers.
+// One instance per WifiScannerPackage.
+public class CameraStreamRegistry {
+    // Grace period before an unused socket is closed
+    private static final long LINGER_MS = 3000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, CameraStreamClient> clients = new HashMap<>();
+    private final Map<String, Integer> subscribers = new HashMap<>();
+    private final Map<String, Runnable> pendingCloses = new HashMap<>();
+    private final List<CameraStreamClient.EventListener> eventListeners = new ArrayList<>();
+    // Frame listeners by camera id; they outlive individual clients so a view
+    // keeps receiving frames across disconnect/connect
+    private final Map<String, List<FrameListener>> frameListeners = new HashMap<>();
+    private final FramePool framePool = new FramePool();
+    private final BitmapPool bitmapPool = new BitmapPool();
+    private OkHttpClient httpClient = null;
+
+    private final ReconnectScheduler scheduler = new ReconnectScheduler(new ReconnectScheduler.Connector() {
+        @Override
+        public boolean isWanted(String cameraId) {
+            return getSubscriberCount(cameraId) > 0;
+        }
+
+        @Override
+        public boolean connect(String cameraId) {
+            CameraStreamClient client = get(cameraId);
+            return client != null && client.connect();
+        }
+    });
+
+    // Fans client events out to every registered listener
+    private final CameraStreamClient.EventListener dispatcher = new CameraStreamClient.EventListener() {
+        @Override
+        public void onStateChanged(String cameraId, String state, String message) {
+            scheduler.onStateChanged(cameraId, state);
+            for (CameraStreamClient.EventListener listener : listenersSnapshot()) {
+                listener.onStateChanged(cameraId, state, message);
+            }
+        }
+
+        @Override
+        public void onControlMessage(String cameraId, String text) {
+            for (CameraStreamClient.EventListener listener : listenersSnapshot()) {
+                listener.onControlMessage(cameraId, text);
+            }
+        }
+    };
+
+    // Gives the hub what it needs from the app context (network callbacks);
+    // safe to call more than once
+    public void attach(Context context) {
+        scheduler.start(context.getApplicationContext());
+    }
+
+    public FramePool getFramePool() {
+        return framePool;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    public synchronized void addEventListener(CameraStreamClient.EventListener listener) {
+        eventListeners.add(listener);
+    }
+
+    public synchronized void removeEventListener(CameraStreamClient.EventListener listener) {
+        eventListeners.remove(listener);
+    }
+
+    private synchronized List<CameraStreamClient.EventListener> listenersSnapshot() {
+        return new ArrayList<>(eventListeners);
+    }
+
+    public synchronized void addFrameListener(String cameraId, FrameListener listener) {
+        List<FrameListener> listeners = frameListeners.get(cameraId);
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+            frameListeners.put(cameraId, listeners);
+        }
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+        CameraStreamClient client = clients.get(cameraId);
+        if (client != null) {
+            client.addFrameListener(listener);
+        }
+    }
+
+    public synchronized void removeFrameListener(String cameraId, FrameListener listener) {
+        List<FrameListener> listeners = frameListeners.get(cameraId);
+        if (listeners != null) {
+            listeners.remove(listener);
+            if (listeners.isEmpty()) {
+                frameListeners.remove(cameraId);
+            }
+        }
+        CameraStreamClient client = clients.get(cameraId);
+        if (client != null) {
+            client.removeFrameListener(listener);
+        }
+    }
+
+    // Buffering consumers attached to cameraId, for per-consumer drop stats
+    public synchronized List<FrameQueue> frameQueues(String cameraId) {
+        List<FrameQueue> queues = new ArrayList<>();
+        List<FrameListener> listeners = frameListeners.get(cameraId);
+        if (listeners != null) {
+            for (FrameListener listener : listeners) {
+                if (listener instanceof FrameQueue) {
+                    queues.add((FrameQueue) listener);
+                }
+            }
+        }
+        return queues;
+    }
+
+    // Adds a subscriber to cameraId and makes sure its socket is open or
+    // about to be. Every acquire must be balanced by one release.
+    public synchronized CameraStreamClient acquire(String cameraId, String url) {
+        Runnable pendingClose = pendingCloses.remove(cameraId);
+        if (pendingClose != null) {
+            handler.removeCallbacks(pendingClose);
+        }
+        Integer count = subscribers.get(cameraId);
+        subscribers.put(cameraId, count == null ? 1 : count + 1);
+
+        CameraStreamClient client = obtain(cameraId, url);
+        scheduler.requestConnect(cameraId);
+        return client;
+    }
+
+    // Drops a subscriber; the last one schedules the socket to close
+    public synchronized void release(final String cameraId) {
+        Integer count = subscribers.get(cameraId);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            subscribers.put(cameraId, count - 1);
+            return;
+        }
+        subscribers.remove(cameraId);
+        Runnable close = new Runnable() {
+            @Override
+            public void run() {
+                closeIfUnused(cameraId, this);
+            }
+        };
+        pendingCloses.put(cameraId, close);
+        handler.postDelayed(close, LINGER_MS);
+    }
+
+    public synchronized int getSubscriberCount(String cameraId) {
+        Integer count = subscribers.get(cameraId);
+        return count != null ? count : 0;
+    }
+
+    private void closeIfUnused(String cameraId, Runnable task) {
+        CameraStreamClient client;
+        synchronized (this) {
+            // Re-acquired (and maybe released again) since this was scheduled
+            if (pendingCloses.get(cameraId) != task) {
+                return;
+            }
+            pendingCloses.remove(cameraId);
+            client = clients.remove(cameraId);
+        }
+        scheduler.cancel(cameraId);
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    // Returns the existing client for cameraId or creates one for url
+    private CameraStreamClient obtain(String cameraId, String url) {
+        CameraStreamClient client = clients.get(cameraId);
+        if (client == null) {
+            client = new CameraStreamClient(cameraId, url, httpClient(), framePool, dispatcher);
+            List<FrameListener> listeners = frameListeners.get(cameraId);
+            if (listeners != null) {
+                for (FrameListener listener : listeners) {
+                    client.addFrameListener(listener);
+                }
+            }
+            clients.put(cameraId, client);
+        }
+        return client;
+    }
+
+    public synchronized CameraStreamClient get(String cameraId) {
+        return clients.get(cameraId);
+    }
+
+    public synchronized List<CameraStreamClient> all() {
+        return new ArrayList<>(clients.values());
+    }
+
+    private OkHttpClient httpClient() {
+        if (httpClient == null) {
+            // Share React Native's connection pool and dispatcher, but never
+            // time out a quiet stream on read
+            httpClient = OkHttpClientProvider.getOkHttpClient().newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .connectTimeout(5, TimeUnit.SECONDS)
+                .pingInterval(10, TimeUnit.SECONDS)
+                .build();
+        }
+        return httpClient;
+    }
+}
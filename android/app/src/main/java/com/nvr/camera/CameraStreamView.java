@@ -0,0 +1,298 @@
+package com.nvr.camera;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.TextureView;
+
+// Renders one camera's JPEG stream into a TextureView. Frames arrive on the
+// stream's network thread into a LatestFrameMailbox, so only the newest is
+// kept; a per-view render thread decodes it and draws the latest decoded
+// bitmap on the next vsync. The UI thread never decodes or draws. Decodes
+// are subsampled to the view's size and reuse bitmaps from the shared pool.
+public class CameraStreamView extends TextureView implements TextureView.SurfaceTextureListener {
+    private static final String TAG = "CameraStreamView";
+
+    public static final String RESIZE_CONTAIN = "contain";
+    public static final String RESIZE_COVER = "cover";
+
+    private final CameraStreamRegistry registry;
+    private final BitmapPool bitmapPool;
+    private final JpegDecoder decoder;
+    private final HandlerThread renderThread;
+    private final Handler renderHandler;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    // Newest undecoded frame; filled by the network thread, drained by the render thread
+    private final LatestFrameMailbox mailbox = new LatestFrameMailbox("view");
+
+    // UI thread only
+    private String cameraId = null;
+    private String ip = null;
+    // Camera this view holds a hub subscription for, if any
+    private String subscribedId = null;
+
+    // Surface size, written on the UI thread and read by the decoder
+    private volatile int targetWidth = 0;
+    private volatile int targetHeight = 0;
+
+    // Render thread only
+    private Choreographer choreographer = null;
+    private byte[] jpegScratch = new byte[0];
+    private Bitmap decoded = null;
+    private Bitmap shown = null;
+    private boolean frameRequested = false;
+    private String resizeMode = RESIZE_CONTAIN;
+    private final RectF dest = new RectF();
+
+    // Guards the surface against destruction while the render thread draws
+    private final Object surfaceLock = new Object();
+    private boolean surfaceReady = false;
+
+    private final Runnable decodeTask = new Runnable() {
+        @Override
+        public void run() {
+            CameraFrame frame = mailbox.poll();
+            if (frame == null) {
+                return;
+            }
+            // BitmapFactory needs a heap array; reuse one per view
+            int length = frame.getLength();
+            try {
+                if (jpegScratch.length < length) {
+                    jpegScratch = new byte[length + length / 4];
+                }
+                frame.copyTo(jpegScratch);
+            } finally {
+                frame.release();
+            }
+            Bitmap bitmap = decoder.decode(jpegScratch, length, targetWidth, targetHeight);
+            if (bitmap == null) {
+                return;
+            }
+            if (decoded != null) {
+                // Decoded but never shown; a newer one replaces it
+                bitmapPool.put(decoded);
+            }
+            decoded = bitmap;
+            requestDraw();
+        }
+    };
+
+    private final Choreographer.FrameCallback drawCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameRequested = false;
+            if (decoded != null) {
+                if (shown != null) {
+                    bitmapPool.put(shown);
+                }
+                shown = decoded;
+                decoded = null;
+            }
+            draw(shown);
+        }
+    };
+
+    public CameraStreamView(Context context, CameraStreamRegistry registry) {
+        super(context);
+        this.registry = registry;
+        this.bitmapPool = registry.getBitmapPool();
+        this.decoder = new JpegDecoder(bitmapPool);
+        this.renderThread = new HandlerThread("CameraStreamRender");
+        this.renderThread.start();
+        this.renderHandler = new Handler(renderThread.getLooper());
+        this.renderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Vsync callbacks are delivered on the looper that obtained the instance
+                choreographer = Choreographer.getInstance();
+            }
+        });
+        this.mailbox.setOnAvailable(new Runnable() {
+            @Override
+            public void run() {
+                renderHandler.post(decodeTask);
+            }
+        });
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    public void setCameraId(String id) {
+        if (id != null ? id.equals(cameraId) : cameraId == null) {
+            return;
+        }
+        if (cameraId != null) {
+            registry.removeFrameListener(cameraId, mailbox);
+        }
+        cameraId = id;
+        mailbox.clear();
+        renderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (decoded != null) {
+                    bitmapPool.put(decoded);
+                    decoded = null;
+                }
+                if (shown != null) {
+                    bitmapPool.put(shown);
+                    shown = null;
+                }
+                draw(null);
+            }
+        });
+        if (id != null) {
+            registry.addFrameListener(id, mailbox);
+        }
+        updateSubscription();
+    }
+
+    // With an address the view subscribes to the camera itself, so it can be
+    // used without a JS-side connect (e.g. dashboard previews)
+    public void setIp(String address) {
+        ip = address;
+        updateSubscription();
+    }
+
+    private void updateSubscription() {
+        String wanted = cameraId != null && ip != null ? cameraId : null;
+        if (wanted != null ? wanted.equals(subscribedId) : subscribedId == null) {
+            return;
+        }
+        if (subscribedId != null) {
+            registry.release(subscribedId);
+        }
+        subscribedId = wanted;
+        if (wanted != null) {
+            registry.acquire(wanted, CameraStreamClient.toWebSocketUrl(ip));
+        }
+    }
+
+    public void setResizeMode(final String mode) {
+        renderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                resizeMode = RESIZE_COVER.equals(mode) ? RESIZE_COVER : RESIZE_CONTAIN;
+                requestDraw();
+            }
+        });
+    }
+
+    // Called by the view manager when React drops the view
+    public void release() {
+        ip = null;
+        setCameraId(null);
+        setSurfaceTextureListener(null);
+        renderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (choreographer != null) {
+                    choreographer.removeFrameCallback(drawCallback);
+                }
+                // A frame delivered while the listener was being removed
+                mailbox.clear();
+                if (decoded != null) {
+                    bitmapPool.put(decoded);
+                    decoded = null;
+                }
+                if (shown != null) {
+                    bitmapPool.put(shown);
+                    shown = null;
+                }
+            }
+        });
+        renderThread.quitSafely();
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        targetWidth = width;
+        targetHeight = height;
+        synchronized (surfaceLock) {
+            surfaceReady = true;
+        }
+        redraw();
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+        // Takes effect from the next decode
+        targetWidth = width;
+        targetHeight = height;
+        redraw();
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        synchronized (surfaceLock) {
+            surfaceReady = false;
+        }
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+    private void redraw() {
+        renderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                requestDraw();
+            }
+        });
+    }
+
+    // Render thread only
+    private void requestDraw() {
+        if (!frameRequested && choreographer != null) {
+            frameRequested = true;
+            choreographer.postFrameCallback(drawCallback);
+        }
+    }
+
+    // Render thread only
+    private void draw(Bitmap bitmap) {
+        synchronized (surfaceLock) {
+            if (!surfaceReady) {
+                return;
+            }
+            Canvas canvas = lockCanvas();
+            if (canvas == null) {
+                return;
+            }
+            try {
+                canvas.drawColor(Color.BLACK);
+                if (bitmap != null) {
+                    fit(bitmap.getWidth(), bitmap.getHeight(), canvas.getWidth(), canvas.getHeight());
+                    canvas.drawBitmap(bitmap, null, dest, paint);
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to draw frame", e);
+            } finally {
+                unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    // Centres the frame in the view, letterboxed (contain) or cropped (cover)
+    private void fit(int frameWidth, int frameHeight, int viewWidth, int viewHeight) {
+        float scaleX = (float) viewWidth / frameWidth;
+        float scaleY = (float) viewHeight / frameHeight;
+        float scale = RESIZE_COVER.equals(resizeMode) ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+        float width = frameWidth * scale;
+        float height = frameHeight * scale;
+        float left = (viewWidth - width) / 2f;
+        float top = (viewHeight - height) / 2f;
+        dest.set(left, top, left + width, top + height);
+    }
+}
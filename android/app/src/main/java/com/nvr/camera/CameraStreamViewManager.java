@@ -0,0 +1,52 @@
+package com.nvr.camera;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.uimanager.SimpleViewManager;
+import com.facebook.react.uimanager.ThemedReactContext;
+import com.facebook.react.uimanager.annotations.ReactProp;
+
+// <CameraStreamView cameraId="..." ip="..." resizeMode="contain|cover" />.
+// Without ip the view only renders a stream opened via CameraStream; with
+// ip it also holds its own subscription to the camera's shared connection.
+public class CameraStreamViewManager extends SimpleViewManager<CameraStreamView> {
+    private final CameraStreamRegistry registry;
+
+    public CameraStreamViewManager(CameraStreamRegistry registry) {
+        this.registry = registry;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "CameraStreamView";
+    }
+
+    @NonNull
+    @Override
+    protected CameraStreamView createViewInstance(@NonNull ThemedReactContext reactContext) {
+        return new CameraStreamView(reactContext, registry);
+    }
+
+    @ReactProp(name = "cameraId")
+    public void setCameraId(CameraStreamView view, @Nullable String cameraId) {
+        view.setCameraId(cameraId);
+    }
+
+    @ReactProp(name = "ip")
+    public void setIp(CameraStreamView view, @Nullable String ip) {
+        view.setIp(ip);
+    }
+
+    @ReactProp(name = "resizeMode")
+    public void setResizeMode(CameraStreamView view, @Nullable String resizeMode) {
+        view.setResizeMode(resizeMode);
+    }
+
+    @Override
+    public void onDropViewInstance(@NonNull CameraStreamView view) {
+        super.onDropViewInstance(view);
+        view.release();
+    }
+}
@@ -0,0 +1,82 @@
+package com.nvr.camera;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Binary camera frame protocol. Each binary WebSocket message is a fixed
+// 20-byte big-endian header followed by the raw JPEG:
+//
+//   0  u8   type       TYPE_JPEG
+//   1  u8   version    VERSION
+//   2  u16  reserved   0
+//   4  u32  seq        camera frame counter, wraps at 2^32
+//   8  i64  timestamp  capture time, ms since the epoch on the camera clock
+//   16 u32  length     payload bytes that follow the header
+//
+// The client asks for it with negotiateCommand() once the socket opens.
+// Firmware that doesn't know the command ignores it and keeps sending the
+// JSON/base64 text messages, which the client still accepts. No Android
+// dependencies so it can be exercised on a plain JVM.
+public final class FrameCodec {
+    public static final int HEADER_SIZE = 20;
+    public static final int TYPE_JPEG = 1;
+    public static final int VERSION = 1;
+
+    // Sanity cap on a single payload; anything larger is a corrupt header
+    public static final int MAX_PAYLOAD = 8 * 1024 * 1024;
+
+    private FrameCodec() {
+    }
+
+    // Decoded header fields. Reusable: decodeHeader overwrites every field.
+    public static final class Header {
+        public int type;
+        public int version;
+        public long seq;
+        public long timestampMs;
+        public int length;
+    }
+
+    // Text command sent on open to switch the camera to binary frames
+    public static String negotiateCommand() {
+        return "{\"command\":\"setStreamFormat\",\"format\":\"binary\",\"version\":" + VERSION + "}";
+    }
+
+    // Reads the header at the buffer's position without moving it. Returns
+    // false if the message is too short, of an unknown type or version, or
+    // its length doesn't match the bytes remaining after the header.
+    public static boolean decodeHeader(ByteBuffer message, Header out) {
+        int start = message.position();
+        int available = message.remaining();
+        if (available < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer in = message.duplicate().order(ByteOrder.BIG_ENDIAN);
+        out.type = in.get(start) & 0xff;
+        out.version = in.get(start + 1) & 0xff;
+        out.seq = in.getInt(start + 4) & 0xffffffffL;
+        out.timestampMs = in.getLong(start + 8);
+        long length = in.getInt(start + 16) & 0xffffffffL;
+        if (out.type != TYPE_JPEG || out.version != VERSION) {
+            return false;
+        }
+        if (length > MAX_PAYLOAD || length != available - HEADER_SIZE) {
+            return false;
+        }
+        out.length = (int) length;
+        return true;
+    }
+
+    // Writes header + payload into a new array; used by tools and tests
+    public static byte[] encode(long seq, long timestampMs, byte[] payload, int offset, int length) {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + length).order(ByteOrder.BIG_ENDIAN);
+        out.put((byte) TYPE_JPEG);
+        out.put((byte) VERSION);
+        out.putShort((short) 0);
+        out.putInt((int) seq);
+        out.putLong(timestampMs);
+        out.putInt(length);
+        out.put(payload, offset, length);
+        return out.array();
+    }
+}
@@ -0,0 +1,8 @@
+package com.nvr.camera;
+
+// Native consumer of camera frames. Called on the stream's network thread,
+// so implementations should hand the frame off rather than decode or write
+// it inline.
+public interface FrameListener {
+    void onFrame(CameraFrame frame);
+}
@@ -0,0 +1,179 @@
+package com.nvr.camera;
+
+import android.util.Log;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Size-classed pool of direct ByteBuffers backing CameraFrames. Classes are
+// powers of two from 16 KB to 8 MB; a frame takes the smallest class that
+// fits and goes back to the free list when its last reference is released.
+// Outstanding buffers are charged to their camera, and acquire() refuses
+// (returns null) once a camera would go over its cap, so a stalled consumer
+// costs that camera frames instead of growing the heap.
+//
+// Every outstanding buffer is tracked by a phantom reference on its frame.
+// A frame that is garbage collected without being released has its buffer
+// reclaimed on a later acquire(); with leak detection on (debug builds) the
+// allocation site is also logged.
+public class FramePool {
+    private static final String TAG = "FramePool";
+
+    private static final int MIN_CLASS_SHIFT = 14;
+    private static final int MAX_CLASS_SHIFT = 23;
+    private static final int CLASS_COUNT = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+
+    public static final int MAX_FRAME_SIZE = 1 << MAX_CLASS_SHIFT;
+    public static final long DEFAULT_CAMERA_CAP = 24L * 1024 * 1024;
+    private static final int MAX_IDLE_PER_CLASS = 4;
+
+    // Guarded by this
+    private final List<ArrayDeque<ByteBuffer>> freeLists = new ArrayList<>(CLASS_COUNT);
+    private final Map<String, Long> cameraBytes = new HashMap<>();
+    private final Set<Tracker> outstanding = new HashSet<>();
+    private long cameraCap = DEFAULT_CAMERA_CAP;
+    private boolean leakDetection = false;
+    private long leaks = 0;
+
+    private final ReferenceQueue<CameraFrame> collected = new ReferenceQueue<>();
+
+    // Ties a frame's buffer to its owner so it can be recovered if the
+    // frame is collected while still referenced
+    static final class Tracker extends PhantomReference<CameraFrame> {
+        final String cameraId;
+        final ByteBuffer buffer;
+        final Throwable allocationSite;
+
+        Tracker(CameraFrame frame, ReferenceQueue<CameraFrame> queue, ByteBuffer buffer, Throwable allocationSite) {
+            super(frame, queue);
+            this.cameraId = frame.cameraId;
+            this.buffer = buffer;
+            this.allocationSite = allocationSite;
+        }
+    }
+
+    public FramePool() {
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            freeLists.add(new ArrayDeque<ByteBuffer>());
+        }
+    }
+
+    public synchronized void setCameraCap(long bytes) {
+        cameraCap = bytes;
+    }
+
+    public synchronized void setLeakDetection(boolean enabled) {
+        leakDetection = enabled;
+    }
+
+    // Frames reclaimed after being collected without release()
+    public synchronized long getLeakCount() {
+        return leaks;
+    }
+
+    public synchronized long getCameraBytes(String cameraId) {
+        Long bytes = cameraBytes.get(cameraId);
+        return bytes != null ? bytes : 0;
+    }
+
+    // A frame with one reference and room for size bytes, or null if size is
+    // too large or the camera is at its cap. The caller fills data() and
+    // releases its reference when done.
+    CameraFrame acquire(String cameraId, long seq, long timestampMs, long captureTimeMs, int size) {
+        reclaimCollected();
+        int sizeClass = classOf(size);
+        if (sizeClass < 0) {
+            return null;
+        }
+        int capacity = 1 << (sizeClass + MIN_CLASS_SHIFT);
+
+        ByteBuffer buffer;
+        boolean debug;
+        synchronized (this) {
+            long used = getCameraBytes(cameraId);
+            if (used + capacity > cameraCap) {
+                return null;
+            }
+            cameraBytes.put(cameraId, used + capacity);
+            buffer = freeLists.get(sizeClass).pollFirst();
+            debug = leakDetection;
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+        buffer.limit(size);
+
+        CameraFrame frame = new CameraFrame(this, cameraId, seq, timestampMs, captureTimeMs, buffer, size);
+        Tracker tracker = new Tracker(frame, collected, buffer, debug ? new Throwable("Frame acquired here") : null);
+        frame.tracker = tracker;
+        synchronized (this) {
+            outstanding.add(tracker);
+        }
+        return frame;
+    }
+
+    // Called by CameraFrame when its reference count reaches zero
+    void recycle(CameraFrame frame) {
+        Tracker tracker = frame.tracker;
+        frame.tracker = null;
+        if (tracker == null) {
+            return;
+        }
+        tracker.clear();
+        synchronized (this) {
+            if (outstanding.remove(tracker)) {
+                giveBack(tracker.cameraId, tracker.buffer);
+            }
+        }
+    }
+
+    private void reclaimCollected() {
+        Reference<? extends CameraFrame> ref;
+        while ((ref = collected.poll()) != null) {
+            Tracker tracker = (Tracker) ref;
+            synchronized (this) {
+                if (!outstanding.remove(tracker)) {
+                    continue;
+                }
+                leaks++;
+                giveBack(tracker.cameraId, tracker.buffer);
+            }
+            if (tracker.allocationSite != null) {
+                Log.e(TAG, "CameraFrame for " + tracker.cameraId + " was never released", tracker.allocationSite);
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private void giveBack(String cameraId, ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        long used = getCameraBytes(cameraId) - capacity;
+        if (used > 0) {
+            cameraBytes.put(cameraId, used);
+        } else {
+            cameraBytes.remove(cameraId);
+        }
+        ArrayDeque<ByteBuffer> freeList = freeLists.get(classOf(capacity));
+        if (freeList.size() < MAX_IDLE_PER_CLASS) {
+            freeList.addFirst(buffer);
+        }
+    }
+
+    private static int classOf(int size) {
+        if (size > MAX_FRAME_SIZE) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_CLASS_SHIFT) - MIN_CLASS_SHIFT;
+    }
+}
@@ -0,0 +1,54 @@
+package com.nvr.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// A FrameListener that buffers frames for one consumer thread. The stream's
+// reader thread is the single writer; the consumer polls, and must
+// release() every frame it gets back. Frames that never reach the consumer
+// are counted per queue, so a slow renderer and a lossless recorder on the
+// same camera report their own drops.
+public abstract class FrameQueue implements FrameListener {
+    private final String name;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Runnable onAvailable = null;
+
+    protected FrameQueue(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDroppedFrames() {
+        return dropped.get();
+    }
+
+    // Run on the writer thread when the queue goes from empty to non-empty;
+    // typically posts the consumer's drain task
+    public void setOnAvailable(Runnable runnable) {
+        onAvailable = runnable;
+    }
+
+    // Next frame for the consumer, or null if there is none
+    public abstract CameraFrame poll();
+
+    // Releases everything still queued, without counting it as dropped
+    public void clear() {
+        CameraFrame frame;
+        while ((frame = poll()) != null) {
+            frame.release();
+        }
+    }
+
+    protected void countDropped() {
+        dropped.incrementAndGet();
+    }
+
+    protected void signalAvailable() {
+        Runnable runnable = onAvailable;
+        if (runnable != null) {
+            runnable.run();
+        }
+    }
+}
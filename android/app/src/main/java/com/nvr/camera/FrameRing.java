@@ -0,0 +1,66 @@
+package com.nvr.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded single-producer/single-consumer ring that keeps every frame until
+// it is full. When the consumer falls a whole ring behind, incoming frames
+// are dropped (and counted) rather than overwriting queued ones, so what the
+// consumer does get is contiguous. For consumers that need every frame,
+// like the recorder.
+public class FrameRing extends FrameQueue {
+    private final AtomicReferenceArray<CameraFrame> slots;
+    private final int mask;
+    // Next slot to read; written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write; written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+
+    // capacity is rounded up to a power of two
+    public FrameRing(String name, int capacity) {
+        super(name);
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    @Override
+    public void onFrame(CameraFrame frame) {
+        long t = tail.get();
+        long h = head.get();
+        if (t - h > mask) {
+            countDropped();
+            return;
+        }
+        slots.lazySet((int) (t & mask), frame.retain());
+        // Volatile write publishes the slot, and pairs with the consumer's
+        // head write so one of the two sides always sees the other: either
+        // the consumer's last poll finds this frame, or head has caught up
+        // to t here and the consumer is woken
+        tail.set(t + 1);
+        if (head.get() == t) {
+            signalAvailable();
+        }
+    }
+
+    @Override
+    public CameraFrame poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) (h & mask);
+        CameraFrame frame = slots.get(index);
+        slots.lazySet(index, null);
+        head.set(h + 1);
+        return frame;
+    }
+}
@@ -0,0 +1,76 @@
+package com.nvr.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+// Decodes stream JPEGs at the smallest power-of-two subsample that still
+// covers the target size, into a pooled bitmap of the resulting dimensions.
+// A 1920x1080 frame shown in a 300px card decodes at 1/4 or 1/8 scale,
+// which cuts both decode time and bitmap memory by the square of that.
+// One instance per decoding thread.
+final class JpegDecoder {
+    private static final String TAG = "JpegDecoder";
+
+    // libjpeg scales natively down to 1/8; beyond that it just subsamples
+    private static final int MAX_SAMPLE_SIZE = 8;
+
+    private final BitmapPool pool;
+    private final BitmapFactory.Options bounds = new BitmapFactory.Options();
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+
+    JpegDecoder(BitmapPool pool) {
+        this.pool = pool;
+        this.bounds.inJustDecodeBounds = true;
+        this.options.inMutable = true;
+        this.options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+    }
+
+    // Returns a bitmap the caller owns (hand it back with pool.put), or null
+    // if the data isn't a decodable image. A target of 0 decodes full size.
+    Bitmap decode(byte[] data, int length, int targetWidth, int targetHeight) {
+        bounds.outWidth = 0;
+        bounds.outHeight = 0;
+        BitmapFactory.decodeByteArray(data, 0, length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = sampleSize(bounds.outWidth, bounds.outHeight, targetWidth, targetHeight);
+        options.inSampleSize = sampleSize;
+        options.inBitmap = pool.get(scaled(bounds.outWidth, sampleSize), scaled(bounds.outHeight, sampleSize));
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, length, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap couldn't be reused; decode into a fresh one
+            Log.w(TAG, "Bitmap reuse failed, decoding without inBitmap", e);
+            Bitmap rejected = options.inBitmap;
+            options.inBitmap = null;
+            if (rejected != null) {
+                rejected.recycle();
+            }
+            return BitmapFactory.decodeByteArray(data, 0, length, options);
+        } finally {
+            options.inBitmap = null;
+        }
+    }
+
+    // Largest power of two that keeps both dimensions at or above the target
+    static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+        int sampleSize = 1;
+        while (sampleSize < MAX_SAMPLE_SIZE
+                && width / (sampleSize * 2) >= targetWidth
+                && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Output dimension for a subsampled JPEG decode (rounded up, as libjpeg does)
+    private static int scaled(int size, int sampleSize) {
+        return (size + sampleSize - 1) / sampleSize;
+    }
+}
@@ -0,0 +1,274 @@
+package com.nvr.camera;
+
+import java.nio.ByteBuffer;
+
+// Allocation-free scanner for legacy {"type":"video","data":"<base64>"}
+// messages. It walks the top-level object once, records where the "type"
+// and "data" string values sit in the text, and decodes the base64 span
+// straight into the frame's pooled buffer. No substring, JSONObject or
+// intermediate byte[] is created. Anything that isn't a well-formed video
+// message is reported as such and left to a full JSON parse.
+final class JsonVideoScanner {
+    private static final int INVALID = -1;
+    private static final int SKIP = -2;
+    private static final int[] DECODE = new int[128];
+
+    static {
+        for (int i = 0; i < DECODE.length; i++) {
+            DECODE[i] = INVALID;
+        }
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = i;
+        }
+        // URL-safe variants, in case firmware uses them
+        DECODE['-'] = 62;
+        DECODE['_'] = 63;
+        DECODE[' '] = SKIP;
+        DECODE['\r'] = SKIP;
+        DECODE['\n'] = SKIP;
+        DECODE['\t'] = SKIP;
+    }
+
+    // Value spans from the last scan, as [start, end) offsets into the text
+    // between the quotes. Reusable: scan() overwrites every field.
+    static final class Spans {
+        int typeStart;
+        int typeEnd;
+        int dataStart;
+        int dataEnd;
+
+        boolean hasType() {
+            return typeStart >= 0;
+        }
+
+        boolean hasData() {
+            return dataStart >= 0;
+        }
+    }
+
+    private JsonVideoScanner() {
+    }
+
+    // True if text is a JSON object whose "type" value is the string "video"
+    // and which has a string "data" value. Spans are filled in either way as
+    // far as the scan got.
+    static boolean scanVideo(CharSequence text, Spans out) {
+        return scan(text, out)
+            && out.hasType()
+            && out.hasData()
+            && regionEquals(text, out.typeStart, out.typeEnd, "video");
+    }
+
+    // Walks the top-level object, recording the "type" and "data" string
+    // values. Returns false if the text isn't a single JSON object.
+    static boolean scan(CharSequence text, Spans out) {
+        out.typeStart = out.typeEnd = out.dataStart = out.dataEnd = -1;
+        int length = text.length();
+        int i = skipWhitespace(text, 0);
+        if (i >= length || text.charAt(i) != '{') {
+            return false;
+        }
+        i = skipWhitespace(text, i + 1);
+        if (i < length && text.charAt(i) == '}') {
+            return skipWhitespace(text, i + 1) == length;
+        }
+
+        while (i < length) {
+            if (text.charAt(i) != '"') {
+                return false;
+            }
+            int keyStart = i + 1;
+            int keyEnd = endOfString(text, keyStart);
+            if (keyEnd < 0) {
+                return false;
+            }
+            i = skipWhitespace(text, keyEnd + 1);
+            if (i >= length || text.charAt(i) != ':') {
+                return false;
+            }
+            i = skipWhitespace(text, i + 1);
+            if (i >= length) {
+                return false;
+            }
+
+            int valueEnd;
+            if (text.charAt(i) == '"') {
+                int valueStart = i + 1;
+                valueEnd = endOfString(text, valueStart);
+                if (valueEnd < 0) {
+                    return false;
+                }
+                if (regionEquals(text, keyStart, keyEnd, "type")) {
+                    out.typeStart = valueStart;
+                    out.typeEnd = valueEnd;
+                } else if (regionEquals(text, keyStart, keyEnd, "data")) {
+                    out.dataStart = valueStart;
+                    out.dataEnd = valueEnd;
+                }
+                i = valueEnd + 1;
+            } else {
+                i = skipValue(text, i);
+                if (i < 0) {
+                    return false;
+                }
+            }
+
+            i = skipWhitespace(text, i);
+            if (i >= length) {
+                return false;
+            }
+            char c = text.charAt(i);
+            if (c == '}') {
+                return skipWhitespace(text, i + 1) == length;
+            }
+            if (c != ',') {
+                return false;
+            }
+            i = skipWhitespace(text, i + 1);
+        }
+        return false;
+    }
+
+    // Upper bound on the bytes decodeBase64 can write for the data span
+    static int maxDecodedLength(Spans spans) {
+        int chars = spans.dataEnd - spans.dataStart;
+        return chars / 4 * 3 + 3;
+    }
+
+    // Decodes the base64 data span into dst from index 0 up to its limit,
+    // using absolute puts so dst's position is left alone. Accepts padding,
+    // line breaks and the "\/" escape JSON encoders may emit for '/'.
+    // Returns the number of bytes written, or -1 if the span isn't valid
+    // base64 or dst is too small.
+    static int decodeBase64(CharSequence text, Spans spans, ByteBuffer dst) {
+        int capacity = dst.limit();
+        int bits = 0;
+        int count = 0;
+        int written = 0;
+        int end = spans.dataEnd;
+        for (int i = spans.dataStart; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= end) {
+                    return -1;
+                }
+                char escaped = text.charAt(++i);
+                if (escaped == 'n' || escaped == 'r' || escaped == 't') {
+                    continue;
+                }
+                if (escaped != '/') {
+                    return -1;
+                }
+                c = '/';
+            }
+            if (c == '=') {
+                break;
+            }
+            int value = c < 128 ? DECODE[c] : INVALID;
+            if (value == SKIP) {
+                continue;
+            }
+            if (value == INVALID) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            if (++count == 4) {
+                if (written + 3 > capacity) {
+                    return -1;
+                }
+                dst.put(written++, (byte) (bits >> 16));
+                dst.put(written++, (byte) (bits >> 8));
+                dst.put(written++, (byte) bits);
+                bits = 0;
+                count = 0;
+            }
+        }
+
+        // Trailing partial quantum, padded or not
+        if (count == 1) {
+            return -1;
+        }
+        if (count > 1) {
+            if (written + count - 1 > capacity) {
+                return -1;
+            }
+            bits <<= 6 * (4 - count);
+            dst.put(written++, (byte) (bits >> 16));
+            if (count == 3) {
+                dst.put(written++, (byte) (bits >> 8));
+            }
+        }
+        return written;
+    }
+
+    // Index of the closing quote of a string whose content starts at start,
+    // or -1 if it is unterminated
+    private static int endOfString(CharSequence text, int start) {
+        int length = text.length();
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Skips a non-string value (number, literal, object or array) starting
+    // at start. Returns the index after it, or -1 if it is malformed.
+    private static int skipValue(CharSequence text, int start) {
+        int length = text.length();
+        int depth = 0;
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                if (depth == 0) {
+                    return -1;
+                }
+                i = endOfString(text, i + 1);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    return i == start ? -1 : i;
+                }
+                if (--depth == 0) {
+                    return i + 1;
+                }
+            } else if (depth == 0 && (c == ',' || isWhitespace(c))) {
+                return i == start ? -1 : i;
+            }
+        }
+        return depth == 0 && length > start ? length : -1;
+    }
+
+    private static int skipWhitespace(CharSequence text, int i) {
+        int length = text.length();
+        while (i < length && isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static boolean regionEquals(CharSequence text, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,255 @@
+package com.nvr.camera;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Probes a list of hosts for a camera WebSocket endpoint from a single
+// thread. Each target gets a non-blocking TCP connect, then a WebSocket
+// upgrade request for the camera path; a "101" status line counts as a hit.
+// At most maxInFlight probes run at once and each has a hard deadline, so
+// dead addresses cost a timeout slot, not a thread. Unresolved targets are
+// resolved here, on the sweep thread; those that still do not resolve, or
+// that cannot be connected to at all, count as misses.
+//
+// Plain java.nio only, so it can be pointed at a stand-in server on
+// 127.0.0.1 outside Android.
+final class LanSweeper implements Runnable {
+    interface Listener {
+        void onCameraFound(InetSocketAddress address);
+
+        void onComplete(int probed, int found, boolean cancelled);
+    }
+
+    private static final int RESPONSE_LIMIT = 512;
+    // Fixed key: we only care whether the upgrade is accepted
+    private static final String WEBSOCKET_KEY = "dGhlIHNhbXBsZSBub25jZQ==";
+
+    private final List<InetSocketAddress> targets;
+    private final String path;
+    private final int maxInFlight;
+    private final long connectTimeoutMs;
+    private final long probeTimeoutMs;
+    private final Listener listener;
+
+    private volatile boolean cancelled = false;
+    private volatile Selector selector;
+
+    private static final class Probe {
+        final InetSocketAddress target;
+        final SocketChannel channel;
+        final ByteBuffer request;
+        final ByteBuffer response = ByteBuffer.allocate(RESPONSE_LIMIT);
+        long deadline;
+
+        Probe(InetSocketAddress target, SocketChannel channel, ByteBuffer request, long deadline) {
+            this.target = target;
+            this.channel = channel;
+            this.request = request;
+            this.deadline = deadline;
+        }
+    }
+
+    LanSweeper(List<InetSocketAddress> targets, String path, int maxInFlight,
+               long connectTimeoutMs, long probeTimeoutMs, Listener listener) {
+        this.targets = targets;
+        this.path = path;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.probeTimeoutMs = probeTimeoutMs;
+        this.listener = listener;
+    }
+
+    void cancel() {
+        cancelled = true;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        int next = 0;
+        int found = 0;
+        List<Probe> inFlight = new ArrayList<>(maxInFlight);
+
+        try (Selector sel = Selector.open()) {
+            selector = sel;
+
+            while (!cancelled && (next < targets.size() || !inFlight.isEmpty())) {
+                long now = System.currentTimeMillis();
+                while (inFlight.size() < maxInFlight && next < targets.size()) {
+                    Probe probe = start(sel, targets.get(next++), now);
+                    if (probe != null) {
+                        inFlight.add(probe);
+                    }
+                }
+                if (inFlight.isEmpty()) {
+                    continue;
+                }
+
+                long wait = Long.MAX_VALUE;
+                for (Probe probe : inFlight) {
+                    wait = Math.min(wait, probe.deadline - now);
+                }
+                sel.select(Math.max(1, wait));
+
+                Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Probe probe = (Probe) key.attachment();
+                    int result = advance(key, probe);
+                    if (result != 0) {
+                        inFlight.remove(probe);
+                        close(probe);
+                        if (result > 0) {
+                            found++;
+                            listener.onCameraFound(probe.target);
+                        }
+                    }
+                }
+
+                now = System.currentTimeMillis();
+                Iterator<Probe> it = inFlight.iterator();
+                while (it.hasNext()) {
+                    Probe probe = it.next();
+                    if (now >= probe.deadline) {
+                        it.remove();
+                        close(probe);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Selector failure ends the sweep; report what we have
+        } finally {
+            for (Probe probe : inFlight) {
+                close(probe);
+            }
+            selector = null;
+            // Callers wait on this; it must run however the sweep ends
+            listener.onComplete(next, found, cancelled);
+        }
+    }
+
+    private Probe start(Selector sel, InetSocketAddress target, long now) {
+        if (target.isUnresolved()) {
+            // Blocks this thread only; the deadline starts once it is done
+            target = new InetSocketAddress(target.getHostString(), target.getPort());
+            if (target.isUnresolved()) {
+                // connect() would throw UnresolvedAddressException
+                return null;
+            }
+            now = System.currentTimeMillis();
+        }
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            String request = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + target.getHostString() + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + WEBSOCKET_KEY + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+            Probe probe = new Probe(target, channel,
+                ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII)), now + connectTimeoutMs);
+
+            if (channel.connect(target)) {
+                probe.deadline = now + probeTimeoutMs;
+                channel.register(sel, SelectionKey.OP_WRITE, probe);
+            } else {
+                channel.register(sel, SelectionKey.OP_CONNECT, probe);
+            }
+            return probe;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            return null;
+        } catch (RuntimeException e) {
+            // Unsupported address type and the like: a miss, not a dead sweep
+            closeQuietly(channel);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing to clean up
+            }
+        }
+    }
+
+    // Returns 1 for a hit, -1 for a miss, 0 while the probe is still running
+    private int advance(SelectionKey key, Probe probe) {
+        try {
+            if (key.isConnectable()) {
+                if (!probe.channel.finishConnect()) {
+                    return 0;
+                }
+                probe.deadline = System.currentTimeMillis() + probeTimeoutMs;
+                key.interestOps(SelectionKey.OP_WRITE);
+                return 0;
+            }
+            if (key.isWritable()) {
+                probe.channel.write(probe.request);
+                if (!probe.request.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+                return 0;
+            }
+            if (key.isReadable()) {
+                int read = probe.channel.read(probe.response);
+                int status = statusCode(probe.response);
+                if (status >= 0) {
+                    return status == 101 ? 1 : -1;
+                }
+                // Closed or no status line within the limit: not a camera
+                return read < 0 || !probe.response.hasRemaining() ? -1 : 0;
+            }
+        } catch (IOException e) {
+            // Connection refused, reset, unreachable
+            return -1;
+        }
+        return 0;
+    }
+
+    // Status code of "HTTP/1.1 101 ..." once the first line is complete
+    private static int statusCode(ByteBuffer response) {
+        byte[] data = response.array();
+        int length = response.position();
+        for (int i = 0; i + 1 < length; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                String line = new String(data, 0, i, StandardCharsets.US_ASCII);
+                String[] parts = line.split(" ");
+                if (parts.length >= 2 && parts[0].startsWith("HTTP/")) {
+                    try {
+                        return Integer.parseInt(parts[1]);
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+                return 0;
+            }
+        }
+        return -1;
+    }
+
+    private static void close(Probe probe) {
+        try {
+            probe.channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.nvr.camera;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+// Holds only the newest frame. Each new frame is swapped in atomically and
+// the one it displaces, if the consumer never took it, is released and
+// counted as dropped. For consumers that should always see the freshest
+// frame and never fall behind, like the live view.
+public class LatestFrameMailbox extends FrameQueue {
+    private final AtomicReference<CameraFrame> slot = new AtomicReference<>();
+
+    public LatestFrameMailbox(String name) {
+        super(name);
+    }
+
+    @Override
+    public void onFrame(CameraFrame frame) {
+        CameraFrame previous = slot.getAndSet(frame.retain());
+        if (previous == null) {
+            signalAvailable();
+        } else {
+            previous.release();
+            countDropped();
+        }
+    }
+
+    @Override
+    public CameraFrame poll() {
+        return slot.getAndSet(null);
+    }
+}
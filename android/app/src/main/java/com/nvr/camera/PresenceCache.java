@@ -0,0 +1,69 @@
+package com.nvr.camera;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Camera hosts seen through announcements, keyed by IP. Each entry lives for
+// the TTL its last announcement carried; goodbyes (TTL 0) remove it at once.
+final class PresenceCache {
+    static final class Entry {
+        final String ip;
+        final String name;
+        final int port;
+        final String source;
+        final long expiresAt;
+
+        Entry(String ip, String name, int port, String source, long expiresAt) {
+            this.ip = ip;
+            this.name = name;
+            this.port = port;
+            this.source = source;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    // For live announcements (ttlMs > 0; goodbyes go through remove()).
+    // Returns the new entry when the host was not known before, else null
+    synchronized Entry update(Announcement announcement, long now) {
+        Entry previous = entries.get(announcement.ip);
+
+        // Keep details learned from the other protocol if this one lacks them
+        String name = announcement.name != null ? announcement.name : previous != null ? previous.name : null;
+        int port = announcement.port != 0 ? announcement.port : previous != null ? previous.port : 0;
+        Entry entry = new Entry(announcement.ip, name, port, announcement.source, now + announcement.ttlMs);
+        entries.put(announcement.ip, entry);
+        return previous == null ? entry : null;
+    }
+
+    synchronized Entry remove(String ip) {
+        return entries.remove(ip);
+    }
+
+    synchronized List<Entry> expire(long now) {
+        List<Entry> expired = new ArrayList<>();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiresAt <= now) {
+                expired.add(entry);
+                it.remove();
+            }
+        }
+        return expired;
+    }
+
+    synchronized List<Entry> snapshot(long now) {
+        List<Entry> live = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            if (entry.expiresAt > now) {
+                live.add(entry);
+            }
+        }
+        return live;
+    }
+}
@@ -0,0 +1,192 @@
+package com.nvr.camera;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// Decides when camera sockets (re)connect, for every camera in the hub.
+// A dropped connection that still has subscribers is retried after a delay
+// drawn uniformly from [0, min(MAX_BACKOFF_MS, BASE_BACKOFF_MS * 2^n)]
+// ("full jitter"), n being its consecutive failures, so cameras that fail
+// together don't retry together. Due connects wait in a queue and at most
+// MAX_CONCURRENT_ATTEMPTS handshakes run at once across all cameras. When
+// the Wi-Fi network comes back every waiting camera is retried right away,
+// still through the same cap.
+//
+// All state lives on the main looper; the public methods can be called
+// from any thread.
+final class ReconnectScheduler {
+    private static final String TAG = "ReconnectScheduler";
+
+    private static final long BASE_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60 * 1000;
+    private static final int MAX_CONCURRENT_ATTEMPTS = 3;
+
+    interface Connector {
+        // True if cameraId still has subscribers
+        boolean isWanted(String cameraId);
+
+        // Starts a connection attempt; false if none was needed (already
+        // open or connecting, or the camera is gone)
+        boolean connect(String cameraId);
+    }
+
+    private final Connector connector;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+
+    // Main looper only
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private final Map<String, Integer> failures = new HashMap<>();
+    private final Map<String, Runnable> timers = new HashMap<>();
+
+    private ConnectivityManager connectivityManager = null;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    retryWaiting();
+                }
+            });
+        }
+    };
+
+    ReconnectScheduler(Connector connector) {
+        this.connector = connector;
+    }
+
+    // Starts watching for the Wi-Fi network to come back; idempotent
+    synchronized void start(Context context) {
+        if (connectivityManager != null) {
+            return;
+        }
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkRequest request = new NetworkRequest.Builder()
+            .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+            .build();
+        try {
+            connectivityManager.registerNetworkCallback(request, networkCallback);
+        } catch (RuntimeException e) {
+            // Missing ACCESS_NETWORK_STATE or too many callbacks; backoff still works
+            Log.w(TAG, "Could not watch the Wi-Fi network", e);
+        }
+    }
+
+    // Connect as soon as an attempt slot is free
+    void requestConnect(final String cameraId) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                cancelTimer(cameraId);
+                enqueue(cameraId);
+                pump();
+            }
+        });
+    }
+
+    // Forget cameraId entirely, e.g. once its last subscriber has gone
+    void cancel(final String cameraId) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                cancelTimer(cameraId);
+                queue.remove(cameraId);
+                failures.remove(cameraId);
+                if (inFlight.remove(cameraId)) {
+                    pump();
+                }
+            }
+        });
+    }
+
+    // Fed with every client state change
+    void onStateChanged(final String cameraId, final String state) {
+        if (CameraStreamClient.STATE_CONNECTING.equals(state)) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                inFlight.remove(cameraId);
+                if (CameraStreamClient.STATE_OPEN.equals(state)) {
+                    failures.remove(cameraId);
+                } else if (connector.isWanted(cameraId) && !timers.containsKey(cameraId) && !queue.contains(cameraId)) {
+                    scheduleRetry(cameraId);
+                }
+                pump();
+            }
+        });
+    }
+
+    // Main looper only
+    private void scheduleRetry(final String cameraId) {
+        Integer count = failures.get(cameraId);
+        int failed = count != null ? count : 0;
+        failures.put(cameraId, failed + 1);
+
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(failed, 16));
+        long delay = (long) (random.nextDouble() * ceiling);
+        Runnable timer = new Runnable() {
+            @Override
+            public void run() {
+                timers.remove(cameraId);
+                enqueue(cameraId);
+                pump();
+            }
+        };
+        timers.put(cameraId, timer);
+        handler.postDelayed(timer, delay);
+    }
+
+    // Main looper only
+    private void retryWaiting() {
+        if (timers.isEmpty()) {
+            return;
+        }
+        for (String cameraId : new HashSet<>(timers.keySet())) {
+            cancelTimer(cameraId);
+            failures.remove(cameraId);
+            enqueue(cameraId);
+        }
+        pump();
+    }
+
+    // Main looper only
+    private void pump() {
+        while (inFlight.size() < MAX_CONCURRENT_ATTEMPTS && !queue.isEmpty()) {
+            String cameraId = queue.pollFirst();
+            if (connector.isWanted(cameraId) && connector.connect(cameraId)) {
+                inFlight.add(cameraId);
+            }
+        }
+    }
+
+    private void enqueue(String cameraId) {
+        if (!queue.contains(cameraId) && !inFlight.contains(cameraId)) {
+            queue.addLast(cameraId);
+        }
+    }
+
+    private void cancelTimer(String cameraId) {
+        Runnable timer = timers.remove(cameraId);
+        if (timer != null) {
+            handler.removeCallbacks(timer);
+        }
+    }
+}
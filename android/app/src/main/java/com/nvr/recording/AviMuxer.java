@@ -0,0 +1,295 @@
+package com.nvr.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Streaming MJPEG-in-AVI muxer. Pure Java, single pass: frames are appended
+// to the 'movi' list as '00dc' chunks, and their idx1 entries go through a
+// small fixed buffer into a spool channel, so memory stays constant however
+// long the segment gets. flush(), called periodically by the owner, patches
+// the header sizes and counts in place, which keeps the file a valid
+// (indexless) AVI that players can open while it is still being written.
+// finish() appends the spooled idx1 and marks the file as indexed.
+//
+// AVI is constant frame rate; the rate is the average over the frames so
+// far. Exact per-frame times live in the segment's frame index.
+//
+// Not thread safe.
+final class AviMuxer {
+    // RIFF sizes are 32-bit; stay well clear for players that read them signed
+    static final long MAX_FILE_BYTES = Integer.MAX_VALUE - 64L * 1024 * 1024;
+
+    private static final int DEFAULT_RATE_MILLI_FPS = 30000;
+
+    private static final int AVIF_HASINDEX = 0x10;
+    private static final int AVIF_ISINTERLEAVED = 0x100;
+    private static final int AVIIF_KEYFRAME = 0x10;
+
+    // Fixed header layout; see writeHeader()
+    private static final int RIFF_SIZE_POS = 4;
+    private static final int AVIH_MICROS_PER_FRAME_POS = 32;
+    private static final int AVIH_MAX_BYTES_PER_SEC_POS = 36;
+    private static final int AVIH_FLAGS_POS = 44;
+    private static final int AVIH_TOTAL_FRAMES_POS = 48;
+    private static final int AVIH_SUGGESTED_BUFFER_POS = 60;
+    private static final int STRH_RATE_POS = 132;
+    private static final int STRH_LENGTH_POS = 140;
+    private static final int STRH_SUGGESTED_BUFFER_POS = 144;
+    private static final int MOVI_SIZE_POS = 216;
+    // idx1 offsets are relative to the 'movi' fourcc
+    private static final int MOVI_FOURCC_POS = 220;
+    static final int HEADER_SIZE = 224;
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int INDEX_BUFFER_ENTRIES = 256;
+
+    private final FileChannel out;
+    private final FileChannel indexSpool;
+    private final ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer pad = ByteBuffer.allocate(1);
+    private final ByteBuffer[] gather = new ByteBuffer[3];
+    private final ByteBuffer indexBuffer =
+        ByteBuffer.allocate(INDEX_BUFFER_ENTRIES * INDEX_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer patch = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+    private boolean headerWritten = false;
+    private boolean finished = false;
+    // End of the 'movi' list, where the next chunk goes
+    private long position = HEADER_SIZE;
+    private int frames = 0;
+    private int maxChunkSize = 0;
+    private long payloadBytes = 0;
+    private long firstTimestampMs = 0;
+    private long lastTimestampMs = 0;
+
+    // out must be empty; indexSpool is scratch space for idx1 entries and is
+    // left for the caller to delete
+    AviMuxer(FileChannel out, FileChannel indexSpool) {
+        this.out = out;
+        this.indexSpool = indexSpool;
+    }
+
+    // Appends one JPEG (the remaining bytes of jpeg) and returns the file
+    // offset of its data. The first frame determines the video size.
+    long writeFrame(ByteBuffer jpeg, long timestampMs) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Muxer already finished");
+        }
+        int length = jpeg.remaining();
+        if (!headerWritten) {
+            int[] size = JpegInfo.readSize(jpeg);
+            writeHeader(size != null ? size[0] : 0, size != null ? size[1] : 0);
+            firstTimestampMs = timestampMs;
+        }
+
+        long chunkPos = position;
+        chunkHeader.clear();
+        chunkHeader.putInt(fourcc("00dc")).putInt(length).flip();
+        gather[0] = chunkHeader;
+        gather[1] = jpeg;
+        int padding = length & 1;
+        pad.clear().limit(padding);
+        gather[2] = pad;
+        // One gathering write per frame, at the channel position (= position)
+        long remaining = 8L + length + padding;
+        while (remaining > 0) {
+            remaining -= out.write(gather);
+        }
+        position += 8L + length + padding;
+        addFrame(chunkPos, length, timestampMs);
+        return chunkPos + 8;
+    }
+
+    // Crash recovery: reopens a file whose header is intact, with an empty
+    // 'movi' list. The chunks already on disk are then re-registered in
+    // order with adoptFrame(), and the caller truncates the file to
+    // getMoviEnd() before finish().
+    static AviMuxer resume(FileChannel out, FileChannel indexSpool) throws IOException {
+        AviMuxer muxer = new AviMuxer(out, indexSpool);
+        muxer.headerWritten = true;
+        out.position(HEADER_SIZE);
+        return muxer;
+    }
+
+    // Registers a chunk of length bytes already at getMoviEnd()
+    void adoptFrame(int length, long timestampMs) throws IOException {
+        if (frames == 0) {
+            firstTimestampMs = timestampMs;
+        }
+        long chunkPos = position;
+        position += 8L + length + (length & 1);
+        out.position(position);
+        addFrame(chunkPos, length, timestampMs);
+    }
+
+    // Spools the idx1 entry for a chunk and updates the header statistics
+    private void addFrame(long chunkPos, int length, long timestampMs) throws IOException {
+        if (indexBuffer.remaining() < INDEX_ENTRY_SIZE) {
+            flushIndex();
+        }
+        indexBuffer.putInt(fourcc("00dc"))
+            .putInt(AVIIF_KEYFRAME)
+            .putInt((int) (chunkPos - MOVI_FOURCC_POS))
+            .putInt(length);
+        frames++;
+        payloadBytes += length;
+        maxChunkSize = Math.max(maxChunkSize, length);
+        lastTimestampMs = timestampMs;
+    }
+
+    // Makes everything written so far visible to readers of the file
+    void flush() throws IOException {
+        if (!headerWritten) {
+            return;
+        }
+        flushIndex();
+        patchHeader(position, 0);
+    }
+
+    // Appends idx1 and final sizes. The channels stay open.
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (!headerWritten) {
+            writeHeader(0, 0);
+        }
+        flushIndex();
+        long indexBytes = (long) frames * INDEX_ENTRY_SIZE;
+        chunkHeader.clear();
+        chunkHeader.putInt(fourcc("idx1")).putInt((int) indexBytes).flip();
+        writeFully(chunkHeader, position);
+        indexSpool.position(0);
+        long copied = 0;
+        while (copied < indexBytes) {
+            long n = out.transferFrom(indexSpool, position + 8 + copied, indexBytes - copied);
+            if (n <= 0) {
+                throw new IOException("Short idx1 copy: " + copied + " of " + indexBytes);
+            }
+            copied += n;
+        }
+        patchHeader(position, 8 + indexBytes);
+    }
+
+    int getFrames() {
+        return frames;
+    }
+
+    // End of the 'movi' list: where the next chunk (or idx1) goes
+    long getMoviEnd() {
+        return position;
+    }
+
+    // File length once finish() has appended the index
+    long getProjectedBytes() {
+        return position + 8 + (long) frames * INDEX_ENTRY_SIZE;
+    }
+
+    private void writeHeader(int width, int height) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(fourcc("RIFF")).putInt(HEADER_SIZE - 8).putInt(fourcc("AVI "));
+        header.putInt(fourcc("LIST")).putInt(HEADER_SIZE - 12 - 20).putInt(fourcc("hdrl"));
+
+        header.putInt(fourcc("avih")).putInt(56);
+        header.putInt(1000000000 / DEFAULT_RATE_MILLI_FPS);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(AVIF_ISINTERLEAVED);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(1);
+        header.putInt(0);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(0).putInt(0).putInt(0).putInt(0);
+
+        header.putInt(fourcc("LIST")).putInt(HEADER_SIZE - 12 - 96).putInt(fourcc("strl"));
+        header.putInt(fourcc("strh")).putInt(56);
+        header.putInt(fourcc("vids"));
+        header.putInt(fourcc("MJPG"));
+        header.putInt(0);
+        header.putShort((short) 0).putShort((short) 0);
+        header.putInt(0);
+        // Rate / scale = frames per second
+        header.putInt(1000);
+        header.putInt(DEFAULT_RATE_MILLI_FPS);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(-1);
+        header.putInt(0);
+        header.putShort((short) 0).putShort((short) 0).putShort((short) width).putShort((short) height);
+
+        header.putInt(fourcc("strf")).putInt(40);
+        header.putInt(40);
+        header.putInt(width);
+        header.putInt(height);
+        header.putShort((short) 1);
+        header.putShort((short) 24);
+        header.putInt(fourcc("MJPG"));
+        header.putInt(width * height * 3);
+        header.putInt(0).putInt(0).putInt(0).putInt(0);
+
+        header.putInt(fourcc("LIST")).putInt(4).putInt(fourcc("movi"));
+        if (header.position() != HEADER_SIZE) {
+            throw new IllegalStateException("AVI header is " + header.position() + " bytes");
+        }
+        header.flip();
+        writeFully(header, 0);
+        out.position(HEADER_SIZE);
+        headerWritten = true;
+    }
+
+    // trailerBytes is whatever follows the 'movi' list (the idx1 chunk)
+    private void patchHeader(long moviEnd, long trailerBytes) throws IOException {
+        int rate = frameRateMilliFps();
+        putInt(RIFF_SIZE_POS, moviEnd + trailerBytes - 8);
+        putInt(MOVI_SIZE_POS, moviEnd - MOVI_FOURCC_POS);
+        putInt(AVIH_MICROS_PER_FRAME_POS, 1000000000L / rate);
+        long durationMs = Math.max(lastTimestampMs - firstTimestampMs, 1);
+        putInt(AVIH_MAX_BYTES_PER_SEC_POS, Math.min(payloadBytes * 1000 / durationMs, Integer.MAX_VALUE));
+        putInt(AVIH_FLAGS_POS, AVIF_ISINTERLEAVED | (trailerBytes > 0 ? AVIF_HASINDEX : 0));
+        putInt(AVIH_TOTAL_FRAMES_POS, frames);
+        putInt(AVIH_SUGGESTED_BUFFER_POS, maxChunkSize + 8);
+        putInt(STRH_RATE_POS, rate);
+        putInt(STRH_LENGTH_POS, frames);
+        putInt(STRH_SUGGESTED_BUFFER_POS, maxChunkSize + 8);
+    }
+
+    // Average rate over the frames so far, in thousandths of a frame per second
+    private int frameRateMilliFps() {
+        long durationMs = lastTimestampMs - firstTimestampMs;
+        if (frames < 2 || durationMs <= 0) {
+            return DEFAULT_RATE_MILLI_FPS;
+        }
+        long rate = (frames - 1) * 1000000L / durationMs;
+        return (int) Math.max(1, Math.min(rate, 1000000));
+    }
+
+    private void flushIndex() throws IOException {
+        indexBuffer.flip();
+        while (indexBuffer.hasRemaining()) {
+            indexSpool.write(indexBuffer);
+        }
+        indexBuffer.clear();
+    }
+
+    private void putInt(int pos, long value) throws IOException {
+        patch.clear();
+        patch.putInt((int) value).flip();
+        writeFully(patch, pos);
+    }
+
+    private void writeFully(ByteBuffer buffer, long pos) throws IOException {
+        while (buffer.hasRemaining()) {
+            pos += out.write(buffer, pos);
+        }
+    }
+
+    static int fourcc(String code) {
+        return code.charAt(0) | code.charAt(1) << 8 | code.charAt(2) << 16 | code.charAt(3) << 24;
+    }
+}
@@ -0,0 +1,336 @@
+package com.nvr.recording;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.nvr.camera.CameraFrame;
+import com.nvr.camera.CameraStreamClient;
+import com.nvr.camera.CameraStreamRegistry;
+import com.nvr.camera.FrameRing;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+// Records one camera to disk. The recorder holds its own subscription to
+// the camera's shared hub connection and takes frames through a FrameRing,
+// so it sees every frame in order unless the disk falls a whole ring
+// behind. A worker thread drains the ring into the current segment and
+// starts a new segment once the current one is segmentDurationMs long or
+// would grow past maxSegmentBytes. An I/O error ends the recording in
+// STATE_ERROR; whatever was written so far is kept.
+//
+// Segments are journaled: opened before the file is created, synced and
+// marked durable about once a second, closed once finalized and in the
+// time index, and kept until JS has saved them. A segment the process dies
+// in is repaired from the journal on the next start, losing at most the
+// last second.
+final class CameraRecorder {
+    private static final String TAG = "CameraRecorder";
+
+    static final String STATE_RECORDING = "recording";
+    static final String STATE_STOPPED = "stopped";
+    static final String STATE_ERROR = "error";
+
+    static final String SEGMENT_EXTENSION = ".avi";
+
+    // About two seconds of video at 30 fps
+    private static final int RING_CAPACITY = 64;
+
+    private static final long SYNC_INTERVAL_MS = 1000;
+
+    interface Listener {
+        void onSegmentFinished(Segment segment);
+
+        void onStateChanged(String cameraId, String state, String message);
+    }
+
+    interface StopCallback {
+        void onStopped(CameraRecorder recorder);
+    }
+
+    static final class Options {
+        File directory;
+        // File names are <prefix>_<local start time><extension>
+        String filePrefix;
+        long segmentDurationMs = 60 * 60 * 1000;
+        long maxSegmentBytes = 1024L * 1024 * 1024;
+    }
+
+    private final CameraStreamRegistry registry;
+    private final String cameraId;
+    private final String url;
+    private final Options options;
+    private final Listener listener;
+    private final RecordingStore store;
+    private final SegmentJournal journal;
+    private final FrameRing ring = new FrameRing("recorder", RING_CAPACITY);
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final long startTimeMs = System.currentTimeMillis();
+
+    // Guarded by this
+    private boolean subscribed = false;
+
+    // Written on the recorder thread, read anywhere
+    private volatile String state = STATE_RECORDING;
+    private volatile long frames = 0;
+    private volatile long bytes = 0;
+    private volatile int segments = 0;
+    private volatile long lastFrameTimeMs = 0;
+    private volatile String currentPath = null;
+    private volatile long currentBytes = 0;
+
+    // Recorder thread only
+    private SegmentWriter segment = null;
+    private long lastSyncMs = 0;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    CameraRecorder(CameraStreamRegistry registry, String cameraId, String url, Options options,
+                   RecordingStore store, Listener listener) {
+        this.registry = registry;
+        this.cameraId = cameraId;
+        this.url = url;
+        this.options = options;
+        this.store = store;
+        this.journal = store.getJournal();
+        this.listener = listener;
+        this.thread = new HandlerThread("CameraRecorder");
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+        this.ring.setOnAvailable(new Runnable() {
+            @Override
+            public void run() {
+                if (!handler.post(drainTask)) {
+                    // Recorder thread already gone; nothing will poll again
+                    ring.clear();
+                }
+            }
+        });
+    }
+
+    synchronized void start() {
+        if (subscribed) {
+            return;
+        }
+        subscribed = true;
+        // Listen first so the first frame of a fresh connection is kept
+        registry.addFrameListener(cameraId, ring);
+        registry.acquire(cameraId, url);
+    }
+
+    // Stops taking frames, writes what is already queued, closes the
+    // segment and then calls back on the recorder thread
+    void stop(final StopCallback callback) {
+        unsubscribe();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+                boolean stopped = false;
+                if (STATE_RECORDING.equals(state)) {
+                    try {
+                        finishSegment();
+                        state = STATE_STOPPED;
+                        stopped = true;
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                }
+                if (callback != null) {
+                    callback.onStopped(CameraRecorder.this);
+                }
+                if (stopped) {
+                    listener.onStateChanged(cameraId, STATE_STOPPED, null);
+                }
+                thread.quitSafely();
+            }
+        });
+    }
+
+    String getCameraId() {
+        return cameraId;
+    }
+
+    String getState() {
+        return state;
+    }
+
+    long getStartTimeMs() {
+        return startTimeMs;
+    }
+
+    long getFrames() {
+        return frames;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    int getSegments() {
+        return segments;
+    }
+
+    long getLastFrameTimeMs() {
+        return lastFrameTimeMs;
+    }
+
+    String getCurrentPath() {
+        return currentPath;
+    }
+
+    long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    long getDroppedFrames() {
+        return ring.getDroppedFrames();
+    }
+
+    private synchronized void unsubscribe() {
+        if (!subscribed) {
+            return;
+        }
+        subscribed = false;
+        registry.removeFrameListener(cameraId, ring);
+        registry.release(cameraId);
+    }
+
+    // Recorder thread only
+    private void drain() {
+        CameraFrame frame;
+        while ((frame = ring.poll()) != null) {
+            try {
+                if (STATE_RECORDING.equals(state)) {
+                    write(frame);
+                }
+            } finally {
+                frame.release();
+            }
+        }
+    }
+
+    // Recorder thread only
+    private void write(CameraFrame frame) {
+        try {
+            if (segment != null && isFull(segment, frame)) {
+                finishSegment();
+            }
+            if (segment == null) {
+                segment = openSegment(frame.timestampMs);
+            }
+            segment.append(frame);
+            if (SystemClock.elapsedRealtime() - lastSyncMs >= SYNC_INTERVAL_MS) {
+                sync(segment);
+            }
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        frames++;
+        bytes += frame.getLength();
+        lastFrameTimeMs = frame.timestampMs;
+        currentBytes = segment.getFileBytes();
+    }
+
+    private boolean isFull(SegmentWriter writer, CameraFrame frame) {
+        long maxBytes = Math.min(options.maxSegmentBytes, AviMuxer.MAX_FILE_BYTES);
+        // Chunk header, padding and index entry on top of the JPEG
+        return frame.timestampMs - writer.getStartTimeMs() >= options.segmentDurationMs
+            || writer.getFileBytes() + frame.getLength() + 32 > maxBytes;
+    }
+
+    // Recorder thread only
+    private SegmentWriter openSegment(long startTimeMs) throws IOException {
+        if (!options.directory.isDirectory() && !options.directory.mkdirs()) {
+            throw new IOException("Cannot create " + options.directory);
+        }
+        String stamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.US).format(new Date(startTimeMs));
+        String base = options.filePrefix + "_" + stamp;
+        File file = new File(options.directory, base + SEGMENT_EXTENSION);
+        for (int i = 1; file.exists(); i++) {
+            // Two segments started within the same second
+            file = new File(options.directory, base + "_" + i + SEGMENT_EXTENSION);
+        }
+        journal.opened(cameraId, file.getAbsolutePath(), startTimeMs);
+        SegmentWriter writer = new SegmentWriter(file, startTimeMs);
+        currentPath = file.getAbsolutePath();
+        currentBytes = 0;
+        lastSyncMs = SystemClock.elapsedRealtime();
+        return writer;
+    }
+
+    // Recorder thread only
+    private void sync(SegmentWriter writer) throws IOException {
+        long durableBytes = writer.sync();
+        journal.durable(writer.getFile().getAbsolutePath(), durableBytes, writer.getFrames(), writer.getEndTimeMs());
+        lastSyncMs = SystemClock.elapsedRealtime();
+    }
+
+    // Recorder thread only
+    private void finishSegment() throws IOException {
+        SegmentWriter writer = segment;
+        if (writer == null) {
+            return;
+        }
+        segment = null;
+        currentPath = null;
+        currentBytes = 0;
+        finish(writer);
+    }
+
+    // Recorder thread only. Finalizes writer, indexes it (synced) and only
+    // then closes it in the journal, so a crash at any point leaves it to
+    // recovery; JS is told last and marks it saved.
+    private void finish(SegmentWriter writer) throws IOException {
+        writer.close();
+        Segment finished = toSegment(writer);
+        if (finished.frames == 0) {
+            // Nothing to index or save
+            journal.saved(finished.path);
+            return;
+        }
+        store.openTimeIndex().add(finished);
+        journal.closed(finished);
+        segments++;
+        listener.onSegmentFinished(finished);
+    }
+
+    // Recorder thread only
+    private void fail(IOException e) {
+        Log.e(TAG, "Recording " + cameraId + " failed", e);
+        state = STATE_ERROR;
+        unsubscribe();
+        ring.clear();
+        SegmentWriter writer = segment;
+        segment = null;
+        currentPath = null;
+        currentBytes = 0;
+        if (writer != null) {
+            try {
+                // Complete frames up to the failure are still playable
+                finish(writer);
+            } catch (IOException closeError) {
+                // Still open in the journal; repaired on the next start
+                Log.w(TAG, "Failed to close " + writer.getFile(), closeError);
+            }
+        }
+        listener.onStateChanged(cameraId, STATE_ERROR, e.getMessage());
+    }
+
+    private Segment toSegment(SegmentWriter writer) {
+        return new Segment(cameraId, writer.getFile().getAbsolutePath(), writer.getStartTimeMs(),
+            writer.getEndTimeMs(), writer.getFrames(), writer.getFileBytes());
+    }
+}
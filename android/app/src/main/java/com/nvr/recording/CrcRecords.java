@@ -0,0 +1,56 @@
+package com.nvr.recording;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+// Framing for append-only logs: each record is written as its length
+// (i32), its bytes and their CRC-32 (i32), big-endian, in a single write.
+// A reader stops at the first record that is short, has an impossible
+// length or fails its CRC, so a torn or zero-filled tail after a crash is
+// never mistaken for data. Pure Java.
+final class CrcRecords {
+    static final int MAX_BYTES = 64 * 1024;
+
+    private CrcRecords() {
+    }
+
+    // Returns the number of bytes written
+    static int write(OutputStream out, byte[] record) throws IOException {
+        if (record.length == 0 || record.length > MAX_BYTES) {
+            throw new IOException("Record of " + record.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.length + 8);
+        DataOutputStream framed = new DataOutputStream(bytes);
+        framed.writeInt(record.length);
+        framed.write(record);
+        framed.writeInt((int) crc.getValue());
+        // One write() per record, so a crash tears at most the last one
+        out.write(bytes.toByteArray());
+        return bytes.size();
+    }
+
+    // The next record, or null at the end of the log or at a torn or
+    // corrupt record
+    static byte[] read(DataInput in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_BYTES) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, length);
+            return in.readInt() == (int) crc.getValue() ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+}
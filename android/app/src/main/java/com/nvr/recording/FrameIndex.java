@@ -0,0 +1,192 @@
+package com.nvr.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Sidecar index of where each frame lives in a segment, so a timestamp
+// resolves to a frame with one binary search and one positioned read
+// instead of a scan for JPEG markers. Pure Java.
+//
+// Layout, little-endian: a 16-byte header (magic u32, version u16, entry
+// size u16, base timestamp i64) followed by one 12-byte entry per frame
+// (timestamp delta from the base in ms i32, data offset u32, length u32).
+// Deltas never decrease, so the entries form a sorted primitive array that
+// is searched in place through a memory map. There is no count field: the
+// file length is the count, and a torn trailing entry is ignored.
+final class FrameIndex {
+    static final String SUFFIX = ".fidx";
+
+    private static final int MAGIC = AviMuxer.fourcc("FIDX");
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 12;
+
+    private final long baseTimestampMs;
+    // Three ints per entry
+    private final IntBuffer entries;
+    private final int count;
+
+    private FrameIndex(long baseTimestampMs, IntBuffer entries) {
+        this.baseTimestampMs = baseTimestampMs;
+        this.entries = entries;
+        this.count = entries.limit() / 3;
+    }
+
+    static File fileFor(File segment) {
+        return new File(segment.getPath() + SUFFIX);
+    }
+
+    // Maps an index file; it may still be growing, only complete entries
+    // present now are visible
+    static FrameIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Truncated frame index " + file);
+            }
+            long entryBytes = (size - HEADER_SIZE) / ENTRY_SIZE * ENTRY_SIZE;
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + entryBytes);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC || (map.getShort(4) & 0xFFFF) != VERSION
+                    || (map.getShort(6) & 0xFFFF) != ENTRY_SIZE) {
+                throw new IOException("Not a frame index " + file);
+            }
+            long base = map.getLong(8);
+            map.position(HEADER_SIZE);
+            return new FrameIndex(base, map.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+        } finally {
+            // The mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    long timestampMs(int i) {
+        return baseTimestampMs + entries.get(i * 3);
+    }
+
+    long offset(int i) {
+        return entries.get(i * 3 + 1) & 0xFFFFFFFFL;
+    }
+
+    int length(int i) {
+        return entries.get(i * 3 + 2);
+    }
+
+    // Last frame at or before timestampMs; the first frame if timestampMs
+    // precedes the segment, -1 if the index is empty
+    int find(long timestampMs) {
+        if (count == 0) {
+            return -1;
+        }
+        long delta = timestampMs - baseTimestampMs;
+        if (delta < entries.get(0)) {
+            return 0;
+        }
+        int lo = 0;
+        int hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (entries.get(mid * 3) <= delta) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // Reads frame i of segment into dst (from its position) with one
+    // positioned read; dst must have length(i) bytes remaining
+    void readFrame(FileChannel segment, int i, ByteBuffer dst) throws IOException {
+        long pos = offset(i);
+        int end = dst.position() + length(i);
+        ByteBuffer view = dst.duplicate();
+        view.limit(end);
+        while (view.hasRemaining()) {
+            int n = segment.read(view, pos);
+            if (n < 0) {
+                throw new IOException("Frame " + i + " runs past the end of the segment");
+            }
+            pos += n;
+        }
+        dst.position(end);
+    }
+
+    // Appends entries as frames are written, through a fixed buffer that is
+    // flushed when full and about once a second, so readers of a live
+    // segment are never far behind. Recorder thread only.
+    static final class Writer {
+        private static final long FLUSH_INTERVAL_MS = 1000;
+        private static final int BUFFER_ENTRIES = 256;
+
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final ByteBuffer buffer =
+            ByteBuffer.allocate(BUFFER_ENTRIES * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private boolean started = false;
+        private long baseTimestampMs = 0;
+        private int lastDelta = 0;
+        private long lastFlushMs = 0;
+
+        Writer(File file) throws IOException {
+            this.raf = new RandomAccessFile(file, "rw");
+            this.raf.setLength(0);
+            this.channel = raf.getChannel();
+        }
+
+        void append(long timestampMs, long offset, int length) throws IOException {
+            if (!started) {
+                started = true;
+                baseTimestampMs = timestampMs;
+                lastFlushMs = timestampMs;
+                buffer.putInt(MAGIC).putShort((short) VERSION).putShort((short) ENTRY_SIZE).putLong(timestampMs);
+            }
+            // Receive times can step back (clock changes); keep the array sorted
+            long delta = Math.min(Math.max(timestampMs - baseTimestampMs, lastDelta), Integer.MAX_VALUE);
+            lastDelta = (int) delta;
+            if (buffer.remaining() < ENTRY_SIZE) {
+                flush();
+            }
+            buffer.putInt(lastDelta).putInt((int) offset).putInt(length);
+            if (timestampMs - lastFlushMs >= FLUSH_INTERVAL_MS) {
+                flush();
+                lastFlushMs = timestampMs;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        // Flushes and forces the entries to the device
+        void sync() throws IOException {
+            flush();
+            channel.force(false);
+        }
+
+        void close() throws IOException {
+            try {
+                flush();
+                channel.force(false);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.nvr.recording;
+
+import java.nio.ByteBuffer;
+
+// Reads what the muxer needs from a JPEG's marker segments. Pure Java.
+final class JpegInfo {
+    private JpegInfo() {
+    }
+
+    // {width, height} from the first SOFn marker, or null if the bytes don't
+    // look like a JPEG. Uses absolute reads; the buffer is not moved.
+    static int[] readSize(ByteBuffer jpeg) {
+        int pos = jpeg.position();
+        int end = jpeg.limit();
+        if (end - pos < 4 || (jpeg.get(pos) & 0xFF) != 0xFF || (jpeg.get(pos + 1) & 0xFF) != 0xD8) {
+            return null;
+        }
+        pos += 2;
+        while (pos + 4 <= end) {
+            if ((jpeg.get(pos) & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = jpeg.get(pos + 1) & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte
+                pos++;
+                continue;
+            }
+            if (marker == 0xD8 || marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                // Standalone markers carry no length
+                pos += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // End of image, or entropy-coded data follows: no frame header
+                return null;
+            }
+            int length = (jpeg.get(pos + 2) & 0xFF) << 8 | (jpeg.get(pos + 3) & 0xFF);
+            if (isStartOfFrame(marker)) {
+                if (pos + 9 > end) {
+                    return null;
+                }
+                int height = (jpeg.get(pos + 5) & 0xFF) << 8 | (jpeg.get(pos + 6) & 0xFF);
+                int width = (jpeg.get(pos + 7) & 0xFF) << 8 | (jpeg.get(pos + 8) & 0xFF);
+                return new int[] {width, height};
+            }
+            pos += 2 + length;
+        }
+        return null;
+    }
+
+    // SOF0-SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+}
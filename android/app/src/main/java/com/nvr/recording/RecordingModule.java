@@ -0,0 +1,409 @@
+package com.nvr.recording;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.nvr.camera.CameraStreamClient;
+import com.nvr.camera.CameraStreamRegistry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// JS control surface for native recording. JS starts and stops recorders
+// and observes them through state, segment and once-a-second stats events;
+// frames go from the camera socket to disk without crossing the bridge.
+public class RecordingModule extends ReactContextBaseJavaModule {
+    static final String STATE_EVENT = "NativeRecorderState";
+    static final String SEGMENT_EVENT = "NativeRecorderSegment";
+    static final String STATS_EVENT = "NativeRecorderStats";
+
+    private static final long STATS_INTERVAL_MS = 1000;
+
+    private final ReactApplicationContext reactContext;
+    private final CameraStreamRegistry registry;
+    private final RecordingStore store;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Guarded by this. Recorders stay here after an error until stopped or
+    // restarted, so JS can still read their final status.
+    private final Map<String, CameraRecorder> recorders = new HashMap<>();
+    // Frame count at the previous stats tick, per camera; main thread only
+    private final Map<String, Long> lastFrames = new HashMap<>();
+
+    private final CameraRecorder.Listener recorderListener = new CameraRecorder.Listener() {
+        @Override
+        public void onSegmentFinished(Segment segment) {
+            // Already indexed; the journal keeps it until JS calls markSaved
+            sendEvent(SEGMENT_EVENT, toWritableMap(segment));
+        }
+
+        @Override
+        public void onStateChanged(String cameraId, String state, String message) {
+            WritableMap event = Arguments.createMap();
+            event.putString("cameraId", cameraId);
+            event.putString("state", state);
+            if (message != null) {
+                event.putString("message", message);
+            }
+            sendEvent(STATE_EVENT, event);
+        }
+    };
+
+    private final Runnable statsTick = new Runnable() {
+        @Override
+        public void run() {
+            emitStats();
+            handler.postDelayed(this, STATS_INTERVAL_MS);
+        }
+    };
+
+    public RecordingModule(ReactApplicationContext reactContext, CameraStreamRegistry registry,
+                           RecordingStore store) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.registry = registry;
+        this.store = store;
+        this.handler.postDelayed(statsTick, STATS_INTERVAL_MS);
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "NativeRecorder";
+    }
+
+    // Starts recording cameraId from ip (with or without ws:// and /ws).
+    // options: { directory, filePrefix, segmentDurationMs, maxSegmentBytes };
+    // directory may be a file:// URI. Resolves with the recorder's status; a
+    // camera that is already recording keeps its recorder.
+    @ReactMethod
+    public void startRecording(String cameraId, String ip, ReadableMap options, Promise promise) {
+        try {
+            CameraRecorder previous;
+            CameraRecorder recorder;
+            synchronized (this) {
+                previous = recorders.get(cameraId);
+                if (previous != null && CameraRecorder.STATE_RECORDING.equals(previous.getState())) {
+                    promise.resolve(toWritableMap(previous));
+                    return;
+                }
+                recorder = new CameraRecorder(registry, cameraId, CameraStreamClient.toWebSocketUrl(ip),
+                    parseOptions(cameraId, options), store, recorderListener);
+                recorders.put(cameraId, recorder);
+            }
+            if (previous != null) {
+                // Failed earlier; only its thread is left to shut down
+                previous.stop(null);
+            }
+            recorder.start();
+            recorderListener.onStateChanged(cameraId, CameraRecorder.STATE_RECORDING, null);
+            promise.resolve(toWritableMap(recorder));
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    // Resolves with the final status once the last segment is closed, or
+    // null if cameraId was not recording
+    @ReactMethod
+    public void stopRecording(String cameraId, final Promise promise) {
+        CameraRecorder recorder;
+        synchronized (this) {
+            recorder = recorders.remove(cameraId);
+        }
+        if (recorder == null) {
+            promise.resolve(null);
+            return;
+        }
+        recorder.stop(new CameraRecorder.StopCallback() {
+            @Override
+            public void onStopped(CameraRecorder stopped) {
+                promise.resolve(toWritableMap(stopped));
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getStatus(String cameraId, Promise promise) {
+        CameraRecorder recorder;
+        synchronized (this) {
+            recorder = recorders.get(cameraId);
+        }
+        promise.resolve(recorder != null ? toWritableMap(recorder) : null);
+    }
+
+    @ReactMethod
+    public void getStatuses(Promise promise) {
+        WritableArray array = Arguments.createArray();
+        for (CameraRecorder recorder : snapshot()) {
+            array.pushMap(toWritableMap(recorder));
+        }
+        promise.resolve(array);
+    }
+
+    // Writes the frame of the segment at path (file:// URIs too) that was on
+    // screen at timestampMs to a JPEG in the cache directory, using the
+    // segment's frame index. Resolves with { uri, timestamp, frame } where
+    // timestamp is the frame's own receive time. Works on segments that are
+    // still being recorded.
+    @ReactMethod
+    public void extractFrame(String path, double timestampMs, Promise promise) {
+        try {
+            File segment = toFile(path);
+            FrameIndex index = FrameIndex.open(FrameIndex.fileFor(segment));
+            int frame = index.find((long) timestampMs);
+            if (frame < 0) {
+                promise.reject("ERROR", "Segment has no frames: " + path);
+                return;
+            }
+            ByteBuffer jpeg = ByteBuffer.allocate(index.length(frame));
+            RandomAccessFile raf = new RandomAccessFile(segment, "r");
+            try {
+                index.readFrame(raf.getChannel(), frame, jpeg);
+            } finally {
+                raf.close();
+            }
+
+            File directory = new File(reactContext.getCacheDir(), "recording-frames");
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            File output = new File(directory, segment.getName() + "_" + index.timestampMs(frame) + ".jpg");
+            FileOutputStream out = new FileOutputStream(output);
+            try {
+                out.write(jpeg.array(), 0, jpeg.position());
+            } finally {
+                out.close();
+            }
+
+            WritableMap result = Arguments.createMap();
+            result.putString("uri", "file://" + output.getAbsolutePath());
+            result.putDouble("timestamp", index.timestampMs(frame));
+            result.putInt("frame", frame);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    // The segment of cameraId recorded at timestampMs, from the native time
+    // index: { cameraId, path, indexPath, startTime, endTime, frames, bytes,
+    // frame, frameOffset, frameLength, frameTimestamp }, where frame* locate
+    // the frame shown at timestampMs inside the file. Resolves with null if
+    // nothing was recorded then.
+    @ReactMethod
+    public void findRecording(String cameraId, double timestampMs, Promise promise) {
+        try {
+            Segment segment = store.openTimeIndex().find(cameraId, (long) timestampMs);
+            if (segment == null) {
+                promise.resolve(null);
+                return;
+            }
+            WritableMap result = toWritableMap(segment);
+            File indexFile = new File(segment.indexPath);
+            if (indexFile.exists()) {
+                FrameIndex index = FrameIndex.open(indexFile);
+                int frame = index.find((long) timestampMs);
+                if (frame >= 0) {
+                    result.putInt("frame", frame);
+                    result.putDouble("frameOffset", index.offset(frame));
+                    result.putInt("frameLength", index.length(frame));
+                    result.putDouble("frameTimestamp", index.timestampMs(frame));
+                }
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    // Segments overlapping [fromMs, toMs], oldest first, for cameraId or for
+    // every camera when cameraId is null
+    @ReactMethod
+    public void listRecordings(String cameraId, double fromMs, double toMs, Promise promise) {
+        try {
+            TimeIndex index = store.openTimeIndex();
+            List<String> cameraIds = cameraId != null ? Collections.singletonList(cameraId) : index.cameras();
+            List<Segment> segments = new ArrayList<>();
+            for (String id : cameraIds) {
+                segments.addAll(index.range(id, (long) fromMs, (long) toMs));
+            }
+            Collections.sort(segments, new Comparator<Segment>() {
+                @Override
+                public int compare(Segment a, Segment b) {
+                    return Long.compare(a.startTimeMs, b.startTimeMs);
+                }
+            });
+            WritableArray array = Arguments.createArray();
+            for (Segment segment : segments) {
+                array.pushMap(toWritableMap(segment));
+            }
+            promise.resolve(array);
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    // Segments an earlier run left open (repaired and indexed at startup) or
+    // finished but never marked saved. Resolves once recovery is done, with
+    // each segment (same shape as the segment event) handed out only once
+    // per run.
+    @ReactMethod
+    public void getRecoveredSegments(final Promise promise) {
+        store.takeRecovered(new RecordingStore.RecoveredCallback() {
+            @Override
+            public void onRecovered(List<Segment> segments) {
+                WritableArray array = Arguments.createArray();
+                for (Segment segment : segments) {
+                    array.pushMap(toWritableMap(segment));
+                }
+                promise.resolve(array);
+            }
+        });
+    }
+
+    // Tells the journal that JS has saved the segment at path (file:// URIs
+    // too) to the album. Until then a finished or recovered segment is
+    // handed out again by getRecoveredSegments after a restart.
+    @ReactMethod
+    public void markSaved(String path, Promise promise) {
+        try {
+            store.getJournal().saved(toFile(path).getAbsolutePath());
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    // Required by NativeEventEmitter on the JS side
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    @Override
+    public void invalidate() {
+        handler.removeCallbacks(statsTick);
+        List<CameraRecorder> stopping;
+        synchronized (this) {
+            stopping = new ArrayList<>(recorders.values());
+            recorders.clear();
+        }
+        for (CameraRecorder recorder : stopping) {
+            // Their last segments are indexed when they close
+            recorder.stop(null);
+        }
+        super.invalidate();
+    }
+
+    private synchronized List<CameraRecorder> snapshot() {
+        return new ArrayList<>(recorders.values());
+    }
+
+    private CameraRecorder.Options parseOptions(String cameraId, ReadableMap map) {
+        CameraRecorder.Options options = new CameraRecorder.Options();
+        String prefix = map != null && map.hasKey("filePrefix") ? map.getString("filePrefix") : null;
+        options.filePrefix = safeName(prefix != null ? prefix : cameraId);
+        String directory = map != null && map.hasKey("directory") ? map.getString("directory") : null;
+        if (directory != null) {
+            options.directory = toFile(directory);
+        } else {
+            options.directory = new File(new File(reactContext.getFilesDir(), "recordings"), options.filePrefix);
+        }
+        if (map != null && map.hasKey("segmentDurationMs")) {
+            options.segmentDurationMs = (long) map.getDouble("segmentDurationMs");
+        }
+        if (map != null && map.hasKey("maxSegmentBytes")) {
+            options.maxSegmentBytes = (long) map.getDouble("maxSegmentBytes");
+        }
+        return options;
+    }
+
+    private static File toFile(String path) {
+        return new File(path.startsWith("file://") ? path.substring(7) : path);
+    }
+
+    // Same rule as the JS side: anything but letters and digits becomes _
+    private static String safeName(String name) {
+        return name.replaceAll("[^A-Za-z0-9]", "_");
+    }
+
+    private void emitStats() {
+        for (CameraRecorder recorder : snapshot()) {
+            if (!CameraRecorder.STATE_RECORDING.equals(recorder.getState())) {
+                lastFrames.remove(recorder.getCameraId());
+                continue;
+            }
+            long frames = recorder.getFrames();
+            Long last = lastFrames.get(recorder.getCameraId());
+            if (last == null || frames < last) {
+                last = frames;
+            }
+            WritableMap event = toWritableMap(recorder);
+            event.putDouble("fps", (frames - last) * 1000.0 / STATS_INTERVAL_MS);
+            sendEvent(STATS_EVENT, event);
+            lastFrames.put(recorder.getCameraId(), frames);
+        }
+    }
+
+    private static WritableMap toWritableMap(Segment segment) {
+        WritableMap map = Arguments.createMap();
+        map.putString("cameraId", segment.cameraId);
+        map.putString("path", segment.path);
+        map.putString("indexPath", segment.indexPath);
+        map.putDouble("startTime", segment.startTimeMs);
+        map.putDouble("endTime", segment.endTimeMs);
+        map.putInt("frames", segment.frames);
+        map.putDouble("bytes", segment.bytes);
+        return map;
+    }
+
+    private static WritableMap toWritableMap(CameraRecorder recorder) {
+        WritableMap map = Arguments.createMap();
+        map.putString("cameraId", recorder.getCameraId());
+        map.putString("state", recorder.getState());
+        map.putDouble("startTime", recorder.getStartTimeMs());
+        map.putDouble("frames", recorder.getFrames());
+        map.putDouble("bytes", recorder.getBytes());
+        map.putInt("segments", recorder.getSegments());
+        map.putDouble("lastFrameTime", recorder.getLastFrameTimeMs());
+        map.putDouble("droppedFrames", recorder.getDroppedFrames());
+        String path = recorder.getCurrentPath();
+        if (path != null) {
+            map.putString("currentPath", path);
+        }
+        map.putDouble("currentFileSize", recorder.getCurrentBytes());
+        return map;
+    }
+
+    private void sendEvent(String eventName, Object params) {
+        if (reactContext.hasActiveReactInstance()) {
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+        }
+    }
+}
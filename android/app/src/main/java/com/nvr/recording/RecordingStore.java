@@ -0,0 +1,142 @@
+package com.nvr.recording;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Recording state that outlives the JS bridge: the time index of finished
+// segments and the journal of unsaved ones. attach() repairs the segments
+// an earlier run left open (see SegmentRecovery) on a low-priority thread,
+// so startup never waits for it; repaired segments are indexed and held,
+// with the finished ones JS never marked saved, until JS collects them
+// with takeRecovered(). One instance per WifiScannerPackage.
+public class RecordingStore {
+    private static final String TAG = "RecordingStore";
+
+    interface RecoveredCallback {
+        void onRecovered(List<Segment> segments);
+    }
+
+    // Guarded by this
+    private TimeIndex timeIndex = null;
+    private SegmentJournal journal = null;
+    private boolean recovering = false;
+    private final List<Segment> recovered = new ArrayList<>();
+    private final List<RecoveredCallback> waiting = new ArrayList<>();
+
+    // Safe to call more than once
+    public synchronized void attach(Context context) {
+        if (journal != null) {
+            return;
+        }
+        File filesDir = context.getFilesDir();
+        timeIndex = new TimeIndex(new File(filesDir, "recording-index"));
+        journal = new SegmentJournal(new File(filesDir, "recording.journal"));
+        recovering = true;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                recover();
+            }
+        }, "RecordingRecovery");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Every finished or recovered segment, by camera and time
+    TimeIndex openTimeIndex() throws IOException {
+        TimeIndex index;
+        synchronized (this) {
+            index = timeIndex;
+        }
+        index.open();
+        return index;
+    }
+
+    synchronized SegmentJournal getJournal() {
+        return journal;
+    }
+
+    // Hands the segments recovered so far to callback, once recovery is
+    // done, and forgets them. Called back on the recovery thread or the
+    // caller's.
+    void takeRecovered(RecoveredCallback callback) {
+        List<Segment> taken;
+        synchronized (this) {
+            if (recovering) {
+                waiting.add(callback);
+                return;
+            }
+            taken = new ArrayList<>(recovered);
+            recovered.clear();
+        }
+        callback.onRecovered(taken);
+    }
+
+    // Recovery thread only
+    private void recover() {
+        List<Segment> segments = new ArrayList<>();
+        try {
+            SegmentJournal journal = getJournal();
+            TimeIndex index = openTimeIndex();
+            for (SegmentJournal.Entry entry : journal.takeOrphans()) {
+                try {
+                    Segment segment = entry.finished;
+                    if (segment == null) {
+                        segment = SegmentRecovery.recover(entry);
+                        if (segment == null) {
+                            // Nothing to save
+                            journal.saved(entry.path);
+                            continue;
+                        }
+                        index.add(segment);
+                        journal.closed(segment);
+                        Log.i(TAG, "Recovered " + segment.frames + " frames of " + segment.path);
+                    } else if (!new File(segment.path).exists()) {
+                        // Deleted before JS saved it
+                        journal.saved(entry.path);
+                        continue;
+                    } else if (!isIndexed(index, segment)) {
+                        // Closed but the index lost it, e.g. a damaged run
+                        index.add(segment);
+                    }
+                    segments.add(segment);
+                } catch (IOException e) {
+                    // Left in the journal; retried on the next start
+                    Log.w(TAG, "Failed to recover " + entry.path, e);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read the segment journal or time index", e);
+        }
+
+        List<RecoveredCallback> callbacks;
+        List<Segment> taken;
+        synchronized (this) {
+            recovering = false;
+            recovered.addAll(segments);
+            callbacks = new ArrayList<>(waiting);
+            waiting.clear();
+            taken = new ArrayList<>(recovered);
+            if (!callbacks.isEmpty()) {
+                recovered.clear();
+            }
+        }
+        for (RecoveredCallback callback : callbacks) {
+            callback.onRecovered(taken);
+            // Only the first caller gets them
+            taken = new ArrayList<>();
+        }
+    }
+
+    private static boolean isIndexed(TimeIndex index, Segment segment) {
+        Segment found = index.find(segment.cameraId, segment.startTimeMs);
+        return found != null && found.path.equals(segment.path);
+    }
+}
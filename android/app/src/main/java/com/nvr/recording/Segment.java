@@ -0,0 +1,25 @@
+package com.nvr.recording;
+
+import java.io.File;
+
+// A closed segment file; immutable
+final class Segment {
+    final String cameraId;
+    final String path;
+    // FrameIndex sidecar
+    final String indexPath;
+    final long startTimeMs;
+    final long endTimeMs;
+    final int frames;
+    final long bytes;
+
+    Segment(String cameraId, String path, long startTimeMs, long endTimeMs, int frames, long bytes) {
+        this.cameraId = cameraId;
+        this.path = path;
+        this.indexPath = FrameIndex.fileFor(new File(path)).getPath();
+        this.startTimeMs = startTimeMs;
+        this.endTimeMs = endTimeMs;
+        this.frames = frames;
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,269 @@
+package com.nvr.recording;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Write-ahead journal of segment state, so a segment left open by a crash
+// can be found and repaired on the next start, and a finished one is not
+// forgotten before JS has saved it. Each record is length-prefixed and
+// CRC-checked (CrcRecords); replay stops at the first torn one.
+//
+//   OPEN     camera, path, start time    before the segment file is created
+//   DURABLE  path, movi end, frames, ts  after the segment has been synced
+//   CLOSE    path, start, end, frames,   after the segment is finalized and
+//            bytes                       indexed
+//   SAVED    path                        once JS has saved it to the album
+//
+// All but DURABLE are synced; recovery validates what follows the last
+// durable offset anyway. Segments an earlier run left unclosed or unsaved
+// are orphans, handed out once by takeOrphans(). The file is rewritten
+// with just the unsaved segments when it is first read and whenever it
+// grows past COMPACT_BYTES. Pure Java; all methods are synchronized.
+final class SegmentJournal {
+    private static final int TYPE_OPEN = 1;
+    private static final int TYPE_DURABLE = 2;
+    private static final int TYPE_CLOSE = 3;
+    private static final int TYPE_SAVED = 4;
+
+    private static final long COMPACT_BYTES = 256 * 1024;
+
+    // State of one unsaved segment
+    static final class Entry {
+        final String cameraId;
+        final String path;
+        final long startTimeMs;
+        // Everything before this offset was synced to disk; 0 if unknown
+        long durableBytes = 0;
+        int durableFrames = 0;
+        long durableTimestampMs = 0;
+        // The finalized segment once closed, until it is saved; null while
+        // still being written
+        Segment finished = null;
+
+        Entry(String cameraId, String path, long startTimeMs) {
+            this.cameraId = cameraId;
+            this.path = path;
+            this.startTimeMs = startTimeMs;
+        }
+    }
+
+    private final File file;
+    // Unsaved segments, this run's and orphans; null until the file is read
+    private Map<String, Entry> entries = null;
+    private final List<Entry> orphans = new ArrayList<>();
+    private FileOutputStream out = null;
+    private long size = 0;
+
+    SegmentJournal(File file) {
+        this.file = file;
+    }
+
+    // Segments a previous run left open (finished is null) or closed but
+    // unsaved. Returned once; an open one must still be closed() once
+    // repaired, and each saved() once JS has it.
+    synchronized List<Entry> takeOrphans() throws IOException {
+        ensureOpen();
+        List<Entry> taken = new ArrayList<>(orphans);
+        orphans.clear();
+        return taken;
+    }
+
+    synchronized void opened(String cameraId, String path, long startTimeMs) throws IOException {
+        ensureOpen();
+        Entry entry = new Entry(cameraId, path, startTimeMs);
+        entries.put(path, entry);
+        append(encodeOpen(entry), true);
+    }
+
+    synchronized void durable(String path, long bytes, int frames, long timestampMs) throws IOException {
+        ensureOpen();
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            return;
+        }
+        entry.durableBytes = bytes;
+        entry.durableFrames = frames;
+        entry.durableTimestampMs = timestampMs;
+        append(encodeDurable(entry), false);
+    }
+
+    // Call only once segment is in the time index; a crash before this
+    // leaves it to recovery
+    synchronized void closed(Segment segment) throws IOException {
+        ensureOpen();
+        Entry entry = entries.get(segment.path);
+        if (entry == null || entry.finished != null) {
+            return;
+        }
+        entry.finished = segment;
+        append(encodeClose(entry), true);
+        if (size > COMPACT_BYTES) {
+            rewrite();
+        }
+    }
+
+    // Forgets a segment: JS has saved it, or there was nothing to save
+    synchronized void saved(String path) throws IOException {
+        ensureOpen();
+        if (entries.remove(path) == null) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(TYPE_SAVED);
+        record.writeUTF(path);
+        append(bytes.toByteArray(), true);
+        if (size > COMPACT_BYTES) {
+            rewrite();
+        }
+    }
+
+    synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (out != null) {
+            return;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        if (entries == null) {
+            entries = replay();
+            orphans.addAll(entries.values());
+        }
+        rewrite();
+    }
+
+    // Unsaved segments in the file, with their last durable or final state
+    private Map<String, Entry> replay() throws IOException {
+        Map<String, Entry> found = new LinkedHashMap<>();
+        if (!file.exists()) {
+            return found;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                byte[] record = CrcRecords.read(in);
+                if (record == null) {
+                    // End, or a torn tail
+                    break;
+                }
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+                int type = fields.readByte();
+                if (type == TYPE_OPEN) {
+                    Entry entry = new Entry(fields.readUTF(), fields.readUTF(), fields.readLong());
+                    found.put(entry.path, entry);
+                } else if (type == TYPE_DURABLE) {
+                    Entry entry = found.get(fields.readUTF());
+                    if (entry != null) {
+                        entry.durableBytes = fields.readLong();
+                        entry.durableFrames = fields.readInt();
+                        entry.durableTimestampMs = fields.readLong();
+                    }
+                } else if (type == TYPE_CLOSE) {
+                    Entry entry = found.get(fields.readUTF());
+                    if (entry != null) {
+                        entry.finished = new Segment(entry.cameraId, entry.path, fields.readLong(),
+                            fields.readLong(), fields.readInt(), fields.readLong());
+                    }
+                } else if (type == TYPE_SAVED) {
+                    found.remove(fields.readUTF());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return found;
+    }
+
+    // Replaces the file with one OPEN (and DURABLE or CLOSE) record per
+    // unsaved segment, via a synced temporary file and a rename
+    private void rewrite() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream rewritten = new FileOutputStream(tmp);
+        long written = 0;
+        try {
+            for (Entry entry : entries.values()) {
+                written += CrcRecords.write(rewritten, encodeOpen(entry));
+                if (entry.finished != null) {
+                    written += CrcRecords.write(rewritten, encodeClose(entry));
+                } else if (entry.durableBytes > 0) {
+                    written += CrcRecords.write(rewritten, encodeDurable(entry));
+                }
+            }
+            rewritten.getFD().sync();
+        } finally {
+            rewritten.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmp);
+        }
+        out = new FileOutputStream(file, true);
+        size = written;
+    }
+
+    private void append(byte[] record, boolean sync) throws IOException {
+        size += CrcRecords.write(out, record);
+        if (sync) {
+            out.getFD().sync();
+        }
+    }
+
+    private static byte[] encodeOpen(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(TYPE_OPEN);
+        record.writeUTF(entry.cameraId);
+        record.writeUTF(entry.path);
+        record.writeLong(entry.startTimeMs);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDurable(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(TYPE_DURABLE);
+        record.writeUTF(entry.path);
+        record.writeLong(entry.durableBytes);
+        record.writeInt(entry.durableFrames);
+        record.writeLong(entry.durableTimestampMs);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeClose(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(TYPE_CLOSE);
+        record.writeUTF(entry.path);
+        record.writeLong(entry.finished.startTimeMs);
+        record.writeLong(entry.finished.endTimeMs);
+        record.writeInt(entry.finished.frames);
+        record.writeLong(entry.finished.bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,192 @@
+package com.nvr.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Repairs a segment left open by a crash. The 'movi' chunks are walked from
+// the header; chunks below the journal's durable offset were synced and are
+// taken as they are, later ones must be complete and look like a JPEG
+// (SOI at the start, EOI near the end). The walk stops at the first torn
+// chunk, the file is cut there and finalized with a fresh idx1, and the
+// frame index is rebuilt to match. Timestamps come from the old frame index
+// where it still lines up, and are extrapolated at its average interval
+// past its end. Running it again on the same file gives the same result.
+// Pure Java.
+final class SegmentRecovery {
+    private static final long DEFAULT_FRAME_INTERVAL_MS = 33;
+    // Bytes allowed after the EOI marker (encoder padding)
+    private static final int EOI_SLACK = 16;
+
+    private SegmentRecovery() {
+    }
+
+    // Returns the repaired segment, or null if it held no complete frame,
+    // in which case its files are deleted
+    static Segment recover(SegmentJournal.Entry entry) throws IOException {
+        File file = new File(entry.path);
+        File indexFile = FrameIndex.fileFor(file);
+        File spoolFile = new File(entry.path + SegmentWriter.INDEX_SPOOL_SUFFIX);
+        if (!file.exists()) {
+            indexFile.delete();
+            spoolFile.delete();
+            return null;
+        }
+
+        FrameIndex oldIndex = null;
+        if (indexFile.exists()) {
+            try {
+                oldIndex = FrameIndex.open(indexFile);
+            } catch (IOException e) {
+                // Torn header; timestamps are extrapolated instead
+            }
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        RandomAccessFile spool = null;
+        // Set once the file is known to hold nothing worth keeping; an I/O
+        // error leaves it for the next attempt
+        boolean discard = false;
+        try {
+            FileChannel out = raf.getChannel();
+            if (!hasHeader(out)) {
+                discard = true;
+                return null;
+            }
+            spool = new RandomAccessFile(spoolFile, "rw");
+            spool.setLength(0);
+            AviMuxer muxer = AviMuxer.resume(out, spool.getChannel());
+            File tmpIndex = new File(indexFile.getPath() + ".tmp");
+            FrameIndex.Writer index = new FrameIndex.Writer(tmpIndex);
+            long firstTimestampMs = 0;
+            long timestampMs = 0;
+            try {
+                long interval = frameInterval(oldIndex);
+                ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                long size = out.size();
+                int frame = 0;
+                while (true) {
+                    long chunkPos = muxer.getMoviEnd();
+                    int length = readChunk(out, chunkPos, size, header);
+                    if (length <= 0) {
+                        break;
+                    }
+                    long offset = chunkPos + 8;
+                    if (chunkPos >= entry.durableBytes && !looksLikeJpeg(out, offset, length)) {
+                        break;
+                    }
+                    if (oldIndex != null && frame < oldIndex.size() && oldIndex.offset(frame) == offset) {
+                        timestampMs = oldIndex.timestampMs(frame);
+                    } else if (frame == 0) {
+                        timestampMs = entry.startTimeMs;
+                    } else {
+                        timestampMs += interval;
+                    }
+                    if (frame == 0) {
+                        firstTimestampMs = timestampMs;
+                    }
+                    muxer.adoptFrame(length, timestampMs);
+                    index.append(timestampMs, offset, length);
+                    frame++;
+                }
+            } finally {
+                index.close();
+            }
+            if (muxer.getFrames() == 0) {
+                tmpIndex.delete();
+                discard = true;
+                return null;
+            }
+            out.truncate(muxer.getMoviEnd());
+            muxer.finish();
+            out.force(false);
+            if (!tmpIndex.renameTo(indexFile)) {
+                throw new IOException("Cannot rename " + tmpIndex);
+            }
+            return new Segment(entry.cameraId, entry.path, firstTimestampMs, timestampMs,
+                muxer.getFrames(), muxer.getProjectedBytes());
+        } finally {
+            try {
+                raf.close();
+            } finally {
+                if (spool != null) {
+                    spool.close();
+                }
+                spoolFile.delete();
+                if (discard) {
+                    file.delete();
+                    indexFile.delete();
+                }
+            }
+        }
+    }
+
+    // RIFF/AVI with the 'movi' list where AviMuxer puts it
+    private static boolean hasHeader(FileChannel in) throws IOException {
+        if (in.size() < AviMuxer.HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(AviMuxer.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(in, header, 0);
+        return header.getInt(0) == AviMuxer.fourcc("RIFF")
+            && header.getInt(8) == AviMuxer.fourcc("AVI ")
+            && header.getInt(AviMuxer.HEADER_SIZE - 12) == AviMuxer.fourcc("LIST")
+            && header.getInt(AviMuxer.HEADER_SIZE - 4) == AviMuxer.fourcc("movi");
+    }
+
+    // Length of the '00dc' chunk at pos if it lies entirely within size,
+    // otherwise -1
+    private static int readChunk(FileChannel in, long pos, long size, ByteBuffer header) throws IOException {
+        if (pos + 8 > size) {
+            return -1;
+        }
+        header.clear();
+        readFully(in, header, pos);
+        int length = header.getInt(4);
+        if (header.getInt(0) != AviMuxer.fourcc("00dc") || length <= 0 || pos + 8 + length > size) {
+            return -1;
+        }
+        return length;
+    }
+
+    private static boolean looksLikeJpeg(FileChannel in, long offset, int length) throws IOException {
+        if (length < 4) {
+            return false;
+        }
+        ByteBuffer start = ByteBuffer.allocate(2);
+        readFully(in, start, offset);
+        if ((start.get(0) & 0xFF) != 0xFF || (start.get(1) & 0xFF) != 0xD8) {
+            return false;
+        }
+        int tailLength = Math.min(length, EOI_SLACK + 2);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength);
+        readFully(in, tail, offset + length - tailLength);
+        for (int i = tailLength - 2; i >= 0; i--) {
+            if ((tail.get(i) & 0xFF) == 0xFF && (tail.get(i + 1) & 0xFF) == 0xD9) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long frameInterval(FrameIndex index) {
+        if (index == null || index.size() < 2) {
+            return DEFAULT_FRAME_INTERVAL_MS;
+        }
+        long span = index.timestampMs(index.size() - 1) - index.timestampMs(0);
+        return span > 0 ? Math.max(1, span / (index.size() - 1)) : DEFAULT_FRAME_INTERVAL_MS;
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = in.read(dst, pos);
+            if (n < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+            pos += n;
+        }
+    }
+}
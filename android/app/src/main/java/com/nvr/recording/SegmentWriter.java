@@ -0,0 +1,115 @@
+package com.nvr.recording;
+
+import com.nvr.camera.CameraFrame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+// One segment file, written through a single FileChannel that stays open
+// until the segment is closed. Frames go to disk straight from their pooled
+// direct buffers: no base64, no heap copy, and no open/close per frame. The
+// file is an MJPEG AVI (see AviMuxer); its idx1 entries are spooled to a
+// temporary file next to it until the segment is closed. A FrameIndex
+// sidecar records every frame's time and offset as it is appended.
+// sync() makes everything appended so far durable, so a crash loses at most
+// the frames since the last sync (see SegmentRecovery).
+//
+// Recorder thread only.
+final class SegmentWriter {
+    static final String INDEX_SPOOL_SUFFIX = ".idx1.tmp";
+
+    private final File file;
+    private final File spoolFile;
+    private final RandomAccessFile raf;
+    private final RandomAccessFile spool;
+    private final AviMuxer muxer;
+    private final FrameIndex.Writer index;
+    private final long startTimeMs;
+    private long endTimeMs;
+    private long bytes = 0;
+
+    SegmentWriter(File file, long startTimeMs) throws IOException {
+        this.file = file;
+        this.spoolFile = new File(file.getPath() + INDEX_SPOOL_SUFFIX);
+        this.raf = new RandomAccessFile(file, "rw");
+        RandomAccessFile spoolRaf = null;
+        try {
+            this.raf.setLength(0);
+            spoolRaf = new RandomAccessFile(spoolFile, "rw");
+            spoolRaf.setLength(0);
+            this.index = new FrameIndex.Writer(FrameIndex.fileFor(file));
+        } catch (IOException e) {
+            if (spoolRaf != null) {
+                spoolRaf.close();
+            }
+            raf.close();
+            throw e;
+        }
+        this.spool = spoolRaf;
+        this.muxer = new AviMuxer(raf.getChannel(), spool.getChannel());
+        this.startTimeMs = startTimeMs;
+        this.endTimeMs = startTimeMs;
+    }
+
+    void append(CameraFrame frame) throws IOException {
+        long offset = muxer.writeFrame(frame.data(), frame.timestampMs);
+        index.append(frame.timestampMs, offset, frame.getLength());
+        bytes += frame.getLength();
+        endTimeMs = frame.timestampMs;
+    }
+
+    // Patches the header and forces the segment and its frame index to the
+    // device; returns the end of the durable 'movi' data
+    long sync() throws IOException {
+        muxer.flush();
+        index.sync();
+        raf.getChannel().force(false);
+        return muxer.getMoviEnd();
+    }
+
+    // Writes the indexes, flushes to the device and closes the files
+    void close() throws IOException {
+        try {
+            muxer.finish();
+            raf.getChannel().force(false);
+        } finally {
+            try {
+                raf.close();
+            } finally {
+                try {
+                    index.close();
+                } finally {
+                    spool.close();
+                    spoolFile.delete();
+                }
+            }
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getStartTimeMs() {
+        return startTimeMs;
+    }
+
+    long getEndTimeMs() {
+        return endTimeMs;
+    }
+
+    int getFrames() {
+        return muxer.getFrames();
+    }
+
+    // JPEG bytes written
+    long getBytes() {
+        return bytes;
+    }
+
+    // Size of the file once closed, container overhead included
+    long getFileBytes() {
+        return muxer.getProjectedBytes();
+    }
+}
@@ -0,0 +1,387 @@
+package com.nvr.recording;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Persistent, sparse index of every recorded segment, across cameras, keyed
+// by (camera, start time). Frame-level positions come from each segment's
+// FrameIndex, so this holds one entry per segment, not per frame.
+//
+// Storage is a small log-structured set of sorted runs. A finished segment
+// is appended to a log and kept in memory; once LOG_LIMIT segments have
+// accumulated they are written out as a new sorted run and the log is
+// reset. Runs are merged whenever the newest is at least half the size of
+// the one before it, which keeps O(log n) runs. A lookup binary-searches
+// each run, so it stays logarithmic however many days of footage exist.
+//
+// Run files are replaced by rename and the log is only reset after the
+// run holding its entries exists, so a crash at any point leaves at worst
+// a duplicate; duplicates (same path) resolve to the newest copy. Log
+// records are framed with a length and CRC (CrcRecords), so a torn or
+// zero-filled tail is dropped on open. Pure Java; all methods are
+// synchronized.
+final class TimeIndex {
+    private static final int RUN_MAGIC = AviMuxer.fourcc("TIDX");
+    private static final int VERSION = 1;
+    private static final int LOG_LIMIT = 64;
+    private static final String LOG_NAME = "segments.log";
+    private static final String RUN_PREFIX = "run-";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final Comparator<Segment> ORDER = new Comparator<Segment>() {
+        @Override
+        public int compare(Segment a, Segment b) {
+            int byCamera = a.cameraId.compareTo(b.cameraId);
+            if (byCamera != 0) {
+                return byCamera;
+            }
+            if (a.startTimeMs != b.startTimeMs) {
+                return a.startTimeMs < b.startTimeMs ? -1 : 1;
+            }
+            return a.path.compareTo(b.path);
+        }
+    };
+
+    // One immutable sorted run, held as parallel arrays for the search
+    private static final class Run {
+        final long generation;
+        final Segment[] segments;
+        final String[] cameras;
+        final long[] starts;
+
+        Run(long generation, Segment[] segments) {
+            this.generation = generation;
+            this.segments = segments;
+            this.cameras = new String[segments.length];
+            this.starts = new long[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                cameras[i] = segments[i].cameraId;
+                starts[i] = segments[i].startTimeMs;
+            }
+        }
+
+        // Index of the last segment of cameraId starting at or before
+        // timestampMs, or of the first one after it (or -1 if cameraId has
+        // none) when there is no such segment
+        int floor(String cameraId, long timestampMs) {
+            int lo = 0;
+            int hi = segments.length;
+            // First entry greater than (cameraId, timestampMs)
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int byCamera = cameras[mid].compareTo(cameraId);
+                if (byCamera < 0 || (byCamera == 0 && starts[mid] <= timestampMs)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo > 0 && cameras[lo - 1].equals(cameraId)) {
+                return lo - 1;
+            }
+            return lo < segments.length && cameras[lo].equals(cameraId) ? lo : -1;
+        }
+    }
+
+    private final File directory;
+    // Oldest first
+    private final List<Run> runs = new ArrayList<>();
+    // Segments in the log, not yet in a run
+    private final TreeSet<Segment> pending = new TreeSet<>(ORDER);
+    private FileOutputStream log = null;
+    private long nextGeneration = 1;
+
+    TimeIndex(File directory) {
+        this.directory = directory;
+    }
+
+    // Loads the runs and replays the log; must be called before anything else
+    synchronized void open() throws IOException {
+        if (log != null) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File[] files = directory.listFiles();
+        List<Run> loaded = new ArrayList<>();
+        for (File file : files != null ? files : new File[0]) {
+            String name = file.getName();
+            if (name.endsWith(TMP_SUFFIX)) {
+                // Interrupted flush or merge; its inputs are still there
+                file.delete();
+            } else if (name.startsWith(RUN_PREFIX)) {
+                long generation;
+                try {
+                    generation = Long.parseLong(name.substring(RUN_PREFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                loaded.add(new Run(generation, readRun(file)));
+                nextGeneration = Math.max(nextGeneration, generation + 1);
+            }
+        }
+        Collections.sort(loaded, new Comparator<Run>() {
+            @Override
+            public int compare(Run a, Run b) {
+                return Long.compare(a.generation, b.generation);
+            }
+        });
+        runs.addAll(loaded);
+
+        File logFile = new File(directory, LOG_NAME);
+        long good = replayLog(logFile);
+        if (logFile.exists() && logFile.length() != good) {
+            // Drop a torn last record so new ones follow a valid prefix
+            RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+            try {
+                raf.setLength(good);
+            } finally {
+                raf.close();
+            }
+        }
+        log = new FileOutputStream(logFile, true);
+    }
+
+    synchronized void close() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException ignored) {
+        }
+        log = null;
+    }
+
+    // Records a finished segment; called on every rotation. Synced before
+    // returning: once a segment is indexed the journal closes it and
+    // recovery no longer looks at it.
+    synchronized void add(Segment segment) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        writeSegment(new DataOutputStream(record), segment);
+        CrcRecords.write(log, record.toByteArray());
+        log.getFD().sync();
+        pending.remove(segment);
+        pending.add(segment);
+        if (pending.size() >= LOG_LIMIT) {
+            flushPending();
+        }
+    }
+
+    // The segment of cameraId covering timestampMs, or null
+    synchronized Segment find(String cameraId, long timestampMs) {
+        Segment best = null;
+        for (Run run : runs) {
+            int i = run.floor(cameraId, timestampMs);
+            if (i >= 0 && run.starts[i] <= timestampMs) {
+                best = later(best, run.segments[i]);
+            }
+        }
+        Segment candidate = pending.floor(probe(cameraId, timestampMs));
+        if (candidate != null && candidate.cameraId.equals(cameraId)) {
+            best = later(best, candidate);
+        }
+        return best != null && best.endTimeMs >= timestampMs ? best : null;
+    }
+
+    // Segments of cameraId overlapping [fromMs, toMs], oldest first
+    synchronized List<Segment> range(String cameraId, long fromMs, long toMs) {
+        // Newest copy of each path wins: runs oldest first, then the log
+        Map<String, Segment> byPath = new HashMap<>();
+        for (Run run : runs) {
+            int i = run.floor(cameraId, fromMs);
+            if (i < 0) {
+                continue;
+            }
+            for (; i < run.segments.length && run.cameras[i].equals(cameraId) && run.starts[i] <= toMs; i++) {
+                byPath.put(run.segments[i].path, run.segments[i]);
+            }
+        }
+        Segment first = pending.floor(probe(cameraId, fromMs));
+        Segment from = first != null && first.cameraId.equals(cameraId) ? first : probe(cameraId, fromMs);
+        for (Segment segment : pending.tailSet(from, true)) {
+            if (!segment.cameraId.equals(cameraId) || segment.startTimeMs > toMs) {
+                break;
+            }
+            byPath.put(segment.path, segment);
+        }
+
+        List<Segment> result = new ArrayList<>();
+        for (Segment segment : byPath.values()) {
+            if (segment.endTimeMs >= fromMs) {
+                result.add(segment);
+            }
+        }
+        Collections.sort(result, ORDER);
+        return result;
+    }
+
+    // Every camera with at least one segment
+    synchronized List<String> cameras() {
+        TreeSet<String> cameras = new TreeSet<>();
+        for (Run run : runs) {
+            for (int i = 0; i < run.cameras.length; i++) {
+                if (i == 0 || !run.cameras[i].equals(run.cameras[i - 1])) {
+                    cameras.add(run.cameras[i]);
+                }
+            }
+        }
+        for (Segment segment : pending) {
+            cameras.add(segment.cameraId);
+        }
+        return new ArrayList<>(cameras);
+    }
+
+    private void flushPending() throws IOException {
+        Segment[] segments = pending.toArray(new Segment[0]);
+        Run run = new Run(nextGeneration++, segments);
+        writeRun(run);
+        runs.add(run);
+        // The run is durable; the log can start over
+        log.close();
+        log = new FileOutputStream(new File(directory, LOG_NAME));
+        pending.clear();
+
+        while (runs.size() >= 2) {
+            Run newer = runs.get(runs.size() - 1);
+            Run older = runs.get(runs.size() - 2);
+            if (newer.segments.length * 2 < older.segments.length) {
+                break;
+            }
+            Run merged = new Run(nextGeneration++, merge(older.segments, newer.segments));
+            writeRun(merged);
+            runs.remove(runs.size() - 1);
+            runs.remove(runs.size() - 1);
+            runs.add(merged);
+            runFile(older.generation).delete();
+            runFile(newer.generation).delete();
+        }
+    }
+
+    // Two sorted runs into one; on equal paths the newer copy is kept
+    private static Segment[] merge(Segment[] older, Segment[] newer) {
+        Map<String, Segment> byPath = new HashMap<>();
+        for (Segment segment : older) {
+            byPath.put(segment.path, segment);
+        }
+        for (Segment segment : newer) {
+            byPath.put(segment.path, segment);
+        }
+        Segment[] merged = byPath.values().toArray(new Segment[0]);
+        Arrays.sort(merged, ORDER);
+        return merged;
+    }
+
+    private void writeRun(Run run) throws IOException {
+        File tmp = new File(directory, RUN_PREFIX + run.generation + TMP_SUFFIX);
+        FileOutputStream file = new FileOutputStream(tmp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(RUN_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(run.segments.length);
+            for (Segment segment : run.segments) {
+                writeSegment(out, segment);
+            }
+            out.flush();
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        if (!tmp.renameTo(runFile(run.generation))) {
+            throw new IOException("Cannot rename " + tmp);
+        }
+    }
+
+    private Segment[] readRun(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != RUN_MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a time index run " + file);
+            }
+            Segment[] segments = new Segment[in.readInt()];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = readSegment(in);
+            }
+            return segments;
+        } finally {
+            in.close();
+        }
+    }
+
+    // Returns the length of the valid prefix
+    private long replayLog(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long good = 0;
+            while (true) {
+                byte[] record = CrcRecords.read(raf);
+                if (record == null) {
+                    // End, or a torn or garbled record
+                    return good;
+                }
+                Segment segment = readSegment(new DataInputStream(new ByteArrayInputStream(record)));
+                pending.remove(segment);
+                pending.add(segment);
+                good = raf.getFilePointer();
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private File runFile(long generation) {
+        return new File(directory, RUN_PREFIX + generation);
+    }
+
+    private static void writeSegment(DataOutput out, Segment segment) throws IOException {
+        out.writeUTF(segment.cameraId);
+        out.writeUTF(segment.path);
+        out.writeLong(segment.startTimeMs);
+        out.writeLong(segment.endTimeMs);
+        out.writeInt(segment.frames);
+        out.writeLong(segment.bytes);
+    }
+
+    private static Segment readSegment(DataInput in) throws IOException {
+        String cameraId = in.readUTF();
+        String path = in.readUTF();
+        long start = in.readLong();
+        long end = in.readLong();
+        int frames = in.readInt();
+        long bytes = in.readLong();
+        return new Segment(cameraId, path, start, end, frames, bytes);
+    }
+
+    // Sorts after every real segment of cameraId starting at timestampMs
+    private static Segment probe(String cameraId, long timestampMs) {
+        return new Segment(cameraId, "\uffff", timestampMs, timestampMs, 0, 0);
+    }
+
+    private static Segment later(Segment a, Segment b) {
+        return a == null || b.startTimeMs >= a.startTimeMs ? b : a;
+    }
+}
@@ -0,0 +1,163 @@
+package com.nvr.wifi;
+
+// Scores Wi-Fi channels by how much neighbouring APs overlap them, to pick
+// the quietest channel for the camera network. Each AP occupies a frequency
+// range (22 MHz per 20 MHz channel on 2.4 GHz, its full channel width on
+// 5/6 GHz); a candidate channel collects the AP's received power in mW
+// scaled by the fraction of the candidate that range covers. Strong close
+// APs dominate, weak far ones barely register.
+//
+// Everything is primitive arrays and a dBm->mW lookup table, so 500 APs
+// against every candidate channel is a few tens of thousands of flops.
+final class ChannelAnalyzer {
+    static final int BAND_2_4_GHZ = 0;
+    static final int BAND_5_GHZ = 1;
+    static final int BAND_6_GHZ = 2;
+    static final String[] BAND_NAMES = {"2.4", "5", "6"};
+
+    // ScanResult.CHANNEL_WIDTH_* values, indexed to MHz
+    private static final int[] CHANNEL_WIDTH_MHZ = {20, 40, 80, 160, 80, 320};
+
+    // Channels worth recommending: 1/6/11 on 2.4 GHz, non-DFS UNII-1/3 on
+    // 5 GHz (cameras rarely handle DFS), and the 6 GHz PSCs
+    static final int[][] CANDIDATES = {
+        {1, 6, 11},
+        {36, 40, 44, 48, 149, 153, 157, 161, 165},
+        {5, 21, 37, 53, 69, 85, 101, 117, 133, 149, 165, 181, 197, 213, 229},
+    };
+
+    // Interference reported for a channel nobody overlaps
+    static final double NOISE_FLOOR_DBM = -100;
+
+    private static final double[] DBM_TO_MW = new double[128];
+
+    static {
+        for (int dbm = 0; dbm < DBM_TO_MW.length; dbm++) {
+            DBM_TO_MW[dbm] = Math.pow(10, -dbm / 10.0);
+        }
+    }
+
+    static final class BandReport {
+        final int band;
+        final int[] channels;
+        // Summed overlapping power per candidate, in dBm
+        final double[] interferenceDbm;
+        final int apCount;
+        final int recommendedChannel;
+
+        BandReport(int band, int[] channels, double[] interferenceDbm, int apCount, int recommendedChannel) {
+            this.band = band;
+            this.channels = channels;
+            this.interferenceDbm = interferenceDbm;
+            this.apCount = apCount;
+            this.recommendedChannel = recommendedChannel;
+        }
+    }
+
+    private ChannelAnalyzer() {
+    }
+
+    static int bandOf(int frequency) {
+        if (frequency >= 2400 && frequency < 2500) {
+            return BAND_2_4_GHZ;
+        }
+        if (frequency >= 5150 && frequency < 5925) {
+            return BAND_5_GHZ;
+        }
+        if (frequency >= 5925 && frequency <= 7125) {
+            return BAND_6_GHZ;
+        }
+        return -1;
+    }
+
+    static int channelOf(int frequency) {
+        switch (bandOf(frequency)) {
+            case BAND_2_4_GHZ:
+                return frequency == 2484 ? 14 : (frequency - 2407) / 5;
+            case BAND_5_GHZ:
+                return (frequency - 5000) / 5;
+            case BAND_6_GHZ:
+                return frequency == 5935 ? 2 : (frequency - 5950) / 5;
+            default:
+                return -1;
+        }
+    }
+
+    static int centerFrequencyOf(int band, int channel) {
+        switch (band) {
+            case BAND_2_4_GHZ:
+                return channel == 14 ? 2484 : 2407 + channel * 5;
+            case BAND_5_GHZ:
+                return 5000 + channel * 5;
+            default:
+                return 5950 + channel * 5;
+        }
+    }
+
+    // Arrays are parallel and only the first count entries are read.
+    // channelWidth uses ScanResult.CHANNEL_WIDTH_* codes and centerFreq0 is
+    // the wide-channel center (0 when the AP is 20 MHz).
+    static BandReport[] analyze(int[] frequency, int[] level, int[] channelWidth, int[] centerFreq0, int count) {
+        double[][] power = new double[CANDIDATES.length][];
+        int[] apCount = new int[CANDIDATES.length];
+        for (int band = 0; band < CANDIDATES.length; band++) {
+            power[band] = new double[CANDIDATES[band].length];
+        }
+
+        for (int i = 0; i < count; i++) {
+            int band = bandOf(frequency[i]);
+            if (band < 0) {
+                continue;
+            }
+            apCount[band]++;
+
+            int width = channelWidth[i] >= 0 && channelWidth[i] < CHANNEL_WIDTH_MHZ.length
+                ? CHANNEL_WIDTH_MHZ[channelWidth[i]] : 20;
+            int center = width > 20 && centerFreq0[i] > 0 ? centerFreq0[i] : frequency[i];
+            // 2.4 GHz 20 MHz transmissions spill over 22 MHz
+            int halfWidth = band == BAND_2_4_GHZ && width == 20 ? 11 : width / 2;
+            int apLow = center - halfWidth;
+            int apHigh = center + halfWidth;
+            double mw = dbmToMw(level[i]);
+
+            int[] candidates = CANDIDATES[band];
+            double[] bandPower = power[band];
+            int candidateHalf = band == BAND_2_4_GHZ ? 11 : 10;
+            for (int c = 0; c < candidates.length; c++) {
+                int candidateCenter = centerFrequencyOf(band, candidates[c]);
+                int overlap = Math.min(apHigh, candidateCenter + candidateHalf)
+                    - Math.max(apLow, candidateCenter - candidateHalf);
+                if (overlap > 0) {
+                    bandPower[c] += mw * overlap / (2.0 * candidateHalf);
+                }
+            }
+        }
+
+        BandReport[] reports = new BandReport[CANDIDATES.length];
+        for (int band = 0; band < CANDIDATES.length; band++) {
+            int[] candidates = CANDIDATES[band];
+            double[] dbm = new double[candidates.length];
+            int best = 0;
+            for (int c = 0; c < candidates.length; c++) {
+                dbm[c] = power[band][c] > 0
+                    ? Math.max(NOISE_FLOOR_DBM, 10 * Math.log10(power[band][c]))
+                    : NOISE_FLOOR_DBM;
+                if (power[band][c] < power[band][best]) {
+                    best = c;
+                }
+            }
+            reports[band] = new BandReport(band, candidates, dbm, apCount[band], candidates[best]);
+        }
+        return reports;
+    }
+
+    private static double dbmToMw(int dbm) {
+        int index = -dbm;
+        if (index < 0) {
+            index = 0;
+        } else if (index >= DBM_TO_MW.length) {
+            index = DBM_TO_MW.length - 1;
+        }
+        return DBM_TO_MW[index];
+    }
+}
@@ -0,0 +1,55 @@
+package com.nvr.wifi;
+
+// Tracks our own startScan() calls against Android's foreground throttle
+// (4 scans per 2 minutes since Android 9) so we never spend a call that the
+// system is going to reject anyway.
+class ScanBudget {
+    static final int DEFAULT_MAX_SCANS = 4;
+    static final long DEFAULT_WINDOW_MS = 2 * 60 * 1000;
+
+    private final long[] scanTimes;
+    private final long windowMs;
+    private int next = 0;
+    private int count = 0;
+    // Set when the system refuses a scan we thought we had budget for
+    private long blockedUntil = 0;
+
+    ScanBudget() {
+        this(DEFAULT_MAX_SCANS, DEFAULT_WINDOW_MS);
+    }
+
+    ScanBudget(int maxScans, long windowMs) {
+        this.scanTimes = new long[maxScans];
+        this.windowMs = windowMs;
+    }
+
+    synchronized boolean canScan(long now) {
+        return now >= nextScanAt(now);
+    }
+
+    // Earliest time at which a scan would fit in the window
+    synchronized long nextScanAt(long now) {
+        long earliest = now;
+        if (count == scanTimes.length) {
+            // The oldest scan sits in the slot we would overwrite next
+            earliest = Math.max(earliest, scanTimes[next] + windowMs);
+        }
+        return Math.max(earliest, blockedUntil);
+    }
+
+    synchronized void recordScan(long now) {
+        scanTimes[next] = now;
+        next = (next + 1) % scanTimes.length;
+        if (count < scanTimes.length) {
+            count++;
+        }
+    }
+
+    // startScan() returned false: the system's own count disagrees with ours
+    // (other apps, or scans issued before we were created), so back off until
+    // our oldest scan leaves the window.
+    synchronized void recordRejected(long now) {
+        long oldest = count == 0 ? now : scanTimes[count == scanTimes.length ? next : 0];
+        blockedUntil = Math.max(oldest + windowMs, now + windowMs / scanTimes.length);
+    }
+}
@@ -0,0 +1,54 @@
+package com.nvr.wifi;
+
+import java.util.Arrays;
+
+// Scan results as parallel columns, for the compact getAvailableNetworks
+// form. Row i of every column is the same network; networks without an
+// SSID are skipped, as in the per-map form. Pure Java.
+final class ScanColumns {
+    String[] ssids;
+    String[] bssids;
+    int[] levels;
+    int[] frequencies;
+    // ScanSecurity bitmask
+    int[] security;
+    int count = 0;
+
+    ScanColumns(int capacity) {
+        ssids = new String[capacity];
+        bssids = new String[capacity];
+        levels = new int[capacity];
+        frequencies = new int[capacity];
+        security = new int[capacity];
+    }
+
+    void add(String ssid, String bssid, int level, int frequency, String capabilities) {
+        if (ssid == null || ssid.isEmpty()) {
+            return;
+        }
+        if (count == ssids.length) {
+            resize(Math.max(8, count * 2));
+        }
+        ssids[count] = ssid;
+        bssids[count] = bssid;
+        levels[count] = level;
+        frequencies[count] = frequency;
+        security[count] = ScanSecurity.flagsOf(capabilities);
+        count++;
+    }
+
+    // Cuts every column to count, so they can be handed over whole
+    void trim() {
+        if (count != ssids.length) {
+            resize(count);
+        }
+    }
+
+    private void resize(int capacity) {
+        ssids = Arrays.copyOf(ssids, capacity);
+        bssids = Arrays.copyOf(bssids, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        security = Arrays.copyOf(security, capacity);
+    }
+}
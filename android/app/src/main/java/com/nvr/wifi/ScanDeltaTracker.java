@@ -0,0 +1,114 @@
+package com.nvr.wifi;
+
+import android.net.wifi.ScanResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Remembers the last reported scan keyed by BSSID so the stream only has to
+// send what changed. An AP counts as changed when its RSSI moved by at least
+// rssiThreshold dB from the value JS last saw, or its frequency or
+// capabilities changed. Every update bumps seq so JS can spot a missed delta
+// and ask for a full snapshot.
+class ScanDeltaTracker {
+    static final int DEFAULT_RSSI_THRESHOLD = 5;
+
+    static class Delta {
+        final long seq;
+        final List<ScanResult> added = new ArrayList<>();
+        final List<ScanResult> changed = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+
+        Delta(long seq) {
+            this.seq = seq;
+        }
+
+        boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    static class Snapshot {
+        final long seq;
+        final List<ScanResult> networks;
+
+        Snapshot(long seq, List<ScanResult> networks) {
+            this.seq = seq;
+            this.networks = networks;
+        }
+    }
+
+    // Last values reported to JS, not necessarily the latest scan
+    private final Map<String, ScanResult> reported = new HashMap<>();
+    private int rssiThreshold = DEFAULT_RSSI_THRESHOLD;
+    private long seq = 0;
+
+    synchronized void setRssiThreshold(int rssiThreshold) {
+        this.rssiThreshold = Math.max(0, rssiThreshold);
+    }
+
+    // Returns null when nothing changed; seq only advances for sent deltas
+    synchronized Delta update(List<ScanResult> results) {
+        Delta delta = new Delta(seq + 1);
+        Set<String> seen = new HashSet<>(results.size() * 2);
+
+        for (ScanResult result : results) {
+            if (result.SSID == null || result.SSID.isEmpty() || result.BSSID == null) {
+                continue;
+            }
+            // The same BSSID can show up twice in one batch; first one wins
+            if (!seen.add(result.BSSID)) {
+                continue;
+            }
+
+            ScanResult previous = reported.get(result.BSSID);
+            if (previous == null) {
+                reported.put(result.BSSID, result);
+                delta.added.add(result);
+            } else if (hasChanged(previous, result)) {
+                reported.put(result.BSSID, result);
+                delta.changed.add(result);
+            }
+        }
+
+        Iterator<Map.Entry<String, ScanResult>> it = reported.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, ScanResult> entry = it.next();
+            if (!seen.contains(entry.getKey())) {
+                delta.removed.add(entry.getKey());
+                it.remove();
+            }
+        }
+
+        if (delta.isEmpty()) {
+            return null;
+        }
+        seq = delta.seq;
+        return delta;
+    }
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(seq, new ArrayList<>(reported.values()));
+    }
+
+    synchronized void reset() {
+        reported.clear();
+        seq = 0;
+    }
+
+    private boolean hasChanged(ScanResult previous, ScanResult current) {
+        return Math.abs(current.level - previous.level) >= rssiThreshold
+            || current.frequency != previous.frequency
+            || !equalsNullable(current.capabilities, previous.capabilities)
+            || !equalsNullable(current.SSID, previous.SSID);
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,72 @@
+package com.nvr.wifi;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Parses ScanResult.capabilities (e.g. "[WPA2-PSK-CCMP][ESS]") into a
+// bitmask. A scan has far fewer distinct capability strings than APs, so
+// parsed masks are memoised by string.
+final class ScanSecurity {
+    static final int WEP = 1;
+    static final int WPA = 1 << 1;
+    static final int WPA2 = 1 << 2;
+    static final int WPA3 = 1 << 3;
+    static final int PSK = 1 << 4;
+    static final int EAP = 1 << 5;
+
+    // Same rule as the original isSecured check: WEP, WPA* or PSK
+    static final int SECURED_MASK = WEP | WPA | PSK;
+
+    private static final int MAX_CACHED = 256;
+    private static final Map<String, Integer> cache = new HashMap<>();
+
+    private ScanSecurity() {
+    }
+
+    static int flagsOf(String capabilities) {
+        if (capabilities == null) {
+            return 0;
+        }
+        synchronized (cache) {
+            Integer cached = cache.get(capabilities);
+            if (cached != null) {
+                return cached;
+            }
+            int flags = parse(capabilities);
+            if (cache.size() >= MAX_CACHED) {
+                cache.clear();
+            }
+            cache.put(capabilities, flags);
+            return flags;
+        }
+    }
+
+    static boolean isSecured(int flags) {
+        return (flags & SECURED_MASK) != 0;
+    }
+
+    private static int parse(String capabilities) {
+        String upper = capabilities.toUpperCase(Locale.ROOT);
+        int flags = 0;
+        if (upper.contains("WEP")) {
+            flags |= WEP;
+        }
+        if (upper.contains("WPA")) {
+            flags |= WPA;
+        }
+        if (upper.contains("WPA2") || upper.contains("RSN")) {
+            flags |= WPA2;
+        }
+        if (upper.contains("WPA3") || upper.contains("SAE")) {
+            flags |= WPA3;
+        }
+        if (upper.contains("PSK")) {
+            flags |= PSK;
+        }
+        if (upper.contains("EAP")) {
+            flags |= EAP;
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,161 @@
+package com.nvr.wifi;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// RSSI time series per BSSID for camera placement. Each AP gets a fixed-size
+// ring of primitive samples with EWMA, min/max and variance kept up to date
+// as samples arrive. APs are kept in least-recently-seen order so the table
+// stays bounded: the oldest is evicted past MAX_BSSIDS, and anything unseen
+// for STALE_MS is dropped.
+class SignalHistory {
+    static final int DEFAULT_CAPACITY = 64;
+    static final int MAX_BSSIDS = 256;
+    static final long STALE_MS = 10 * 60 * 1000;
+    static final double DEFAULT_EWMA_ALPHA = 0.3;
+
+    static final class Series {
+        final int[] rssi;
+        final long[] timestamps;
+        private int head = 0;
+        private int count = 0;
+
+        // Window aggregates, exact because samples are ints
+        private long sum = 0;
+        private long sumSquares = 0;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private double ewma = 0;
+        private long lastSeen = 0;
+
+        Series(int capacity) {
+            this.rssi = new int[capacity];
+            this.timestamps = new long[capacity];
+        }
+
+        void add(int level, long timestamp, double alpha) {
+            boolean evictedExtreme = false;
+            if (count == rssi.length) {
+                int evicted = rssi[head];
+                sum -= evicted;
+                sumSquares -= (long) evicted * evicted;
+                evictedExtreme = evicted == min || evicted == max;
+            } else {
+                count++;
+            }
+
+            rssi[head] = level;
+            timestamps[head] = timestamp;
+            head = (head + 1) % rssi.length;
+            sum += level;
+            sumSquares += (long) level * level;
+            lastSeen = timestamp;
+            ewma = count == 1 ? level : alpha * level + (1 - alpha) * ewma;
+
+            if (evictedExtreme) {
+                // Only rescan the window when the old extreme just left it
+                recomputeMinMax();
+            } else {
+                min = Math.min(min, level);
+                max = Math.max(max, level);
+            }
+        }
+
+        private void recomputeMinMax() {
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                min = Math.min(min, rssi[i]);
+                max = Math.max(max, rssi[i]);
+            }
+        }
+
+        int size() {
+            return count;
+        }
+
+        // i = 0 is the oldest sample in the window
+        int rssiAt(int i) {
+            return rssi[(head - count + i + rssi.length) % rssi.length];
+        }
+
+        long timestampAt(int i) {
+            return timestamps[(head - count + i + rssi.length) % rssi.length];
+        }
+
+        long lastSeen() {
+            return lastSeen;
+        }
+
+        int min() {
+            return min;
+        }
+
+        int max() {
+            return max;
+        }
+
+        double ewma() {
+            return ewma;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        double variance() {
+            if (count == 0) {
+                return 0;
+            }
+            double mean = mean();
+            return Math.max(0, (double) sumSquares / count - mean * mean);
+        }
+    }
+
+    private final int capacity;
+    private final double alpha;
+    // Insertion order doubles as last-seen order: record() re-inserts
+    private final LinkedHashMap<String, Series> series = new LinkedHashMap<>();
+
+    SignalHistory() {
+        this(DEFAULT_CAPACITY, DEFAULT_EWMA_ALPHA);
+    }
+
+    SignalHistory(int capacity, double alpha) {
+        this.capacity = capacity;
+        this.alpha = alpha;
+    }
+
+    synchronized void record(String bssid, int level, long timestamp) {
+        Series s = series.remove(bssid);
+        if (s == null) {
+            s = new Series(capacity);
+        } else if (s.size() > 0 && timestamp <= s.lastSeen()) {
+            // Sample already recorded (cache hits, stream re-reads)
+            series.put(bssid, s);
+            return;
+        }
+        s.add(level, timestamp, alpha);
+        series.put(bssid, s);
+
+        evict(timestamp);
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Series>> it = series.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Series> eldest = it.next();
+            if (series.size() > MAX_BSSIDS || now - eldest.getValue().lastSeen() > STALE_MS) {
+                it.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    // Series are mutated in place; read them while synchronized on this
+    synchronized Series get(String bssid) {
+        return series.get(bssid);
+    }
+}
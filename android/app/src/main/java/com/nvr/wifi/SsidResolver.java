@@ -0,0 +1,206 @@
+package com.nvr.wifi;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resolves the SSID of the current Wi-Fi connection without blocking the
+// caller. Every step runs on a dedicated handler thread:
+//   1. WifiInfo.getSSID()
+//   2. match the connected BSSID against scan results, waiting for the scan
+//      coordinator's broadcast for at most SCAN_MATCH_TIMEOUT_MS
+//   3. the hidden getConnectionInfo() via reflection
+// A resolved SSID is cached until invalidate() reports a link change.
+class SsidResolver {
+    private static final String TAG = "SsidResolver";
+    private static final long SCAN_MATCH_TIMEOUT_MS = 3000;
+    // Scan results this recent are good enough to find our own BSSID
+    private static final long SCAN_MAX_AGE_MS = 30 * 1000;
+
+    static class Result {
+        final String ssid;
+        final String bssid;
+        final int rssi;
+
+        Result(String ssid, String bssid, int rssi) {
+            this.ssid = ssid;
+            this.bssid = bssid;
+            this.rssi = rssi;
+        }
+    }
+
+    interface Callback {
+        // result is null when no method produced an SSID
+        void onResolved(Result result);
+    }
+
+    private final WifiManager wifiManager;
+    private final WifiScanCoordinator coordinator;
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    // Only touched on the resolver thread
+    private Result cached = null;
+    private final List<Callback> pending = new ArrayList<>();
+    private boolean resolving = false;
+    // Bumped on every attempt so a late scan answer cannot finish a newer one
+    private int attempt = 0;
+
+    SsidResolver(WifiManager wifiManager, WifiScanCoordinator coordinator) {
+        this.wifiManager = wifiManager;
+        this.coordinator = coordinator;
+        this.thread = new HandlerThread("WifiSsidResolver");
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    void resolve(final Callback callback) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (cached != null) {
+                    callback.onResolved(cached);
+                    return;
+                }
+                pending.add(callback);
+                if (!resolving) {
+                    resolving = true;
+                    startAttempt();
+                }
+            }
+        });
+    }
+
+    // Drop the cached SSID; called by the module when the link changes
+    void invalidate() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                cached = null;
+            }
+        });
+    }
+
+    private void startAttempt() {
+        final int current = ++attempt;
+
+        // Method 1: Try standard API first
+        WifiInfo info = wifiManager.getConnectionInfo();
+        String ssid = info != null ? cleanSsid(info.getSSID()) : null;
+        if (ssid != null) {
+            finish(current, new Result(ssid, info.getBSSID(), info.getRssi()));
+            return;
+        }
+
+        // Method 2: Match our BSSID in scan results, without waiting on a thread
+        final String bssid = info != null ? info.getBSSID() : null;
+        final int rssi = info != null ? info.getRssi() : 0;
+        if (bssid == null) {
+            finish(current, fromReflection());
+            return;
+        }
+
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                finish(current, fromReflection());
+            }
+        }, SCAN_MATCH_TIMEOUT_MS);
+
+        coordinator.requestScan(SCAN_MAX_AGE_MS, new WifiScanCoordinator.Callback() {
+            @Override
+            public void onScanResults(final List<ScanResult> results) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (ScanResult result : results) {
+                            if (bssid.equals(result.BSSID) && cleanSsid(result.SSID) != null) {
+                                finish(current, new Result(cleanSsid(result.SSID), bssid, rssi));
+                                return;
+                            }
+                        }
+                        finish(current, fromReflection());
+                    }
+                });
+            }
+
+            @Override
+            public void onScanFailed(String code, String message) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish(current, fromReflection());
+                    }
+                });
+            }
+        });
+    }
+
+    private void finish(int forAttempt, Result result) {
+        if (forAttempt != attempt || !resolving) {
+            return;
+        }
+        resolving = false;
+        // Invalidates the pending timeout or scan answer of this attempt
+        attempt++;
+        if (result != null) {
+            cached = result;
+        }
+
+        List<Callback> callbacks = new ArrayList<>(pending);
+        pending.clear();
+        for (Callback callback : callbacks) {
+            callback.onResolved(result);
+        }
+    }
+
+    // Method 3: Try Android hidden API with reflection as last resort
+    private Result fromReflection() {
+        try {
+            // This is a hack that uses reflection to access hidden methods
+            // It might not work on all Android versions
+            Class<?> wifiManagerClass = WifiManager.class;
+            java.lang.reflect.Method getConnectionInfo = wifiManagerClass.getDeclaredMethod("getConnectionInfo");
+            Object wifiInfo = getConnectionInfo.invoke(wifiManager);
+
+            if (wifiInfo != null) {
+                Class<?> wifiInfoClass = wifiInfo.getClass();
+                java.lang.reflect.Method getSSID = wifiInfoClass.getDeclaredMethod("getSSID");
+                Object ssidObj = getSSID.invoke(wifiInfo);
+
+                String ssid = ssidObj != null ? cleanSsid(ssidObj.toString()) : null;
+                if (ssid != null) {
+                    WifiInfo info = (WifiInfo) wifiInfo;
+                    return new Result(ssid, info.getBSSID(), info.getRssi());
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Error getting SSID using reflection: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    // SSID is usually wrapped in quotes; returns null for missing/unknown SSIDs
+    static String cleanSsid(String ssid) {
+        if (ssid != null && ssid.length() >= 2 && ssid.startsWith("\"") && ssid.endsWith("\"")) {
+            ssid = ssid.substring(1, ssid.length() - 1);
+        }
+
+        if (ssid == null || ssid.equals("<unknown ssid>") || ssid.isEmpty()) {
+            return null;
+        }
+
+        return ssid;
+    }
+
+    void release() {
+        thread.quitSafely();
+    }
+}
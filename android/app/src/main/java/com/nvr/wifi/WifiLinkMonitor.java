@@ -0,0 +1,225 @@
+package com.nvr.wifi;
+
+import android.net.ConnectivityManager;
+import android.net.LinkAddress;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.SystemClock;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+// Keeps an in-memory snapshot of the current Wi-Fi link, updated by a single
+// NetworkCallback registered for the module's lifetime. Reading the snapshot
+// is a volatile read instead of several WifiManager binder calls. The camera
+// modules also use it to find the Wi-Fi network itself, which is not the
+// default network when the access point has no internet.
+public class WifiLinkMonitor {
+    // RSSI jitter below this is not worth an event
+    private static final int RSSI_EVENT_THRESHOLD = 3;
+
+    static final class LinkSnapshot {
+        static final LinkSnapshot DISCONNECTED = new LinkSnapshot(false, null, null, 0, 0, 0, null, 0);
+
+        final boolean connected;
+        final String ssid;
+        final String bssid;
+        final int rssi;
+        final int linkSpeedMbps;
+        final int frequency;
+        final String ipAddress;
+        final long updatedAt;
+
+        LinkSnapshot(boolean connected, String ssid, String bssid, int rssi, int linkSpeedMbps,
+                     int frequency, String ipAddress, long updatedAt) {
+            this.connected = connected;
+            this.ssid = ssid;
+            this.bssid = bssid;
+            this.rssi = rssi;
+            this.linkSpeedMbps = linkSpeedMbps;
+            this.frequency = frequency;
+            this.ipAddress = ipAddress;
+            this.updatedAt = updatedAt;
+        }
+
+        // Same network and address, regardless of signal
+        boolean sameNetwork(LinkSnapshot other) {
+            return connected == other.connected
+                && equalsNullable(ssid, other.ssid)
+                && equalsNullable(bssid, other.bssid)
+                && equalsNullable(ipAddress, other.ipAddress);
+        }
+    }
+
+    interface Listener {
+        // networkChanged is true when the connection itself changed (connect,
+        // disconnect, roam, new address), false for signal/speed updates
+        void onLinkChanged(LinkSnapshot snapshot, boolean networkChanged);
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final WifiManager wifiManager;
+    private final Listener listener;
+    private final LinkCallback callback;
+
+    private volatile LinkSnapshot current = LinkSnapshot.DISCONNECTED;
+    // Guarded by this
+    private Network wifiNetwork = null;
+    private LinkProperties linkProperties = null;
+    private String ipAddress = null;
+    private LinkSnapshot reported = LinkSnapshot.DISCONNECTED;
+
+    private class LinkCallback extends ConnectivityManager.NetworkCallback {
+        LinkCallback() {
+            super();
+        }
+
+        LinkCallback(int flags) {
+            super(flags);
+        }
+
+        @Override
+        public void onAvailable(Network network) {
+            synchronized (WifiLinkMonitor.this) {
+                wifiNetwork = network;
+            }
+            refresh(network, null);
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            refresh(network, capabilities);
+        }
+
+        @Override
+        public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+            synchronized (WifiLinkMonitor.this) {
+                if (!network.equals(wifiNetwork)) {
+                    return;
+                }
+                WifiLinkMonitor.this.linkProperties = linkProperties;
+                ipAddress = ipv4Address(linkProperties);
+            }
+            refresh(network, null);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            synchronized (WifiLinkMonitor.this) {
+                if (!network.equals(wifiNetwork)) {
+                    return;
+                }
+                wifiNetwork = null;
+                linkProperties = null;
+                ipAddress = null;
+            }
+            publish(LinkSnapshot.DISCONNECTED);
+        }
+    }
+
+    WifiLinkMonitor(ConnectivityManager connectivityManager, WifiManager wifiManager, Listener listener) {
+        this.connectivityManager = connectivityManager;
+        this.wifiManager = wifiManager;
+        this.listener = listener;
+        // From Android 12 WifiInfo only reaches the callback with this flag
+        this.callback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+            ? new LinkCallback(ConnectivityManager.NetworkCallback.FLAG_INCLUDE_LOCATION_INFO)
+            : new LinkCallback();
+    }
+
+    void start() {
+        NetworkRequest request = new NetworkRequest.Builder()
+            .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+            .build();
+        connectivityManager.registerNetworkCallback(request, callback);
+    }
+
+    void stop() {
+        try {
+            connectivityManager.unregisterNetworkCallback(callback);
+        } catch (IllegalArgumentException e) {
+            // Callback was never registered
+        }
+    }
+
+    LinkSnapshot getSnapshot() {
+        return current;
+    }
+
+    // Addresses and interface of the Wi-Fi network, or null while there is none
+    public synchronized LinkProperties getLinkProperties() {
+        return linkProperties;
+    }
+
+    private void refresh(Network network, NetworkCapabilities capabilities) {
+        String address;
+        synchronized (this) {
+            if (!network.equals(wifiNetwork)) {
+                return;
+            }
+            address = ipAddress;
+        }
+
+        WifiInfo info = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && capabilities != null
+                && capabilities.getTransportInfo() instanceof WifiInfo) {
+            info = (WifiInfo) capabilities.getTransportInfo();
+        }
+        if (info == null) {
+            // Older releases: one binder call per link change, not per query
+            info = wifiManager.getConnectionInfo();
+        }
+        if (info == null) {
+            return;
+        }
+
+        publish(new LinkSnapshot(
+            true,
+            SsidResolver.cleanSsid(info.getSSID()),
+            info.getBSSID(),
+            info.getRssi(),
+            info.getLinkSpeed(),
+            info.getFrequency(),
+            address,
+            SystemClock.elapsedRealtime()));
+    }
+
+    private void publish(LinkSnapshot next) {
+        boolean networkChanged;
+        synchronized (this) {
+            current = next;
+            // Compare with what listeners last saw so slow drift still shows up
+            networkChanged = !next.sameNetwork(reported);
+            boolean signalChanged = Math.abs(next.rssi - reported.rssi) >= RSSI_EVENT_THRESHOLD
+                || next.linkSpeedMbps != reported.linkSpeedMbps
+                || next.frequency != reported.frequency;
+            if (!networkChanged && !signalChanged) {
+                return;
+            }
+            reported = next;
+        }
+        listener.onLinkChanged(next, networkChanged);
+    }
+
+    private static String ipv4Address(LinkProperties linkProperties) {
+        if (linkProperties == null || linkProperties.getLinkAddresses() == null) {
+            return null;
+        }
+        for (LinkAddress linkAddress : linkProperties.getLinkAddresses()) {
+            InetAddress address = linkAddress.getAddress();
+            if (address instanceof Inet4Address) {
+                return address.getHostAddress();
+            }
+        }
+        return null;
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
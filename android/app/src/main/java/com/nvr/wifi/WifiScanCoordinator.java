@@ -0,0 +1,228 @@
+package com.nvr.wifi;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Owns every startScan() issued by the module. Callers that arrive while a
+// scan is running join it instead of starting their own, results are cached
+// for a configurable TTL, and scans that would hit the system throttle are
+// answered from the last known results instead.
+class WifiScanCoordinator {
+    static final long DEFAULT_CACHE_TTL_MS = 10 * 1000;
+    private static final long SCAN_TIMEOUT_MS = 15 * 1000;
+
+    // Sees every batch of results handed out, including stream re-reads
+    interface ResultsListener {
+        void onResults(List<ScanResult> results);
+    }
+
+    interface Callback {
+        void onScanResults(List<ScanResult> results);
+
+        void onScanFailed(String code, String message);
+    }
+
+    private final Context context;
+    private final WifiManager wifiManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ScanBudget budget = new ScanBudget();
+    private final Object lock = new Object();
+
+    private List<ScanResult> cachedResults = null;
+    private long cachedAt = 0;
+    private long cacheTtlMs = DEFAULT_CACHE_TTL_MS;
+
+    private volatile ResultsListener resultsListener = null;
+
+    private final List<Callback> waiters = new ArrayList<>();
+    private boolean scanInFlight = false;
+
+    private final BroadcastReceiver scanReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(intent.getAction())) {
+                finishScan(false);
+            }
+        }
+    };
+
+    private final Runnable scanTimeout = new Runnable() {
+        @Override
+        public void run() {
+            // No broadcast arrived; hand out whatever the system has
+            finishScan(false);
+        }
+    };
+
+    WifiScanCoordinator(Context context, WifiManager wifiManager) {
+        this.context = context;
+        this.wifiManager = wifiManager;
+    }
+
+    void setResultsListener(ResultsListener listener) {
+        resultsListener = listener;
+    }
+
+    void setCacheTtl(long ttlMs) {
+        synchronized (lock) {
+            cacheTtlMs = Math.max(0, ttlMs);
+        }
+    }
+
+    // maxAgeMs < 0 means "use the configured cache TTL"
+    void requestScan(long maxAgeMs, Callback callback) {
+        List<ScanResult> immediate = null;
+        boolean throttled = false;
+        boolean startScan = false;
+
+        synchronized (lock) {
+            long now = SystemClock.elapsedRealtime();
+            long maxAge = maxAgeMs < 0 ? cacheTtlMs : maxAgeMs;
+
+            if (cachedResults != null && now - cachedAt <= maxAge) {
+                immediate = cachedResults;
+            } else {
+                waiters.add(callback);
+                if (!scanInFlight) {
+                    if (budget.canScan(now)) {
+                        scanInFlight = true;
+                        startScan = true;
+                    } else {
+                        // Out of budget: a scan now would only be rejected
+                        immediate = lastKnownResults();
+                        throttled = true;
+                        waiters.remove(callback);
+                    }
+                }
+            }
+        }
+
+        if (immediate != null) {
+            deliver(callback, immediate, throttled);
+            return;
+        }
+
+        if (startScan) {
+            beginScan();
+        }
+    }
+
+    private void beginScan() {
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+        context.registerReceiver(scanReceiver, intentFilter);
+
+        long now = SystemClock.elapsedRealtime();
+        budget.recordScan(now);
+        boolean success = wifiManager.startScan();
+        if (!success) {
+            budget.recordRejected(now);
+            finishScan(true);
+            return;
+        }
+        handler.postDelayed(scanTimeout, SCAN_TIMEOUT_MS);
+    }
+
+    private void finishScan(boolean scanFailed) {
+        List<Callback> callbacks;
+        List<ScanResult> results;
+
+        synchronized (lock) {
+            if (!scanInFlight) {
+                return;
+            }
+            scanInFlight = false;
+            handler.removeCallbacks(scanTimeout);
+            try {
+                context.unregisterReceiver(scanReceiver);
+            } catch (IllegalArgumentException e) {
+                // Already unregistered by release()
+            }
+
+            results = lastKnownResults();
+            if (!scanFailed) {
+                cachedResults = results;
+                cachedAt = SystemClock.elapsedRealtime();
+            }
+
+            callbacks = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+
+        notifyResults(results);
+        for (Callback callback : callbacks) {
+            deliver(callback, results, scanFailed);
+        }
+    }
+
+    // Results seen outside our own scans (e.g. by the scan stream) still
+    // refresh the cache, unless a scan of ours is about to replace them.
+    void offerResults(List<ScanResult> results) {
+        synchronized (lock) {
+            if (!scanInFlight) {
+                cachedResults = results;
+                cachedAt = SystemClock.elapsedRealtime();
+            }
+        }
+        notifyResults(results);
+    }
+
+    private void notifyResults(List<ScanResult> results) {
+        ResultsListener listener = resultsListener;
+        if (listener != null) {
+            listener.onResults(results);
+        }
+    }
+
+    private List<ScanResult> lastKnownResults() {
+        List<ScanResult> results = wifiManager.getScanResults();
+        return results != null ? results : Collections.<ScanResult>emptyList();
+    }
+
+    // Stale results are still better than an error, so a failed or skipped
+    // scan only rejects when there is nothing at all to show.
+    private void deliver(Callback callback, List<ScanResult> results, boolean scanFailed) {
+        try {
+            if (results.isEmpty() && !wifiManager.isWifiEnabled()) {
+                callback.onScanFailed("WIFI_DISABLED", "Wi-Fi is not enabled");
+            } else if (results.isEmpty() && scanFailed) {
+                callback.onScanFailed("SCAN_FAILURE", "Failed to start WiFi scan");
+            } else {
+                callback.onScanResults(results);
+            }
+        } catch (Exception e) {
+            callback.onScanFailed("ERROR", e.getMessage());
+        }
+    }
+
+    void release() {
+        List<Callback> callbacks;
+        synchronized (lock) {
+            handler.removeCallbacks(scanTimeout);
+            if (scanInFlight) {
+                scanInFlight = false;
+                try {
+                    context.unregisterReceiver(scanReceiver);
+                } catch (IllegalArgumentException e) {
+                    // Receiver was never registered
+                }
+            }
+            callbacks = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        for (Callback callback : callbacks) {
+            callback.onScanFailed("ERROR", "Wi-Fi scanner was released");
+        }
+    }
+}
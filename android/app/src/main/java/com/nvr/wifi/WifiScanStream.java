@@ -0,0 +1,159 @@
+package com.nvr.wifi;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.List;
+
+// Keeps one SCAN_RESULTS_AVAILABLE_ACTION receiver registered for as long as
+// JS is listening and forwards results no more often than minEmitIntervalMs.
+// Results from scans started by anyone (us, the system, other apps) are
+// picked up; active scans are requested through the coordinator so they
+// still respect the scan budget.
+class WifiScanStream {
+    static final long DEFAULT_MIN_EMIT_INTERVAL_MS = 1000;
+    static final long DEFAULT_SCAN_INTERVAL_MS = 30 * 1000;
+
+    interface Listener {
+        void onScanResults(List<ScanResult> results);
+    }
+
+    private final Context context;
+    private final WifiManager wifiManager;
+    private final WifiScanCoordinator coordinator;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Only touched on the main thread
+    private boolean running = false;
+    private long minEmitIntervalMs = DEFAULT_MIN_EMIT_INTERVAL_MS;
+    private long scanIntervalMs = DEFAULT_SCAN_INTERVAL_MS;
+    private long lastEmitAt = 0;
+    private boolean emitPending = false;
+
+    private final BroadcastReceiver streamReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(intent.getAction())) {
+                scheduleEmit();
+            }
+        }
+    };
+
+    private final Runnable emitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            emitPending = false;
+            emit();
+        }
+    };
+
+    private final Runnable scanRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            // Results arrive through streamReceiver; the callback only matters
+            // when the coordinator answers from cache without a broadcast.
+            coordinator.requestScan(scanIntervalMs, new WifiScanCoordinator.Callback() {
+                @Override
+                public void onScanResults(List<ScanResult> results) {
+                }
+
+                @Override
+                public void onScanFailed(String code, String message) {
+                }
+            });
+            handler.postDelayed(this, scanIntervalMs);
+        }
+    };
+
+    WifiScanStream(Context context, WifiManager wifiManager, WifiScanCoordinator coordinator, Listener listener) {
+        this.context = context;
+        this.wifiManager = wifiManager;
+        this.coordinator = coordinator;
+        this.listener = listener;
+    }
+
+    // scanIntervalMs <= 0 makes the stream purely passive
+    void start(final long minEmitIntervalMs, final long scanIntervalMs) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                WifiScanStream.this.minEmitIntervalMs = Math.max(0, minEmitIntervalMs);
+                WifiScanStream.this.scanIntervalMs = scanIntervalMs;
+
+                if (!running) {
+                    running = true;
+                    IntentFilter intentFilter = new IntentFilter();
+                    intentFilter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+                    context.registerReceiver(streamReceiver, intentFilter);
+                }
+
+                // Send what the system already has so JS does not start empty
+                lastEmitAt = 0;
+                scheduleEmit();
+
+                handler.removeCallbacks(scanRunnable);
+                if (scanIntervalMs > 0) {
+                    handler.post(scanRunnable);
+                }
+            }
+        });
+    }
+
+    void stop() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!running) {
+                    return;
+                }
+                running = false;
+                emitPending = false;
+                handler.removeCallbacks(emitRunnable);
+                handler.removeCallbacks(scanRunnable);
+                try {
+                    context.unregisterReceiver(streamReceiver);
+                } catch (IllegalArgumentException e) {
+                    // Receiver was never registered
+                }
+            }
+        });
+    }
+
+    private void scheduleEmit() {
+        if (!running || emitPending) {
+            return;
+        }
+        long wait = lastEmitAt + minEmitIntervalMs - SystemClock.elapsedRealtime();
+        emitPending = true;
+        if (wait <= 0) {
+            handler.post(emitRunnable);
+        } else {
+            // Trailing emit picks up whatever arrived during the quiet period
+            handler.postDelayed(emitRunnable, wait);
+        }
+    }
+
+    private void emit() {
+        if (!running) {
+            return;
+        }
+        lastEmitAt = SystemClock.elapsedRealtime();
+        List<ScanResult> results = wifiManager.getScanResults();
+        if (results == null) {
+            return;
+        }
+        coordinator.offerResults(results);
+        listener.onScanResults(results);
+    }
+}
@@ -1,11 +1,11 @@
 package com.nvr.wifi;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
+import android.net.ConnectivityManager;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiManager;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 
@@ -14,19 +14,70 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class WifiScannerModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "WifiScannerModule";
+    static final String SCAN_RESULTS_EVENT = "WifiScanResults";
+    static final String SCAN_DELTA_EVENT = "WifiScanDelta";
+    static final String LINK_CHANGED_EVENT = "WifiLinkChanged";
+
     private final ReactApplicationContext reactContext;
     private WifiManager wifiManager;
+    private final WifiScanCoordinator scanCoordinator;
+    private final WifiScanStream scanStream;
+    private final SsidResolver ssidResolver;
+    private final WifiLinkMonitor linkMonitor;
+    private final ScanDeltaTracker deltaTracker = new ScanDeltaTracker();
+    private final SignalHistory signalHistory = new SignalHistory();
+    // Written on the modules thread, read when the stream emits on main
+    private volatile boolean streamDeltas = false;
 
     public WifiScannerModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
         this.wifiManager = (WifiManager) reactContext.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        this.scanCoordinator = new WifiScanCoordinator(reactContext, wifiManager);
+        this.scanCoordinator.setResultsListener(new WifiScanCoordinator.ResultsListener() {
+            @Override
+            public void onResults(List<ScanResult> results) {
+                recordSignals(results);
+            }
+        });
+        this.ssidResolver = new SsidResolver(wifiManager, scanCoordinator);
+        ConnectivityManager connectivityManager = (ConnectivityManager) reactContext.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.linkMonitor = new WifiLinkMonitor(connectivityManager, wifiManager, new WifiLinkMonitor.Listener() {
+            @Override
+            public void onLinkChanged(WifiLinkMonitor.LinkSnapshot snapshot, boolean networkChanged) {
+                if (networkChanged) {
+                    ssidResolver.invalidate();
+                }
+                WritableMap event = toWritableMap(snapshot);
+                event.putBoolean("networkChanged", networkChanged);
+                sendEvent(LINK_CHANGED_EVENT, event);
+            }
+        });
+        this.linkMonitor.start();
+        this.scanStream = new WifiScanStream(reactContext, wifiManager, scanCoordinator, new WifiScanStream.Listener() {
+            @Override
+            public void onScanResults(List<ScanResult> results) {
+                if (!streamDeltas) {
+                    sendEvent(SCAN_RESULTS_EVENT, toWritableArray(results));
+                    return;
+                }
+                ScanDeltaTracker.Delta delta = deltaTracker.update(results);
+                if (delta != null) {
+                    sendEvent(SCAN_DELTA_EVENT, toWritableMap(delta));
+                }
+            }
+        });
     }
 
     @NonNull
@@ -35,64 +86,204 @@ public class WifiScannerModule extends ReactContextBaseJavaModule {
         return "WifiScanner";
     }
 
+    WifiLinkMonitor getLinkMonitor() {
+        return linkMonitor;
+    }
+
+    // Bit values for the "security" column of compact scan results
+    @Override
+    public Map<String, Object> getConstants() {
+        Map<String, Object> constants = new HashMap<>();
+        constants.put("SECURITY_WEP", ScanSecurity.WEP);
+        constants.put("SECURITY_WPA", ScanSecurity.WPA);
+        constants.put("SECURITY_WPA2", ScanSecurity.WPA2);
+        constants.put("SECURITY_WPA3", ScanSecurity.WPA3);
+        constants.put("SECURITY_PSK", ScanSecurity.PSK);
+        constants.put("SECURITY_EAP", ScanSecurity.EAP);
+        constants.put("SECURITY_SECURED_MASK", ScanSecurity.SECURED_MASK);
+        return constants;
+    }
+
     @ReactMethod
-    public void getAvailableNetworks(final Promise promise) {
+    public void getAvailableNetworks(ReadableMap options, final Promise promise) {
         try {
             if (!wifiManager.isWifiEnabled()) {
                 promise.reject("WIFI_DISABLED", "Wi-Fi is not enabled");
                 return;
             }
 
-            // Register the broadcast receiver
-            BroadcastReceiver wifiScanReceiver = new BroadcastReceiver() {
+            // maxAgeMs lets callers accept cached results up to that age
+            long maxAgeMs = -1;
+            if (options != null && options.hasKey("maxAgeMs") && !options.isNull("maxAgeMs")) {
+                maxAgeMs = (long) options.getDouble("maxAgeMs");
+            }
+            // compact returns parallel arrays instead of one map per network
+            final boolean compact = options != null && options.hasKey("compact")
+                && !options.isNull("compact") && options.getBoolean("compact");
+
+            scanCoordinator.requestScan(maxAgeMs, new WifiScanCoordinator.Callback() {
                 @Override
-                public void onReceive(Context context, Intent intent) {
-                    if (intent.getAction().equals(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION)) {
-                        reactContext.unregisterReceiver(this);
-                        
-                        List<ScanResult> scanResults = wifiManager.getScanResults();
-                        WritableArray wifiList = Arguments.createArray();
-                        
-                        for (ScanResult result : scanResults) {
-                            if (result.SSID != null && !result.SSID.isEmpty()) {
-                                WritableMap wifiObject = Arguments.createMap();
-                                wifiObject.putString("SSID", result.SSID);
-                                wifiObject.putString("BSSID", result.BSSID);
-                                wifiObject.putInt("level", result.level);
-                                wifiObject.putInt("frequency", result.frequency);
-                                wifiObject.putString("capabilities", result.capabilities);
-                                
-                                // Determine if network is secured
-                                boolean isSecured = result.capabilities.toUpperCase().contains("WEP") ||
-                                                  result.capabilities.toUpperCase().contains("WPA") ||
-                                                  result.capabilities.toUpperCase().contains("PSK");
-                                wifiObject.putBoolean("isSecured", isSecured);
-                                
-                                wifiList.pushMap(wifiObject);
-                            }
-                        }
-                        
-                        promise.resolve(wifiList);
-                    }
+                public void onScanResults(List<ScanResult> results) {
+                    promise.resolve(compact ? toPackedMap(results) : toWritableArray(results));
                 }
-            };
 
-            // Register the receiver
-            IntentFilter intentFilter = new IntentFilter();
-            intentFilter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
-            reactContext.registerReceiver(wifiScanReceiver, intentFilter);
+                @Override
+                public void onScanFailed(String code, String message) {
+                    promise.reject(code, message);
+                }
+            });
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
 
-            // Start the scan
-            boolean success = wifiManager.startScan();
-            if (!success) {
-                reactContext.unregisterReceiver(wifiScanReceiver);
-                promise.reject("SCAN_FAILURE", "Failed to start WiFi scan");
+    @ReactMethod
+    public void startScanStream(ReadableMap options) {
+        long minEmitIntervalMs = WifiScanStream.DEFAULT_MIN_EMIT_INTERVAL_MS;
+        long scanIntervalMs = WifiScanStream.DEFAULT_SCAN_INTERVAL_MS;
+        boolean delta = false;
+        int rssiThreshold = ScanDeltaTracker.DEFAULT_RSSI_THRESHOLD;
+        if (options != null) {
+            if (options.hasKey("delta") && !options.isNull("delta")) {
+                delta = options.getBoolean("delta");
+            }
+            if (options.hasKey("rssiThreshold") && !options.isNull("rssiThreshold")) {
+                rssiThreshold = options.getInt("rssiThreshold");
+            }
+            if (options.hasKey("minEmitIntervalMs") && !options.isNull("minEmitIntervalMs")) {
+                minEmitIntervalMs = (long) options.getDouble("minEmitIntervalMs");
             }
+            if (options.hasKey("scanIntervalMs") && !options.isNull("scanIntervalMs")) {
+                scanIntervalMs = (long) options.getDouble("scanIntervalMs");
+            }
+        }
+
+        // A (re)started delta stream begins from an empty table, so its first
+        // event lists every network as added
+        deltaTracker.reset();
+        deltaTracker.setRssiThreshold(rssiThreshold);
+        streamDeltas = delta;
+        scanStream.start(minEmitIntervalMs, scanIntervalMs);
+    }
+
+    // Full table behind the delta stream, for JS to resync after a seq gap
+    @ReactMethod
+    public void getScanSnapshot(Promise promise) {
+        try {
+            ScanDeltaTracker.Snapshot snapshot = deltaTracker.snapshot();
+            WritableMap result = Arguments.createMap();
+            result.putDouble("seq", snapshot.seq);
+            result.putArray("networks", toWritableArray(snapshot.networks));
+            promise.resolve(result);
         } catch (Exception e) {
             promise.reject("ERROR", e.getMessage());
         }
     }
 
+    @ReactMethod
+    public void stopScanStream() {
+        scanStream.stop();
+    }
+
+    // Required by NativeEventEmitter on the JS side
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    private void sendEvent(String eventName, Object params) {
+        if (reactContext.hasActiveReactInstance()) {
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+        }
+    }
+
+    @ReactMethod
+    public void setScanCacheTtl(double ttlMs) {
+        scanCoordinator.setCacheTtl((long) ttlMs);
+    }
+
+    // Convert scan results to the array shape the JS side expects
+    static WritableArray toWritableArray(List<ScanResult> scanResults) {
+        WritableArray wifiList = Arguments.createArray();
+
+        for (ScanResult result : scanResults) {
+            if (result.SSID != null && !result.SSID.isEmpty()) {
+                wifiList.pushMap(toWritableMap(result));
+            }
+        }
+
+        return wifiList;
+    }
+
+    static WritableMap toWritableMap(ScanResult result) {
+        WritableMap wifiObject = Arguments.createMap();
+        wifiObject.putString("SSID", result.SSID);
+        wifiObject.putString("BSSID", result.BSSID);
+        wifiObject.putInt("level", result.level);
+        wifiObject.putInt("frequency", result.frequency);
+        wifiObject.putString("capabilities", result.capabilities);
+
+        // Determine if network is secured
+        wifiObject.putBoolean("isSecured", ScanSecurity.isSecured(ScanSecurity.flagsOf(result.capabilities)));
+
+        return wifiObject;
+    }
+
+    // Compact form: one array per field instead of one map per AP, with the
+    // security bitmask (see ScanSecurity) in place of the capabilities string
+    static WritableMap toPackedMap(List<ScanResult> scanResults) {
+        ScanColumns columns = new ScanColumns(scanResults.size());
+        for (ScanResult result : scanResults) {
+            columns.add(result.SSID, result.BSSID, result.level, result.frequency, result.capabilities);
+        }
+        columns.trim();
+
+        WritableMap packed = Arguments.createMap();
+        packed.putInt("count", columns.count);
+        packed.putArray("SSID", Arguments.fromArray(columns.ssids));
+        packed.putArray("BSSID", Arguments.fromArray(columns.bssids));
+        packed.putArray("level", Arguments.fromArray(columns.levels));
+        packed.putArray("frequency", Arguments.fromArray(columns.frequencies));
+        packed.putArray("security", Arguments.fromArray(columns.security));
+        return packed;
+    }
+
+    private static WritableMap toWritableMap(ScanDeltaTracker.Delta delta) {
+        WritableArray added = Arguments.createArray();
+        for (ScanResult result : delta.added) {
+            added.pushMap(toWritableMap(result));
+        }
+        WritableArray changed = Arguments.createArray();
+        for (ScanResult result : delta.changed) {
+            changed.pushMap(toWritableMap(result));
+        }
+        WritableArray removed = Arguments.createArray();
+        for (String bssid : delta.removed) {
+            removed.pushString(bssid);
+        }
+
+        WritableMap map = Arguments.createMap();
+        map.putDouble("seq", delta.seq);
+        map.putArray("added", added);
+        map.putArray("changed", changed);
+        map.putArray("removed", removed);
+        return map;
+    }
+
+    @Override
+    public void invalidate() {
+        scanStream.stop();
+        linkMonitor.stop();
+        ssidResolver.release();
+        scanCoordinator.release();
+        super.invalidate();
+    }
+
     @ReactMethod
     public void isWifiEnabled(Promise promise) {
         try {
@@ -103,141 +294,170 @@ public class WifiScannerModule extends ReactContextBaseJavaModule {
         }
     }
 
+    // Channel congestion per band from the latest scan. Cheap enough to call
+    // on every scan update; by default it accepts results up to 30 s old.
     @ReactMethod
-    public void getCurrentWifiSSID(Promise promise) {
-        try {
-            if (!wifiManager.isWifiEnabled()) {
-                promise.reject("WIFI_DISABLED", "Wi-Fi is not enabled");
-                return;
+    public void analyzeChannels(ReadableMap options, final Promise promise) {
+        long maxAgeMs = 30 * 1000;
+        if (options != null && options.hasKey("maxAgeMs") && !options.isNull("maxAgeMs")) {
+            maxAgeMs = (long) options.getDouble("maxAgeMs");
+        }
+
+        scanCoordinator.requestScan(maxAgeMs, new WifiScanCoordinator.Callback() {
+            @Override
+            public void onScanResults(List<ScanResult> results) {
+                int count = results.size();
+                int[] frequency = new int[count];
+                int[] level = new int[count];
+                int[] channelWidth = new int[count];
+                int[] centerFreq0 = new int[count];
+                for (int i = 0; i < count; i++) {
+                    ScanResult result = results.get(i);
+                    frequency[i] = result.frequency;
+                    level[i] = result.level;
+                    channelWidth[i] = result.channelWidth;
+                    centerFreq0[i] = result.centerFreq0;
+                }
+
+                ChannelAnalyzer.BandReport[] reports =
+                    ChannelAnalyzer.analyze(frequency, level, channelWidth, centerFreq0, count);
+
+                WritableMap bands = Arguments.createMap();
+                for (ChannelAnalyzer.BandReport report : reports) {
+                    WritableArray channels = Arguments.createArray();
+                    WritableArray interference = Arguments.createArray();
+                    for (int i = 0; i < report.channels.length; i++) {
+                        channels.pushInt(report.channels[i]);
+                        interference.pushDouble(report.interferenceDbm[i]);
+                    }
+                    WritableMap band = Arguments.createMap();
+                    band.putInt("apCount", report.apCount);
+                    band.putInt("recommendedChannel", report.recommendedChannel);
+                    band.putArray("channels", channels);
+                    band.putArray("interferenceDbm", interference);
+                    bands.putMap(ChannelAnalyzer.BAND_NAMES[report.band], band);
+                }
+                promise.resolve(bands);
             }
 
-            String ssid = null;
-            
-            // Method 1: Try standard API first
-            ssid = getSSIDFromWifiInfo();
-            System.out.println("Method 1 SSID: " + ssid);
-            
-            // Method 2: Try from scan results if Method 1 failed
-            if (isNullOrEmpty(ssid)) {
-                ssid = getSSIDFromScanResults();
-                System.out.println("Method 2 SSID: " + ssid);
-            }
-            
-            // Method 3: Try Android hidden API with reflection as last resort
-            if (isNullOrEmpty(ssid)) {
-                ssid = getSSIDUsingReflection();
-                System.out.println("Method 3 SSID: " + ssid);
-            }
-            
-            // If we have a valid SSID, return it
-            if (!isNullOrEmpty(ssid)) {
-                WritableMap result = Arguments.createMap();
-                result.putString("SSID", ssid);
-                result.putString("BSSID", wifiManager.getConnectionInfo().getBSSID());
-                result.putInt("rssi", wifiManager.getConnectionInfo().getRssi());
-                result.putBoolean("available", true);
-                promise.resolve(result);
-            } else {
-                // No valid SSID found
-                WritableMap result = Arguments.createMap();
-                result.putString("SSID", "");
-                result.putBoolean("available", false);
-                result.putString("error", "Could not retrieve SSID with any method");
-                promise.resolve(result);
+            @Override
+            public void onScanFailed(String code, String message) {
+                promise.reject(code, message);
             }
-        } catch (Exception e) {
-            System.out.println("Error in getCurrentWifiSSID: " + e.getMessage());
-            WritableMap errorResult = Arguments.createMap();
-            errorResult.putString("SSID", "");
-            errorResult.putBoolean("available", false);
-            errorResult.putString("error", e.getMessage());
-            promise.resolve(errorResult);
-        }
+        });
     }
-    
-    // Helper method to get SSID from WifiInfo
-    private String getSSIDFromWifiInfo() {
-        String ssid = wifiManager.getConnectionInfo().getSSID();
-        
-        // SSID is usually wrapped in quotes, remove them if present
-        if (ssid != null && ssid.startsWith("\"") && ssid.endsWith("\"")) {
-            ssid = ssid.substring(1, ssid.length() - 1);
-        }
-        
-        // Check if it's a valid SSID
-        if (ssid == null || ssid.equals("<unknown ssid>") || ssid.isEmpty()) {
-            return null;
+
+    private void recordSignals(List<ScanResult> results) {
+        for (ScanResult result : results) {
+            if (result.BSSID != null) {
+                // ScanResult.timestamp is microseconds since boot
+                signalHistory.record(result.BSSID, result.level, result.timestamp / 1000);
+            }
         }
-        
-        return ssid;
     }
-    
-    // Helper method to get SSID from scan results by matching BSSID
-    private String getSSIDFromScanResults() {
+
+    // RSSI trend for one AP; resolves null if it has not been seen recently
+    @ReactMethod
+    public void getSignalHistory(String bssid, Promise promise) {
         try {
-            // Start a scan to get fresh results
-            wifiManager.startScan();
-            Thread.sleep(500); // Give it a moment to scan
-            
-            List<ScanResult> scanResults = wifiManager.getScanResults();
-            String bssid = wifiManager.getConnectionInfo().getBSSID();
-            
-            if (bssid == null) {
-                return null;
-            }
-            
-            System.out.println("Looking for BSSID: " + bssid + " in " + scanResults.size() + " scan results");
-            
-            for (ScanResult result : scanResults) {
-                System.out.println("Scan result: SSID=" + result.SSID + " BSSID=" + result.BSSID);
-                if (result.BSSID != null && result.BSSID.equals(bssid)) {
-                    return result.SSID;
+            WritableMap result = null;
+            synchronized (signalHistory) {
+                SignalHistory.Series series = signalHistory.get(bssid);
+                if (series != null && series.size() > 0) {
+                    // Sample times are elapsedRealtime(); JS wants epoch ms
+                    long bootTime = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+                    WritableArray levels = Arguments.createArray();
+                    WritableArray timestamps = Arguments.createArray();
+                    for (int i = 0; i < series.size(); i++) {
+                        levels.pushInt(series.rssiAt(i));
+                        timestamps.pushDouble(bootTime + series.timestampAt(i));
+                    }
+
+                    result = Arguments.createMap();
+                    result.putString("BSSID", bssid);
+                    result.putInt("count", series.size());
+                    result.putDouble("ewma", series.ewma());
+                    result.putDouble("mean", series.mean());
+                    result.putDouble("variance", series.variance());
+                    result.putInt("min", series.min());
+                    result.putInt("max", series.max());
+                    result.putDouble("lastSeen", bootTime + series.lastSeen());
+                    result.putArray("level", levels);
+                    result.putArray("timestamp", timestamps);
                 }
             }
+            promise.resolve(result);
         } catch (Exception e) {
-            System.out.println("Error getting SSID from scan results: " + e.getMessage());
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    // In-memory snapshot kept current by the link monitor; no binder calls
+    @ReactMethod
+    public void getCurrentLink(Promise promise) {
+        promise.resolve(toWritableMap(linkMonitor.getSnapshot()));
+    }
+
+    private static WritableMap toWritableMap(WifiLinkMonitor.LinkSnapshot snapshot) {
+        WritableMap map = Arguments.createMap();
+        map.putBoolean("isConnected", snapshot.connected);
+        if (snapshot.connected) {
+            map.putString("SSID", snapshot.ssid != null ? snapshot.ssid : "");
+            map.putString("BSSID", snapshot.bssid);
+            map.putInt("rssi", snapshot.rssi);
+            map.putInt("linkSpeed", snapshot.linkSpeedMbps);
+            map.putInt("frequency", snapshot.frequency);
+            map.putString("ipAddress", snapshot.ipAddress);
         }
-        
-        return null;
+        return map;
     }
-    
-    // Helper method to get SSID using reflection (last resort)
-    private String getSSIDUsingReflection() {
+
+    @ReactMethod
+    public void getCurrentWifiSSID(final Promise promise) {
         try {
-            // This is a hack that uses reflection to access hidden methods
-            // It might not work on all Android versions
-            Class<?> wifiManagerClass = WifiManager.class;
-            java.lang.reflect.Method getConnectionInfo = wifiManagerClass.getDeclaredMethod("getConnectionInfo");
-            Object wifiInfo = getConnectionInfo.invoke(wifiManager);
-            
-            if (wifiInfo != null) {
-                Class<?> wifiInfoClass = wifiInfo.getClass();
-                java.lang.reflect.Method getSSID = wifiInfoClass.getDeclaredMethod("getSSID");
-                Object ssidObj = getSSID.invoke(wifiInfo);
-                
-                if (ssidObj != null) {
-                    String ssid = ssidObj.toString();
-                    
-                    // SSID is usually wrapped in quotes, remove them if present
-                    if (ssid.startsWith("\"") && ssid.endsWith("\"")) {
-                        ssid = ssid.substring(1, ssid.length() - 1);
-                    }
-                    
-                    // Check if it's a valid SSID
-                    if (!ssid.equals("<unknown ssid>") && !ssid.isEmpty()) {
-                        return ssid;
+            if (!wifiManager.isWifiEnabled()) {
+                promise.reject("WIFI_DISABLED", "Wi-Fi is not enabled");
+                return;
+            }
+
+            // The link monitor usually already knows the SSID
+            WifiLinkMonitor.LinkSnapshot link = linkMonitor.getSnapshot();
+            if (link.connected && link.ssid != null) {
+                WritableMap result = Arguments.createMap();
+                result.putString("SSID", link.ssid);
+                result.putString("BSSID", link.bssid);
+                result.putInt("rssi", link.rssi);
+                result.putBoolean("available", true);
+                promise.resolve(result);
+                return;
+            }
+
+            // Resolution runs on the resolver's own thread; never block here
+            ssidResolver.resolve(new SsidResolver.Callback() {
+                @Override
+                public void onResolved(SsidResolver.Result resolved) {
+                    WritableMap result = Arguments.createMap();
+                    if (resolved != null) {
+                        result.putString("SSID", resolved.ssid);
+                        result.putString("BSSID", resolved.bssid);
+                        result.putInt("rssi", resolved.rssi);
+                        result.putBoolean("available", true);
+                    } else {
+                        // No valid SSID found
+                        result.putString("SSID", "");
+                        result.putBoolean("available", false);
+                        result.putString("error", "Could not retrieve SSID with any method");
                     }
+                    promise.resolve(result);
                 }
-            }
+            });
         } catch (Exception e) {
-            System.out.println("Error getting SSID using reflection: " + e.getMessage());
+            Log.w(TAG, "Error in getCurrentWifiSSID: " + e.getMessage());
+            WritableMap errorResult = Arguments.createMap();
+            errorResult.putString("SSID", "");
+            errorResult.putBoolean("available", false);
+            errorResult.putString("error", e.getMessage());
+            promise.resolve(errorResult);
         }
-        
-        return null;
-    }
-    
-    // Helper to check if string is null or empty
-    private boolean isNullOrEmpty(String str) {
-        return str == null || str.isEmpty() || str.equals("<unknown ssid>");
     }
-} 
\ No newline at end of file
+}
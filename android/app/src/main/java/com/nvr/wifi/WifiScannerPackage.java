@@ -6,23 +6,44 @@ import com.facebook.react.ReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.uimanager.ViewManager;
+import com.nvr.camera.CameraDiscoveryModule;
+import com.nvr.camera.CameraHealthModule;
+import com.nvr.camera.CameraPresenceModule;
+import com.nvr.camera.CameraStreamModule;
+import com.nvr.camera.CameraStreamRegistry;
+import com.nvr.camera.CameraStreamViewManager;
+import com.nvr.recording.RecordingModule;
+import com.nvr.recording.RecordingStore;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class WifiScannerPackage implements ReactPackage {
+    // Shared by the native modules and view managers of this package
+    private final CameraStreamRegistry streamRegistry = new CameraStreamRegistry();
+    private final RecordingStore recordingStore = new RecordingStore();
+
     @NonNull
     @Override
     public List<NativeModule> createNativeModules(@NonNull ReactApplicationContext reactContext) {
+        streamRegistry.attach(reactContext);
+        recordingStore.attach(reactContext);
         List<NativeModule> modules = new ArrayList<>();
-        modules.add(new WifiScannerModule(reactContext));
+        WifiScannerModule wifiScanner = new WifiScannerModule(reactContext);
+        modules.add(wifiScanner);
+        modules.add(new CameraDiscoveryModule(reactContext, wifiScanner.getLinkMonitor()));
+        modules.add(new CameraPresenceModule(reactContext, wifiScanner.getLinkMonitor()));
+        modules.add(new CameraStreamModule(reactContext, streamRegistry));
+        modules.add(new CameraHealthModule(reactContext, streamRegistry));
+        modules.add(new RecordingModule(reactContext, streamRegistry, recordingStore));
         return modules;
     }
 
     @NonNull
     @Override
     public List<ViewManager> createViewManagers(@NonNull ReactApplicationContext reactContext) {
-        return Collections.emptyList();
+        List<ViewManager> managers = new ArrayList<>();
+        managers.add(new CameraStreamViewManager(streamRegistry));
+        return managers;
     }
 } 
\ No newline at end of file
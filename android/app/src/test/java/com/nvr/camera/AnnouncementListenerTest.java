@@ -0,0 +1,184 @@
+package com.nvr.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Sends real mDNS and SSDP datagrams to a running listener over the
+// loopback interface, and applies what it hears to a PresenceCache the way
+// CameraPresenceModule does. Ports are picked free so the test does not need
+// 5353/1900.
+public class AnnouncementListenerTest {
+    private final BlockingQueue<Announcement> heard = new LinkedBlockingQueue<>();
+    private final PresenceCache cache = new PresenceCache();
+    private NetworkInterface loopback;
+    private int mdnsPort;
+    private int ssdpPort;
+    private AnnouncementListener listener;
+    private MulticastSocket sender;
+
+    @Before
+    public void startListener() throws IOException {
+        loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        mdnsPort = freePort();
+        ssdpPort = freePort();
+        listener = new AnnouncementListener(AnnouncementListener.MDNS_GROUP, mdnsPort,
+            AnnouncementListener.SSDP_GROUP, ssdpPort, loopback, new AnnouncementListener.Callback() {
+                @Override
+                public void onAnnouncement(Announcement announcement) {
+                    heard.add(announcement);
+                }
+            });
+        try {
+            listener.start();
+        } catch (IOException e) {
+            // No multicast on this host's loopback
+            assumeNoException(e);
+        }
+        sender = new MulticastSocket();
+        sender.setNetworkInterface(loopback);
+    }
+
+    @After
+    public void stopListener() {
+        listener.stop();
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    @Test
+    public void mdnsAnnouncementThenGoodbye() throws Exception {
+        long now = System.currentTimeMillis();
+        sendMdns("esp32-cam", 127, 0, 0, 1, 120);
+        apply(next(), now);
+
+        List<PresenceCache.Entry> cameras = cache.snapshot(now);
+        assertEquals(1, cameras.size());
+        assertEquals("127.0.0.1", cameras.get(0).ip);
+        assertEquals("esp32-cam", cameras.get(0).name);
+        assertEquals(Announcement.SOURCE_MDNS, cameras.get(0).source);
+
+        sendMdns("esp32-cam", 127, 0, 0, 1, 0);
+        apply(next(), now);
+        assertTrue(cache.snapshot(now).isEmpty());
+    }
+
+    @Test
+    public void ssdpAliveThenByebye() throws Exception {
+        long now = System.currentTimeMillis();
+        sendSsdp("NOTIFY * HTTP/1.1\r\n"
+            + "CACHE-CONTROL: max-age=60\r\n"
+            + "LOCATION: http://127.0.0.1:8080/description.xml\r\n"
+            + "NTS: ssdp:alive\r\n"
+            + "SERVER: ESP32 UPnP/1.0 Camera/1.0\r\n\r\n");
+        apply(next(), now);
+
+        List<PresenceCache.Entry> cameras = cache.snapshot(now);
+        assertEquals(1, cameras.size());
+        assertEquals(8080, cameras.get(0).port);
+        assertEquals(Announcement.SOURCE_SSDP, cameras.get(0).source);
+
+        // No LOCATION: the sender's address identifies the camera
+        sendSsdp("NOTIFY * HTTP/1.1\r\n"
+            + "NTS: ssdp:byebye\r\n"
+            + "USN: uuid:1234\r\n\r\n");
+        apply(next(), now);
+        assertTrue(cache.snapshot(now).isEmpty());
+    }
+
+    @Test
+    public void entriesExpireAfterTheirTtl() throws Exception {
+        long now = System.currentTimeMillis();
+        sendMdns("cam-a", 127, 0, 0, 1, 2);
+        apply(next(), now);
+
+        assertEquals(1, cache.snapshot(now + 1999).size());
+        assertTrue(cache.expire(now + 1999).isEmpty());
+        List<PresenceCache.Entry> expired = cache.expire(now + 2000);
+        assertEquals(1, expired.size());
+        assertEquals("cam-a", expired.get(0).name);
+        assertTrue(cache.snapshot(now + 2000).isEmpty());
+    }
+
+    @Test
+    public void reannouncementRefreshesAndKeepsDetails() throws Exception {
+        long now = System.currentTimeMillis();
+        sendSsdp("NOTIFY * HTTP/1.1\r\n"
+            + "CACHE-CONTROL: max-age=10\r\n"
+            + "LOCATION: http://127.0.0.1:81/desc.xml\r\n"
+            + "NTS: ssdp:alive\r\n\r\n");
+        assertNotNull("first sight is new", apply(next(), now));
+
+        // The A record carries no port; the one SSDP gave is kept
+        sendMdns("esp32-cam", 127, 0, 0, 1, 120);
+        assertNull("already known", apply(next(), now + 5000));
+
+        List<PresenceCache.Entry> cameras = cache.snapshot(now + 60000);
+        assertEquals(1, cameras.size());
+        assertEquals("esp32-cam", cameras.get(0).name);
+        assertEquals(81, cameras.get(0).port);
+    }
+
+    @Test
+    public void ownQueriesAreNotAnnouncements() throws Exception {
+        // start() sent an mDNS query and an M-SEARCH, which loop back to us
+        sendMdns("esp32-cam", 127, 0, 0, 1, 120);
+        assertEquals("esp32-cam", next().name);
+        assertNull(heard.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    // As CameraPresenceModule.onAnnounced, without the name filter
+    private PresenceCache.Entry apply(Announcement announcement, long now) {
+        if (announcement.ttlMs <= 0) {
+            cache.remove(announcement.ip);
+            return null;
+        }
+        return cache.update(announcement, now);
+    }
+
+    private Announcement next() throws InterruptedException {
+        Announcement announcement = heard.poll(5, TimeUnit.SECONDS);
+        assertNotNull("no announcement heard", announcement);
+        return announcement;
+    }
+
+    private void sendMdns(String host, int a, int b, int c, int d, long ttlSeconds) throws IOException {
+        DnsMessage dns = new DnsMessage(0x8400, 0, 1);
+        dns.name(host, "local").u16(1).u16(0x8001).u32(ttlSeconds).u16(4).bytes(a, b, c, d);
+        send(dns.data(), AnnouncementListener.MDNS_GROUP, mdnsPort);
+    }
+
+    private void sendSsdp(String text) throws IOException {
+        send(text.getBytes(StandardCharsets.US_ASCII), AnnouncementListener.SSDP_GROUP, ssdpPort);
+    }
+
+    private void send(byte[] data, String group, int port) throws IOException {
+        sender.send(new DatagramPacket(data, data.length, InetAddress.getByName(group), port));
+    }
+
+    private static int freePort() throws IOException {
+        DatagramSocket socket = new DatagramSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+}
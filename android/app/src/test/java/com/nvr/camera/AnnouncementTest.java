@@ -0,0 +1,166 @@
+package com.nvr.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class AnnouncementTest {
+    @Test
+    public void mdnsResponseWithAddressAndService() {
+        DnsMessage dns = new DnsMessage(0x8400, 0, 2);
+        // A esp32-cam.local -> 192.168.1.50, TTL 120 s
+        int hostName = dns.size();
+        dns.name("esp32-cam", "local").u16(1).u16(0x8001).u32(120).u16(4).bytes(192, 168, 1, 50);
+        // SRV for the camera service, target compressed to the A record's name
+        dns.name("cam", "_ws", "_tcp", "local").u16(33).u16(0x8001).u32(120).u16(8)
+            .u16(0).u16(0).u16(81).pointer(hostName);
+
+        List<Announcement> announcements = Announcement.parseMdns(dns.data(), dns.size());
+
+        assertEquals(1, announcements.size());
+        Announcement announcement = announcements.get(0);
+        assertEquals("192.168.1.50", announcement.ip);
+        assertEquals("esp32-cam", announcement.name);
+        assertEquals(81, announcement.port);
+        assertEquals(Announcement.SOURCE_MDNS, announcement.source);
+        assertEquals(120000, announcement.ttlMs);
+    }
+
+    @Test
+    public void mdnsGoodbyeHasZeroTtl() {
+        DnsMessage dns = new DnsMessage(0x8400, 0, 1);
+        dns.name("ESP32-CAM", "local").u16(1).u16(0x8001).u32(0).u16(4).bytes(10, 0, 0, 7);
+
+        List<Announcement> announcements = Announcement.parseMdns(dns.data(), dns.size());
+
+        assertEquals(1, announcements.size());
+        assertEquals("esp32-cam", announcements.get(0).name);
+        assertEquals(0, announcements.get(0).port);
+        assertEquals(0, announcements.get(0).ttlMs);
+    }
+
+    @Test
+    public void mdnsSkipsQuestions() {
+        DnsMessage dns = new DnsMessage(0x8400, 1, 1);
+        dns.name("esp32-cam", "local").u16(1).u16(1);
+        dns.name("esp32-cam", "local").u16(1).u16(1).u32(60).u16(4).bytes(10, 0, 0, 8);
+
+        List<Announcement> announcements = Announcement.parseMdns(dns.data(), dns.size());
+
+        assertEquals(1, announcements.size());
+        assertEquals("10.0.0.8", announcements.get(0).ip);
+    }
+
+    @Test
+    public void mdnsQueryYieldsNothing() {
+        DnsMessage dns = new DnsMessage(0x0000, 1, 0);
+        dns.name("esp32-cam", "local").u16(1).u16(1);
+
+        assertTrue(Announcement.parseMdns(dns.data(), dns.size()).isEmpty());
+    }
+
+    @Test
+    public void mdnsTruncatedPacketKeepsCompleteRecords() {
+        DnsMessage dns = new DnsMessage(0x8400, 0, 2);
+        dns.name("first", "local").u16(1).u16(1).u32(60).u16(4).bytes(10, 0, 0, 1);
+        int complete = dns.size();
+        dns.name("second", "local").u16(1).u16(1).u32(60).u16(4).bytes(10, 0, 0, 2);
+
+        for (int length = complete; length < dns.size(); length++) {
+            List<Announcement> announcements = Announcement.parseMdns(dns.data(), length);
+            assertEquals("length " + length, 1, announcements.size());
+            assertEquals("10.0.0.1", announcements.get(0).ip);
+        }
+    }
+
+    @Test
+    public void mdnsPointerLoopIsRejected() {
+        DnsMessage dns = new DnsMessage(0x8400, 0, 1);
+        int loop = dns.size();
+        dns.pointer(loop).u16(1).u16(1).u32(60).u16(4).bytes(10, 0, 0, 1);
+
+        assertTrue(Announcement.parseMdns(dns.data(), dns.size()).isEmpty());
+    }
+
+    @Test
+    public void mdnsGarbageNeverThrows() {
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 2000; i++) {
+            byte[] data = new byte[random.nextInt(200)];
+            random.nextBytes(data);
+            if (data.length > 2) {
+                data[2] |= 0x80;
+            }
+            Announcement.parseMdns(data, data.length);
+        }
+    }
+
+    @Test
+    public void ssdpAliveUsesLocationAndMaxAge() {
+        Announcement announcement = ssdp("NOTIFY * HTTP/1.1\r\n"
+            + "HOST: 239.255.255.250:1900\r\n"
+            + "CACHE-CONTROL: max-age=300\r\n"
+            + "LOCATION: http://192.168.1.60:8080/description.xml\r\n"
+            + "NT: upnp:rootdevice\r\n"
+            + "NTS: ssdp:alive\r\n"
+            + "SERVER: ESP32 UPnP/1.0 Camera/1.0\r\n"
+            + "USN: uuid:1234::upnp:rootdevice\r\n\r\n", "192.168.1.99");
+
+        assertEquals("192.168.1.60", announcement.ip);
+        assertEquals(8080, announcement.port);
+        assertEquals("ESP32 UPnP/1.0 Camera/1.0", announcement.name);
+        assertEquals(Announcement.SOURCE_SSDP, announcement.source);
+        assertEquals(300000, announcement.ttlMs);
+    }
+
+    @Test
+    public void ssdpByebyeHasZeroTtl() {
+        Announcement announcement = ssdp("NOTIFY * HTTP/1.1\r\n"
+            + "NTS: ssdp:byebye\r\n"
+            + "USN: uuid:1234\r\n\r\n", "192.168.1.61");
+
+        assertEquals("192.168.1.61", announcement.ip);
+        assertEquals("uuid:1234", announcement.name);
+        assertEquals(0, announcement.ttlMs);
+    }
+
+    @Test
+    public void ssdpSearchResponseWithoutPortDefaultsTo80() {
+        Announcement announcement = ssdp("HTTP/1.1 200 OK\r\n"
+            + "cache-control: public, max-age=60\r\n"
+            + "location: http://camera.local/desc.xml\r\n\r\n", "192.168.1.62");
+
+        assertEquals("camera.local", announcement.ip);
+        assertEquals(80, announcement.port);
+        assertEquals(60000, announcement.ttlMs);
+    }
+
+    @Test
+    public void ssdpWithoutLocationUsesSender() {
+        Announcement announcement = ssdp("NOTIFY * HTTP/1.1\r\n"
+            + "CACHE-CONTROL: max-age=soon\r\n\r\n", "192.168.1.63");
+
+        assertEquals("192.168.1.63", announcement.ip);
+        assertEquals(0, announcement.port);
+        assertEquals(1800000, announcement.ttlMs);
+    }
+
+    @Test
+    public void ssdpSearchRequestIsIgnored() {
+        assertNull(ssdp("M-SEARCH * HTTP/1.1\r\n"
+            + "MAN: \"ssdp:discover\"\r\n\r\n", "192.168.1.64"));
+    }
+
+    private static Announcement ssdp(String text, String sender) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        // Parsers get the receive buffer, which is larger than the datagram
+        byte[] buffer = Arrays.copyOf(data, data.length + 64);
+        return Announcement.parseSsdp(buffer, data.length, sender);
+    }
+}
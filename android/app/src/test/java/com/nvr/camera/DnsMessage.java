@@ -0,0 +1,52 @@
+package com.nvr.camera;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Minimal DNS message builder for crafted mDNS packets
+final class DnsMessage {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    DnsMessage(int flags, int questions, int answers) {
+        u16(0).u16(flags).u16(questions).u16(answers).u16(0).u16(0);
+    }
+
+    DnsMessage name(String... labels) {
+        for (String label : labels) {
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        out.write(0);
+        return this;
+    }
+
+    DnsMessage pointer(int offset) {
+        return u16(0xc000 | offset);
+    }
+
+    DnsMessage u16(int value) {
+        out.write(value >> 8);
+        out.write(value);
+        return this;
+    }
+
+    DnsMessage u32(long value) {
+        return u16((int) (value >> 16) & 0xffff).u16((int) value & 0xffff);
+    }
+
+    DnsMessage bytes(int... values) {
+        for (int value : values) {
+            out.write(value);
+        }
+        return this;
+    }
+
+    int size() {
+        return out.size();
+    }
+
+    byte[] data() {
+        return out.toByteArray();
+    }
+}
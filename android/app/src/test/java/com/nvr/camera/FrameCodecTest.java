@@ -0,0 +1,128 @@
+package com.nvr.camera;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class FrameCodecTest {
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, 5, (byte) 0xFF, (byte) 0xD9};
+
+    @Test
+    public void roundTrip() {
+        byte[] message = FrameCodec.encode(42, 1700000000123L, JPEG, 0, JPEG.length);
+        assertEquals(FrameCodec.HEADER_SIZE + JPEG.length, message.length);
+
+        FrameCodec.Header header = new FrameCodec.Header();
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        assertTrue(FrameCodec.decodeHeader(buffer, header));
+
+        assertEquals(FrameCodec.TYPE_JPEG, header.type);
+        assertEquals(FrameCodec.VERSION, header.version);
+        assertEquals(42, header.seq);
+        assertEquals(1700000000123L, header.timestampMs);
+        assertEquals(JPEG.length, header.length);
+        // The position is left alone
+        assertEquals(0, buffer.position());
+        assertArrayEquals(JPEG, Arrays.copyOfRange(message, FrameCodec.HEADER_SIZE, message.length));
+    }
+
+    @Test
+    public void encodesASliceOfThePayload() {
+        byte[] message = FrameCodec.encode(1, 2, JPEG, 2, 3);
+        FrameCodec.Header header = new FrameCodec.Header();
+
+        assertTrue(FrameCodec.decodeHeader(ByteBuffer.wrap(message), header));
+        assertEquals(3, header.length);
+        assertArrayEquals(new byte[]{1, 2, 3}, Arrays.copyOfRange(message, FrameCodec.HEADER_SIZE, message.length));
+    }
+
+    @Test
+    public void sequenceIsUnsigned32Bit() {
+        FrameCodec.Header header = new FrameCodec.Header();
+
+        assertTrue(FrameCodec.decodeHeader(ByteBuffer.wrap(FrameCodec.encode(0xFFFFFFFFL, 0, JPEG, 0, JPEG.length)), header));
+        assertEquals(0xFFFFFFFFL, header.seq);
+
+        assertTrue(FrameCodec.decodeHeader(ByteBuffer.wrap(FrameCodec.encode(1L << 32, 0, JPEG, 0, JPEG.length)), header));
+        assertEquals(0, header.seq);
+    }
+
+    @Test
+    public void decodesAtTheBufferPosition() {
+        byte[] message = FrameCodec.encode(7, 8, JPEG, 0, JPEG.length);
+        ByteBuffer buffer = ByteBuffer.allocate(message.length + 5);
+        buffer.position(5);
+        buffer.put(message);
+        buffer.position(5);
+
+        FrameCodec.Header header = new FrameCodec.Header();
+        assertTrue(FrameCodec.decodeHeader(buffer, header));
+        assertEquals(7, header.seq);
+        assertEquals(8, header.timestampMs);
+        assertEquals(5, buffer.position());
+    }
+
+    @Test
+    public void emptyPayloadIsValid() {
+        FrameCodec.Header header = new FrameCodec.Header();
+        assertTrue(FrameCodec.decodeHeader(ByteBuffer.wrap(FrameCodec.encode(1, 1, JPEG, 0, 0)), header));
+        assertEquals(0, header.length);
+    }
+
+    @Test
+    public void rejectsShortMessages() {
+        byte[] message = FrameCodec.encode(1, 1, JPEG, 0, JPEG.length);
+        FrameCodec.Header header = new FrameCodec.Header();
+        for (int length = 0; length < FrameCodec.HEADER_SIZE; length++) {
+            assertFalse(FrameCodec.decodeHeader(ByteBuffer.wrap(message, 0, length), header));
+        }
+    }
+
+    @Test
+    public void rejectsLengthMismatch() {
+        byte[] message = FrameCodec.encode(1, 1, JPEG, 0, JPEG.length);
+        FrameCodec.Header header = new FrameCodec.Header();
+
+        assertFalse(FrameCodec.decodeHeader(ByteBuffer.wrap(message, 0, message.length - 1), header));
+        assertFalse(FrameCodec.decodeHeader(ByteBuffer.wrap(Arrays.copyOf(message, message.length + 1)), header));
+    }
+
+    @Test
+    public void rejectsUnknownTypeAndVersion() {
+        FrameCodec.Header header = new FrameCodec.Header();
+
+        byte[] type = FrameCodec.encode(1, 1, JPEG, 0, JPEG.length);
+        type[0] = 2;
+        assertFalse(FrameCodec.decodeHeader(ByteBuffer.wrap(type), header));
+
+        byte[] version = FrameCodec.encode(1, 1, JPEG, 0, JPEG.length);
+        version[1] = (byte) (FrameCodec.VERSION + 1);
+        assertFalse(FrameCodec.decodeHeader(ByteBuffer.wrap(version), header));
+    }
+
+    @Test
+    public void rejectsOversizedLength() {
+        byte[] message = FrameCodec.encode(1, 1, JPEG, 0, JPEG.length);
+        ByteBuffer.wrap(message).putInt(16, -1);
+        assertFalse(FrameCodec.decodeHeader(ByteBuffer.wrap(message), new FrameCodec.Header()));
+    }
+
+    @Test
+    public void jsonTextIsNotABinaryFrame() {
+        byte[] text = "{\"type\":\"frame\",\"data\":\"/9j/4AAQSkZJRg==\"}".getBytes();
+        assertFalse(FrameCodec.decodeHeader(ByteBuffer.wrap(text), new FrameCodec.Header()));
+    }
+
+    @Test
+    public void negotiateCommandNamesTheVersion() {
+        String command = FrameCodec.negotiateCommand();
+        assertTrue(command.contains("\"setStreamFormat\""));
+        assertTrue(command.contains("\"version\":" + FrameCodec.VERSION));
+    }
+}
@@ -0,0 +1,234 @@
+package com.nvr.camera;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+public class JsonVideoScannerTest {
+    private final Random random = new Random(14);
+    private final JsonVideoScanner.Spans spans = new JsonVideoScanner.Spans();
+
+    @Test
+    public void findsTypeAndDataSpans() {
+        String text = "{\"type\":\"video\",\"data\":\"AAEC\"}";
+
+        assertTrue(JsonVideoScanner.scanVideo(text, spans));
+        assertEquals("video", text.substring(spans.typeStart, spans.typeEnd));
+        assertEquals("AAEC", text.substring(spans.dataStart, spans.dataEnd));
+        assertArrayEquals(new byte[]{0, 1, 2}, decode(text));
+    }
+
+    @Test
+    public void fieldOrderAndOtherValuesDoNotMatter() {
+        String text = " {\n \"data\" : \"AAEC\" , \"seq\": -12.5e3, \"flags\": [1, {\"type\": \"config\"}, \"]\"],"
+            + " \"meta\": {\"data\": \"x\", \"nested\": [[]]}, \"ok\": true, \"none\": null,"
+            + " \"note\": \"say \\\"hi\\\"\", \"type\" : \"video\" }\r\n";
+
+        assertTrue(JsonVideoScanner.scanVideo(text, spans));
+        assertEquals("AAEC", text.substring(spans.dataStart, spans.dataEnd));
+        assertArrayEquals(new byte[]{0, 1, 2}, decode(text));
+    }
+
+    @Test
+    public void otherMessagesAreNotVideo() {
+        assertFalse(JsonVideoScanner.scanVideo("{\"type\":\"config\",\"data\":\"AAEC\"}", spans));
+        assertTrue(spans.hasType());
+        assertFalse(JsonVideoScanner.scanVideo("{\"type\":\"video\"}", spans));
+        assertFalse(spans.hasData());
+        assertFalse(JsonVideoScanner.scanVideo("{\"data\":\"AAEC\"}", spans));
+        assertFalse(spans.hasType());
+        // Non-string values are not spans
+        assertFalse(JsonVideoScanner.scanVideo("{\"type\":\"video\",\"data\":42}", spans));
+        assertFalse(JsonVideoScanner.scanVideo("{\"type\":\"videos\",\"data\":\"AAEC\"}", spans));
+        assertFalse(JsonVideoScanner.scanVideo("{}", spans));
+        assertTrue(JsonVideoScanner.scan(" {} ", spans));
+    }
+
+    @Test
+    public void malformedTextIsRejected() {
+        String[] samples = {"", " ", "[]", "\"video\"", "{\"type\":\"video\",\"data\":\"AAEC\"}x",
+            "{\"type\":\"video\" \"data\":\"AAEC\"}", "{\"type\" \"video\",\"data\":\"AAEC\"}",
+            "{type:\"video\",\"data\":\"AAEC\"}", "{\"type\":\"video\",\"data\":\"AAEC\",}",
+            "{\"type\":\"video\",\"data\":\"AAEC\"}}", "{\"a\":[1,2,\"type\":\"video\"}"};
+        for (String text : samples) {
+            assertFalse(text, JsonVideoScanner.scanVideo(text, spans));
+        }
+    }
+
+    @Test
+    public void everyTruncationIsRejected() {
+        String text = message(jpeg(300), 0, 0);
+        assertTrue(JsonVideoScanner.scanVideo(text, spans));
+        for (int length = 0; length < text.length(); length++) {
+            assertFalse("length " + length, JsonVideoScanner.scanVideo(text.substring(0, length), spans));
+        }
+    }
+
+    @Test
+    public void paddingAndUnpaddedTails() {
+        for (int size = 0; size < 64; size++) {
+            byte[] payload = jpeg(size);
+            String padded = Base64.getEncoder().encodeToString(payload);
+            String unpadded = Base64.getEncoder().withoutPadding().encodeToString(payload);
+            assertArrayEquals("padded " + size, payload, decode(video(padded)));
+            assertArrayEquals("unpadded " + size, payload, decode(video(unpadded)));
+        }
+    }
+
+    @Test
+    public void lineBreaksAndSlashEscapes() {
+        byte[] payload = jpeg(5000);
+        // MIME line breaks, as JSON escapes and as raw whitespace
+        String mime = Base64.getMimeEncoder().encodeToString(payload);
+        assertArrayEquals(payload, decode(video(mime.replace("\r\n", "\\r\\n"))));
+        assertArrayEquals(payload, decode(video(mime.replace("\r\n", "\\n"))));
+        assertArrayEquals(payload, decode(video(mime.replace("\r\n", "\t "))));
+        // '/' written as "\/", the way some encoders do
+        String plain = Base64.getEncoder().encodeToString(payload);
+        assertTrue(plain.contains("/"));
+        assertArrayEquals(payload, decode(video(plain.replace("/", "\\/"))));
+        // URL-safe alphabet
+        assertArrayEquals(payload, decode(video(Base64.getUrlEncoder().encodeToString(payload))));
+    }
+
+    @Test
+    public void unsupportedEscapesAndBadCharactersFail() {
+        // A unicode escape is valid JSON; the client falls back to a full parse
+        String escaped = video("AA\\u0041EC");
+        assertTrue(JsonVideoScanner.scanVideo(escaped, spans));
+        assertEquals(-1, JsonVideoScanner.decodeBase64(escaped, spans, buffer()));
+
+        String[] bad = {"AA*C", "AAE\u00e9", "A", "AAECA", "AA\\"};
+        for (String data : bad) {
+            String text = "{\"type\":\"video\",\"data\":\"" + data + "\"}";
+            if (JsonVideoScanner.scanVideo(text, spans)) {
+                assertEquals(data, -1, JsonVideoScanner.decodeBase64(text, spans, buffer()));
+            }
+        }
+        assertTrue(JsonVideoScanner.scanVideo(video(""), spans));
+        assertEquals(0, JsonVideoScanner.decodeBase64(video(""), spans, buffer()));
+    }
+
+    @Test
+    public void maxDecodedLengthIsAnUpperBound() {
+        for (int i = 0; i < 500; i++) {
+            byte[] payload = jpeg(random.nextInt(3000));
+            String text = message(payload, random.nextInt(3), random.nextInt(4));
+            assertTrue(JsonVideoScanner.scanVideo(text, spans));
+            int max = JsonVideoScanner.maxDecodedLength(spans);
+            assertTrue(max >= payload.length);
+            assertTrue("bound stays tight", max <= payload.length + 3 + (spans.dataEnd - spans.dataStart) / 4);
+
+            ByteBuffer exact = ByteBuffer.allocate(max);
+            assertEquals(payload.length, JsonVideoScanner.decodeBase64(text, spans, exact));
+            if (payload.length > 0) {
+                ByteBuffer small = ByteBuffer.allocate(payload.length - 1);
+                assertEquals(-1, JsonVideoScanner.decodeBase64(text, spans, small));
+            }
+        }
+    }
+
+    @Test
+    public void decodeLeavesPositionAlone() {
+        String text = video("AAECAw==");
+        assertTrue(JsonVideoScanner.scanVideo(text, spans));
+        ByteBuffer dst = ByteBuffer.allocate(JsonVideoScanner.maxDecodedLength(spans));
+        dst.position(2);
+        assertEquals(4, JsonVideoScanner.decodeBase64(text, spans, dst));
+        assertEquals(2, dst.position());
+        assertEquals(3, dst.get(3));
+    }
+
+    // Bytes allocated per frame for scan plus decode into a reused direct
+    // buffer, at typical 640x480 (40 KB) and 1080p (200 KB) JPEG sizes,
+    // against substring plus Base64 decode. The scanner path must not
+    // allocate at all.
+    @Test
+    public void scanAndDecodeDoNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocation.isThreadAllocatedMemorySupported());
+        allocation.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        for (int size : new int[]{40 * 1024, 200 * 1024}) {
+            byte[] payload = jpeg(size);
+            String text = "{\"type\":\"video\",\"seq\":1,\"data\":\"" + Base64.getEncoder().encodeToString(payload) + "\"}";
+            ByteBuffer frame = ByteBuffer.allocateDirect(size + 16);
+            int rounds = 200;
+            long decoded = 0;
+
+            long scannerBytes = 0;
+            long stringBytes = 0;
+            for (int pass = 0; pass < 3; pass++) {
+                long before = allocation.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < rounds; i++) {
+                    if (JsonVideoScanner.scanVideo(text, spans)) {
+                        decoded += JsonVideoScanner.decodeBase64(text, spans, frame);
+                    }
+                }
+                scannerBytes = (allocation.getThreadAllocatedBytes(thread) - before) / rounds;
+
+                before = allocation.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < rounds; i++) {
+                    int start = text.indexOf("\"data\":\"") + 8;
+                    decoded += Base64.getDecoder().decode(text.substring(start, text.indexOf('"', start))).length;
+                }
+                stringBytes = (allocation.getThreadAllocatedBytes(thread) - before) / rounds;
+            }
+
+            assertEquals((long) size * rounds * 6, decoded);
+            assertTrue(size + " bytes: scanner allocated " + scannerBytes + " per frame", scannerBytes < 64);
+            assertTrue(size + " bytes: substring path allocated " + stringBytes, stringBytes > size);
+        }
+    }
+
+    private byte[] decode(String text) {
+        assertTrue(text, JsonVideoScanner.scanVideo(text, spans));
+        ByteBuffer dst = ByteBuffer.allocate(JsonVideoScanner.maxDecodedLength(spans));
+        int length = JsonVideoScanner.decodeBase64(text, spans, dst);
+        assertTrue(length >= 0);
+        return Arrays.copyOf(dst.array(), length);
+    }
+
+    private ByteBuffer buffer() {
+        return ByteBuffer.allocate(JsonVideoScanner.maxDecodedLength(spans));
+    }
+
+    private static String video(String data) {
+        return "{\"type\":\"video\",\"data\":\"" + data + "\"}";
+    }
+
+    // A video message with fields around the data and optional line breaks
+    private static String message(byte[] payload, int extraFields, int breaks) {
+        String data = Base64.getEncoder().encodeToString(payload);
+        if (breaks > 0) {
+            // An escaped line break every 16 * breaks characters
+            data = data.replaceAll("(.{" + 16 * breaks + "})", "$1\\\\n");
+        }
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i < extraFields; i++) {
+            text.append("\"f").append(i).append("\":[").append(i).append("],");
+        }
+        text.append("\"data\":\"").append(data).append("\",\"type\":\"video\"}");
+        return text.toString();
+    }
+
+    private byte[] jpeg(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,181 @@
+package com.nvr.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Sweeps stand-in servers on 127.0.0.1
+public class LanSweeperTest {
+    private final List<ServerSocket> servers = new ArrayList<>();
+
+    @After
+    public void closeServers() throws IOException {
+        for (ServerSocket server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void findsOnlyWebSocketEndpoints() throws Exception {
+        InetSocketAddress camera = serve("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\n\r\n");
+        InetSocketAddress webServer = serve("HTTP/1.1 404 Not Found\r\n\r\n");
+        InetSocketAddress silent = serve(null);
+        InetSocketAddress closedPort = unusedPort();
+
+        Result result = sweep(camera, webServer, silent, closedPort);
+
+        assertEquals(Collections.singletonList(camera), result.found);
+        assertEquals(4, result.probed);
+        assertEquals(1, result.foundCount);
+    }
+
+    @Test
+    public void unresolvedHostIsAMiss() throws Exception {
+        InetSocketAddress camera = serve("HTTP/1.1 101 Switching Protocols\r\n\r\n");
+        InetSocketAddress unresolved = InetSocketAddress.createUnresolved("no-such-camera.invalid", 80);
+
+        Result result = sweep(unresolved, camera);
+
+        assertTrue(result.completed);
+        assertEquals(2, result.probed);
+        assertEquals(Collections.singletonList(camera), result.found);
+    }
+
+    @Test
+    public void unresolvedTargetsAreResolvedBySweep() throws Exception {
+        InetSocketAddress camera = serve("HTTP/1.1 101 Switching Protocols\r\n\r\n");
+
+        Result result = sweep(InetSocketAddress.createUnresolved("127.0.0.1", camera.getPort()));
+
+        assertEquals(Collections.singletonList(camera), result.found);
+        assertEquals(1, result.foundCount);
+    }
+
+    @Test
+    public void completesWhenEveryTargetIsUnusable() throws Exception {
+        Result result = sweep(InetSocketAddress.createUnresolved("no-such-camera.invalid", 80),
+            InetSocketAddress.createUnresolved("also-missing.invalid", 81));
+
+        assertTrue(result.completed);
+        assertEquals(2, result.probed);
+        assertEquals(0, result.foundCount);
+    }
+
+    @Test
+    public void cancelEndsTheSweep() throws Exception {
+        List<InetSocketAddress> targets = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            targets.add(serve(null));
+        }
+        final Result result = new Result();
+        final LanSweeper sweeper = new LanSweeper(targets, "/ws", 4, 5000, 5000, result);
+        Thread thread = new Thread(sweeper);
+        thread.start();
+        Thread.sleep(200);
+        sweeper.cancel();
+        thread.join(5000);
+
+        assertTrue(result.completed);
+        assertTrue(result.cancelled);
+    }
+
+    private Result sweep(InetSocketAddress... targets) {
+        Result result = new Result();
+        List<InetSocketAddress> list = new ArrayList<>();
+        Collections.addAll(list, targets);
+        new LanSweeper(list, "/ws", 2, 1000, 1000, result).run();
+        return result;
+    }
+
+    // A server that reads the upgrade request and answers with response,
+    // or holds the connection without answering when response is null
+    private InetSocketAddress serve(final String response) throws IOException {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        servers.add(server);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                List<Socket> held = new ArrayList<>();
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        held.add(socket);
+                        if (response == null) {
+                            continue;
+                        }
+                        readRequest(socket.getInputStream());
+                        OutputStream out = socket.getOutputStream();
+                        out.write(response.getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // Server closed
+                } finally {
+                    for (Socket socket : held) {
+                        try {
+                            socket.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return new InetSocketAddress(server.getInetAddress(), server.getLocalPort());
+    }
+
+    private static void readRequest(InputStream in) throws IOException {
+        int matched = 0;
+        byte[] end = {'\r', '\n', '\r', '\n'};
+        while (matched < end.length) {
+            int b = in.read();
+            if (b < 0) {
+                return;
+            }
+            matched = b == end[matched] ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+    }
+
+    private static InetSocketAddress unusedPort() throws IOException {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        InetSocketAddress address = new InetSocketAddress(server.getInetAddress(), server.getLocalPort());
+        server.close();
+        return address;
+    }
+
+    private static final class Result implements LanSweeper.Listener {
+        final List<InetSocketAddress> found = Collections.synchronizedList(new ArrayList<InetSocketAddress>());
+        volatile boolean completed;
+        volatile boolean cancelled;
+        volatile int probed;
+        volatile int foundCount;
+
+        @Override
+        public void onCameraFound(InetSocketAddress address) {
+            found.add(address);
+        }
+
+        @Override
+        public void onComplete(int probed, int found, boolean cancelled) {
+            this.probed = probed;
+            this.foundCount = found;
+            this.cancelled = cancelled;
+            this.completed = true;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.nvr.camera;
+
+import java.nio.ByteBuffer;
+
+// Frames outside a pool, for tests of frame consumers. Never release() them.
+public final class TestFrames {
+    private TestFrames() {
+    }
+
+    public static CameraFrame wrap(String cameraId, byte[] jpeg, long timestampMs) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(jpeg.length);
+        buffer.put(jpeg).flip();
+        return new CameraFrame(null, cameraId, 0, timestampMs, timestampMs, buffer, jpeg.length);
+    }
+}
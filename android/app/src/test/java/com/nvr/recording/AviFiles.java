@@ -0,0 +1,107 @@
+package com.nvr.recording;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic JPEGs and an independent parser for the AVIs AviMuxer writes
+final class AviFiles {
+    private AviFiles() {
+    }
+
+    // SOI, APP0, SOF0 with the given size, SOS, random scan data, EOI
+    static byte[] jpeg(Random random, int width, int height) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, 0xFF, 0xD8);
+        write(out, 0xFF, 0xE0, 0, 16);
+        for (int i = 0; i < 14; i++) {
+            out.write(i);
+        }
+        write(out, 0xFF, 0xC0, 0, 11, 8, height >> 8, height & 0xFF, width >> 8, width & 0xFF, 1, 1, 0x11, 0);
+        write(out, 0xFF, 0xDA, 0, 2);
+        int scan = 100 + random.nextInt(5000);
+        for (int i = 0; i < scan; i++) {
+            // No 0xFF in the scan, so no stray markers
+            out.write(random.nextInt(255));
+        }
+        write(out, 0xFF, 0xD9);
+        return out.toByteArray();
+    }
+
+    // Parses file as an MJPEG AVI and checks it holds exactly frames, with
+    // an idx1 that matches them if indexed
+    static void verify(File file, List<byte[]> frames, boolean indexed, int width, int height) throws IOException {
+        byte[] all = Files.readAllBytes(file.toPath());
+        ByteBuffer b = ByteBuffer.wrap(all).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("RIFF", fourcc(b, 0));
+        assertEquals("AVI ", fourcc(b, 8));
+        int riffSize = b.getInt(4);
+        assertTrue("RIFF size " + riffSize + " past the end of " + all.length, riffSize + 8 <= all.length);
+        assertEquals("width", width, b.getInt(64));
+        assertEquals("height", height, b.getInt(68));
+        assertEquals("avih total frames", frames.size(), b.getInt(48));
+        assertEquals("strh length", frames.size(), b.getInt(140));
+        assertEquals("LIST", fourcc(b, 212));
+        assertEquals("movi", fourcc(b, 220));
+        int moviEnd = 220 + b.getInt(216);
+
+        int pos = AviMuxer.HEADER_SIZE;
+        int n = 0;
+        while (pos < moviEnd) {
+            assertEquals("chunk id at " + pos, "00dc", fourcc(b, pos));
+            int length = b.getInt(pos + 4);
+            assertArrayEquals("frame " + n, frames.get(n), Arrays.copyOfRange(all, pos + 8, pos + 8 + length));
+            pos += 8 + length + (length & 1);
+            n++;
+        }
+        assertEquals("movi end", moviEnd, pos);
+        assertEquals("frames in movi", frames.size(), n);
+
+        boolean hasIndex = (b.getInt(44) & 0x10) != 0;
+        assertEquals("AVIF_HASINDEX", indexed, hasIndex);
+        if (!indexed) {
+            return;
+        }
+        assertEquals("idx1", fourcc(b, moviEnd));
+        int indexSize = b.getInt(moviEnd + 4);
+        assertEquals("idx1 size", 16 * frames.size(), indexSize);
+        assertEquals("file ends after idx1", all.length, moviEnd + 8 + indexSize);
+        assertEquals("RIFF size", all.length, riffSize + 8);
+        for (int i = 0; i < frames.size(); i++) {
+            int entry = moviEnd + 8 + 16 * i;
+            assertEquals("00dc", fourcc(b, entry));
+            assertEquals("keyframe", 0x10, b.getInt(entry + 4));
+            // Offsets are relative to the 'movi' fourcc
+            int offset = b.getInt(entry + 8) + 220;
+            int length = b.getInt(entry + 12);
+            assertEquals("00dc", fourcc(b, offset));
+            assertEquals(frames.get(i).length, length);
+            assertArrayEquals("indexed frame " + i, frames.get(i), Arrays.copyOfRange(all, offset + 8, offset + 8 + length));
+        }
+    }
+
+    private static String fourcc(ByteBuffer b, int pos) {
+        byte[] code = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            code[i] = b.get(pos + i);
+        }
+        return new String(code, StandardCharsets.US_ASCII);
+    }
+
+    private static void write(ByteArrayOutputStream out, int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.nvr.recording;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Round-trips synthetic JPEGs through the muxer and parses the result
+public class AviMuxerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(1);
+
+    @Test
+    public void emptySegment() throws Exception {
+        roundTrip(0);
+    }
+
+    @Test
+    public void singleFrame() throws Exception {
+        roundTrip(1);
+    }
+
+    @Test
+    public void twoFrames() throws Exception {
+        roundTrip(2);
+    }
+
+    @Test
+    public void indexBufferBoundary() throws Exception {
+        roundTrip(257);
+    }
+
+    @Test
+    public void manyFrames() throws Exception {
+        roundTrip(2000);
+    }
+
+    @Test
+    public void frameRateIsTheAverage() throws Exception {
+        File file = folder.newFile("rate.avi");
+        File spool = folder.newFile("rate.spool");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        RandomAccessFile spoolRaf = new RandomAccessFile(spool, "rw");
+        try {
+            AviMuxer muxer = new AviMuxer(raf.getChannel(), spoolRaf.getChannel());
+            // 11 frames over 1 s: 10 fps
+            for (int i = 0; i <= 10; i++) {
+                muxer.writeFrame(ByteBuffer.wrap(AviFiles.jpeg(random, 320, 240)), 5000 + i * 100);
+            }
+            muxer.finish();
+        } finally {
+            raf.close();
+            spoolRaf.close();
+        }
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("micros per frame", 100000, header.getInt(32));
+        assertEquals("rate (scale 1000)", 10000, header.getInt(132));
+    }
+
+    @Test
+    public void readsJpegSize() {
+        ByteBuffer jpeg = ByteBuffer.wrap(AviFiles.jpeg(random, 1280, 720));
+        assertArrayEquals(new int[]{1280, 720}, JpegInfo.readSize(jpeg));
+        assertEquals(0, jpeg.position());
+        assertNull(JpegInfo.readSize(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5})));
+    }
+
+    // Writes count frames, parsing the file mid-write after flush() (no
+    // idx1 yet) and again after finish()
+    private void roundTrip(int count) throws Exception {
+        File file = folder.newFile("segment-" + count + ".avi");
+        File spool = folder.newFile("segment-" + count + ".spool");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        RandomAccessFile spoolRaf = new RandomAccessFile(spool, "rw");
+        List<byte[]> frames = new ArrayList<>();
+        AviMuxer muxer = new AviMuxer(raf.getChannel(), spoolRaf.getChannel());
+        try {
+            long timestampMs = 1000;
+            for (int i = 0; i < count; i++) {
+                byte[] jpeg = AviFiles.jpeg(random, 640, 480);
+                frames.add(jpeg);
+                // Frames arrive in read-only direct views
+                ByteBuffer direct = ByteBuffer.allocateDirect(jpeg.length);
+                direct.put(jpeg).flip();
+                long offset = muxer.writeFrame(direct.asReadOnlyBuffer(), timestampMs);
+                assertEquals("data offset of frame " + i, jpeg.length, readLength(raf, offset - 4));
+                timestampMs += 66;
+                if (i == count / 2 && count > 2) {
+                    muxer.flush();
+                    AviFiles.verify(file, frames, false, 640, 480);
+                }
+            }
+            muxer.finish();
+            assertEquals(count, muxer.getFrames());
+            assertEquals(file.length(), muxer.getProjectedBytes());
+        } finally {
+            raf.close();
+            spoolRaf.close();
+        }
+        AviFiles.verify(file, frames, true, count > 0 ? 640 : 0, count > 0 ? 480 : 0);
+    }
+
+    private static int readLength(RandomAccessFile raf, long pos) throws Exception {
+        ByteBuffer length = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        raf.getChannel().read(length, pos);
+        return length.getInt(0);
+    }
+}
@@ -0,0 +1,219 @@
+package com.nvr.recording;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FrameIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(2);
+
+    @Test
+    public void findMatchesLinearScan() throws Exception {
+        File file = folder.newFile("a.fidx");
+        long[] times = new long[5000];
+        FrameIndex.Writer writer = new FrameIndex.Writer(file);
+        long t = 1700000000000L;
+        for (int i = 0; i < times.length; i++) {
+            times[i] = t;
+            writer.append(t, 224 + i * 100L, 50 + i);
+            // Bursts of equal times as well as gaps
+            t += random.nextInt(4) == 0 ? 0 : random.nextInt(80);
+        }
+        writer.close();
+
+        FrameIndex index = FrameIndex.open(file);
+        assertEquals(times.length, index.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i], index.timestampMs(i));
+            assertEquals(224 + i * 100L, index.offset(i));
+            assertEquals(50 + i, index.length(i));
+        }
+        for (int k = 0; k < 20000; k++) {
+            long query = times[0] - 100 + (long) (random.nextDouble() * (times[times.length - 1] - times[0] + 200));
+            assertEquals("find " + query, expectedFloor(times, query), index.find(query));
+        }
+        assertEquals(0, index.find(Long.MIN_VALUE / 2));
+        assertEquals(times.length - 1, index.find(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void clockStepBackKeepsEntriesSorted() throws Exception {
+        File file = folder.newFile("b.fidx");
+        FrameIndex.Writer writer = new FrameIndex.Writer(file);
+        writer.append(10000, 100, 10);
+        writer.append(10100, 200, 10);
+        // Wall clock stepped back a minute
+        writer.append(-50000, 300, 10);
+        writer.append(10150, 400, 10);
+        writer.close();
+
+        FrameIndex index = FrameIndex.open(file);
+        assertEquals(4, index.size());
+        assertEquals(10000, index.timestampMs(0));
+        assertEquals(10100, index.timestampMs(1));
+        assertEquals("clamped to the previous time", 10100, index.timestampMs(2));
+        assertEquals(10150, index.timestampMs(3));
+        assertEquals(300, index.offset(2));
+        for (int i = 1; i < index.size(); i++) {
+            assertTrue(index.timestampMs(i) >= index.timestampMs(i - 1));
+        }
+        assertEquals(2, index.find(10120));
+        assertEquals(3, index.find(10150));
+    }
+
+    @Test
+    public void tornTailIsIgnored() throws Exception {
+        File file = folder.newFile("c.fidx");
+        FrameIndex.Writer writer = new FrameIndex.Writer(file);
+        for (int i = 0; i < 100; i++) {
+            writer.append(1000 + i * 33, 224 + i * 1000L, 900);
+        }
+        writer.close();
+        long full = file.length();
+        assertEquals(FrameIndex.HEADER_SIZE + 100 * FrameIndex.ENTRY_SIZE, full);
+
+        for (int cut = 1; cut <= FrameIndex.ENTRY_SIZE; cut++) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(full - cut);
+            raf.close();
+            FrameIndex index = FrameIndex.open(file);
+            assertEquals("cut " + cut, 99, index.size());
+            assertEquals(98, index.find(Long.MAX_VALUE / 2));
+            assertEquals(1000 + 98 * 33, index.timestampMs(98));
+        }
+    }
+
+    @Test
+    public void emptyAndTruncatedHeaders() throws Exception {
+        File file = folder.newFile("d.fidx");
+        new FrameIndex.Writer(file).close();
+        try {
+            FrameIndex.open(file);
+            fail("header-less index opened");
+        } catch (IOException expected) {
+        }
+
+        File headerOnly = folder.newFile("e.fidx");
+        FrameIndex.Writer writer = new FrameIndex.Writer(headerOnly);
+        writer.append(5, 224, 1);
+        writer.close();
+        RandomAccessFile raf = new RandomAccessFile(headerOnly, "rw");
+        raf.setLength(FrameIndex.HEADER_SIZE);
+        raf.close();
+        FrameIndex index = FrameIndex.open(headerOnly);
+        assertEquals(0, index.size());
+        assertEquals(-1, index.find(5));
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws Exception {
+        File file = folder.newFile("f.fidx");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.write(new byte[64]);
+        raf.close();
+        try {
+            FrameIndex.open(file);
+            fail("opened a file without the magic");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void readFrameFromSegment() throws Exception {
+        File segment = folder.newFile("g.avi");
+        File spool = folder.newFile("g.spool");
+        File indexFile = FrameIndex.fileFor(segment);
+        List<byte[]> frames = new ArrayList<>();
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        RandomAccessFile spoolRaf = new RandomAccessFile(spool, "rw");
+        FrameIndex.Writer writer = new FrameIndex.Writer(indexFile);
+        AviMuxer muxer = new AviMuxer(raf.getChannel(), spoolRaf.getChannel());
+        try {
+            for (int i = 0; i < 300; i++) {
+                byte[] jpeg = AviFiles.jpeg(random, 320, 240);
+                frames.add(jpeg);
+                long offset = muxer.writeFrame(ByteBuffer.wrap(jpeg), 1000 + i * 40);
+                writer.append(1000 + i * 40, offset, jpeg.length);
+                if (i == 150) {
+                    // A live segment: readers see what has been flushed
+                    writer.flush();
+                    FrameIndex live = FrameIndex.open(indexFile);
+                    assertEquals(151, live.size());
+                    assertFrame(live, raf, 150, frames.get(150));
+                }
+            }
+            muxer.finish();
+        } finally {
+            writer.close();
+            raf.close();
+            spoolRaf.close();
+        }
+
+        FrameIndex index = FrameIndex.open(indexFile);
+        RandomAccessFile reader = new RandomAccessFile(segment, "r");
+        try {
+            for (int i = 0; i < frames.size(); i++) {
+                assertEquals(i, index.find(1000 + i * 40 + 39));
+                assertFrame(index, reader, i, frames.get(i));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void readFramePastTheEndFails() throws Exception {
+        File segment = folder.newFile("h.avi");
+        File indexFile = FrameIndex.fileFor(segment);
+        FrameIndex.Writer writer = new FrameIndex.Writer(indexFile);
+        writer.append(0, 10, 100);
+        writer.close();
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        raf.write(new byte[50]);
+        try {
+            FrameIndex.open(indexFile).readFrame(raf.getChannel(), 0, ByteBuffer.allocate(100));
+            fail("read past the end of the segment");
+        } catch (IOException expected) {
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void assertFrame(FrameIndex index, RandomAccessFile segment, int i, byte[] expected)
+            throws IOException {
+        ByteBuffer dst = ByteBuffer.allocate(index.length(i) + 3);
+        dst.position(3);
+        index.readFrame(segment.getChannel(), i, dst);
+        assertEquals(dst.capacity(), dst.position());
+        byte[] actual = new byte[expected.length];
+        dst.position(3);
+        dst.get(actual);
+        assertArrayEquals("frame " + i, expected, actual);
+    }
+
+    private static int expectedFloor(long[] times, long query) {
+        int found = 0;
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] <= query) {
+                found = i;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,198 @@
+package com.nvr.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class SegmentJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unclosedSegmentsBecomeOrphans() throws Exception {
+        File file = new File(folder.getRoot(), "recording.journal");
+        SegmentJournal journal = new SegmentJournal(file);
+        journal.opened("cam1", "/rec/a.avi", 1000);
+        journal.opened("cam2", "/rec/b.avi", 2000);
+        journal.durable("/rec/a.avi", 5000, 12, 1400);
+        journal.durable("/rec/a.avi", 9000, 25, 1800);
+        journal.closed(segment("cam2", "/rec/b.avi"));
+        journal.saved("/rec/b.avi");
+        journal.opened("cam1", "/rec/c.avi", 3000);
+        // No orphans from this run's own segments
+        assertTrue(journal.takeOrphans().isEmpty());
+        journal.close();
+
+        SegmentJournal reopened = new SegmentJournal(file);
+        Map<String, SegmentJournal.Entry> orphans = byPath(reopened.takeOrphans());
+        assertEquals(new HashSet<>(Arrays.asList("/rec/a.avi", "/rec/c.avi")), orphans.keySet());
+        SegmentJournal.Entry a = orphans.get("/rec/a.avi");
+        assertEquals("cam1", a.cameraId);
+        assertEquals(1000, a.startTimeMs);
+        assertEquals(9000, a.durableBytes);
+        assertEquals(25, a.durableFrames);
+        assertEquals(1800, a.durableTimestampMs);
+        assertEquals(0, orphans.get("/rec/c.avi").durableBytes);
+        // Handed out once
+        assertTrue(reopened.takeOrphans().isEmpty());
+
+        // Still orphans until saved, even across another restart
+        reopened.saved("/rec/a.avi");
+        reopened.close();
+        SegmentJournal third = new SegmentJournal(file);
+        assertEquals(Collections.singleton("/rec/c.avi"), byPath(third.takeOrphans()).keySet());
+        third.close();
+    }
+
+    @Test
+    public void closedSegmentsAreKeptUntilSaved() throws Exception {
+        File file = new File(folder.getRoot(), "recording.journal");
+        SegmentJournal journal = new SegmentJournal(file);
+        journal.opened("cam1", "/rec/a.avi", 1000);
+        journal.durable("/rec/a.avi", 5000, 12, 1400);
+        journal.opened("cam2", "/rec/b.avi", 2000);
+        Segment a = new Segment("cam1", "/rec/a.avi", 1000, 1900, 27, 9100);
+        journal.closed(a);
+        journal.closed(segment("cam2", "/rec/b.avi"));
+        journal.saved("/rec/b.avi");
+        // Unknown, or already closed: ignored
+        journal.closed(segment("cam3", "/rec/z.avi"));
+        journal.closed(new Segment("cam1", "/rec/a.avi", 0, 0, 0, 0));
+        journal.close();
+
+        // Indexed and closed, but JS never confirmed the save
+        SegmentJournal reopened = new SegmentJournal(file);
+        List<SegmentJournal.Entry> orphans = reopened.takeOrphans();
+        assertEquals(1, orphans.size());
+        Segment finished = orphans.get(0).finished;
+        assertNotNull(finished);
+        assertEquals("cam1", finished.cameraId);
+        assertEquals(a.path, finished.path);
+        assertEquals(a.startTimeMs, finished.startTimeMs);
+        assertEquals(a.endTimeMs, finished.endTimeMs);
+        assertEquals(a.frames, finished.frames);
+        assertEquals(a.bytes, finished.bytes);
+        reopened.close();
+
+        // The rewrite on open kept it closed
+        SegmentJournal third = new SegmentJournal(file);
+        orphans = third.takeOrphans();
+        assertEquals(a.endTimeMs, orphans.get(0).finished.endTimeMs);
+        third.saved(a.path);
+        third.close();
+        assertTrue(new SegmentJournal(file).takeOrphans().isEmpty());
+    }
+
+    @Test
+    public void tornTailIsIgnored() throws Exception {
+        File file = new File(folder.getRoot(), "recording.journal");
+        SegmentJournal journal = new SegmentJournal(file);
+        journal.opened("cam", "/rec/a.avi", 1000);
+        journal.durable("/rec/a.avi", 5000, 10, 1300);
+        long good = file.length();
+        journal.durable("/rec/a.avi", 9000, 20, 1600);
+        journal.close();
+        long full = file.length();
+
+        // Cut the last record at every byte, and flip a byte inside it
+        for (long length = good; length < full; length++) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            byte[] copy = new byte[(int) full];
+            raf.readFully(copy);
+            raf.setLength(length);
+            raf.close();
+
+            SegmentJournal reopened = new SegmentJournal(file);
+            List<SegmentJournal.Entry> orphans = reopened.takeOrphans();
+            reopened.close();
+            assertEquals(1, orphans.size());
+            assertEquals("cut at " + length, 5000, orphans.get(0).durableBytes);
+
+            copy[(int) length] ^= 0x55;
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+            raf.write(copy);
+            raf.close();
+            reopened = new SegmentJournal(file);
+            orphans = reopened.takeOrphans();
+            reopened.close();
+            assertEquals("corrupt at " + length, 5000, orphans.get(0).durableBytes);
+
+            // Restore for the next cut; the rewrite on open replaced the file
+            rewrite(file, "cam", "/rec/a.avi", new long[][]{{5000, 10, 1300}, {9000, 20, 1600}});
+            assertEquals(full, file.length());
+        }
+    }
+
+    @Test
+    public void compactsUnderChurn() throws Exception {
+        File file = new File(folder.getRoot(), "recording.journal");
+        Random random = new Random(9);
+        SegmentJournal journal = new SegmentJournal(file);
+        Set<String> open = new HashSet<>();
+        // Several times COMPACT_BYTES worth of records
+        for (int i = 0; i < 6000; i++) {
+            String path = "/data/segment_" + i + ".avi";
+            journal.opened("cam" + (i % 4), path, i);
+            journal.durable(path, 1000 + i, i, i);
+            if (random.nextInt(50) == 0) {
+                open.add(path);
+            } else {
+                journal.closed(segment("cam" + (i % 4), path));
+                journal.saved(path);
+            }
+        }
+        journal.close();
+        assertTrue("journal not compacted: " + file.length(), file.length() < 400 * 1024);
+
+        SegmentJournal reopened = new SegmentJournal(file);
+        Map<String, SegmentJournal.Entry> orphans = byPath(reopened.takeOrphans());
+        reopened.close();
+        assertEquals(open, orphans.keySet());
+        for (SegmentJournal.Entry entry : orphans.values()) {
+            int i = Integer.parseInt(entry.path.replaceAll("\\D", ""));
+            assertEquals("cam" + (i % 4), entry.cameraId);
+            assertEquals(1000 + i, entry.durableBytes);
+            assertEquals(i, entry.durableFrames);
+        }
+    }
+
+    // Writes a journal holding one open segment with the given durable
+    // records, the way a run that died mid-segment leaves it
+    private static void rewrite(File file, String cameraId, String path, long[][] durable) throws Exception {
+        file.delete();
+        SegmentJournal journal = new SegmentJournal(file);
+        journal.opened(cameraId, path, 1000);
+        for (long[] record : durable) {
+            journal.durable(path, record[0], (int) record[1], record[2]);
+        }
+        journal.close();
+    }
+
+    private static Segment segment(String cameraId, String path) {
+        return new Segment(cameraId, path, 1000, 2000, 30, 4096);
+    }
+
+    private static Map<String, SegmentJournal.Entry> byPath(List<SegmentJournal.Entry> entries) {
+        Map<String, SegmentJournal.Entry> map = new HashMap<>();
+        for (SegmentJournal.Entry entry : entries) {
+            map.put(entry.path, entry);
+        }
+        return map;
+    }
+}
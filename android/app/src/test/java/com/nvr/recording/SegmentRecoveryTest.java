@@ -0,0 +1,266 @@
+package com.nvr.recording;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.nvr.camera.TestFrames;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Fault injection: records through SegmentWriter and the journal the way
+// CameraRecorder does, kills the writes at a random byte offset of the
+// segment (optionally leaving junk after it, a cut frame index and a torn
+// journal), then recovers and checks that every frame completed before
+// the kill point survives in a valid, indexed AVI.
+public class SegmentRecoveryTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final long SYNC_INTERVAL_MS = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(25);
+
+    @Test
+    public void killedAtRandomOffsets() throws Exception {
+        int kept = 0;
+        for (int trial = 0; trial < 200; trial++) {
+            kept += crashAndRecover(folder.newFolder("trial-" + trial), trial);
+        }
+        assertTrue("no frames survived any trial", kept > 0);
+    }
+
+    @Test
+    public void finishedButNotJournaledClosed() throws Exception {
+        File directory = folder.newFolder("finished");
+        SegmentJournal journal = new SegmentJournal(new File(directory, "recording.journal"));
+        File file = new File(directory, "cam.avi");
+        List<byte[]> frames = new ArrayList<>();
+        journal.opened("cam", file.getAbsolutePath(), 1000);
+        SegmentWriter writer = new SegmentWriter(file, 1000);
+        for (int i = 0; i < 50; i++) {
+            byte[] jpeg = AviFiles.jpeg(random, WIDTH, HEIGHT);
+            frames.add(jpeg);
+            writer.append(TestFrames.wrap("cam", jpeg, 1000 + i * 40));
+        }
+        // Crash after the segment was finalized, before the CLOSE record
+        writer.close();
+        journal.close();
+        byte[] finished = Files.readAllBytes(file.toPath());
+
+        Segment segment = recoverOnly(directory);
+
+        assertNotNull(segment);
+        assertEquals(50, segment.frames);
+        assertEquals(1000, segment.startTimeMs);
+        assertEquals(1000 + 49 * 40, segment.endTimeMs);
+        AviFiles.verify(file, frames, true, WIDTH, HEIGHT);
+        assertArrayEquals("a finalized segment is left as it was", finished, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void segmentWithoutHeaderIsDiscarded() throws Exception {
+        File directory = folder.newFolder("headerless");
+        SegmentJournal journal = new SegmentJournal(new File(directory, "recording.journal"));
+        File file = new File(directory, "cam.avi");
+        journal.opened("cam", file.getAbsolutePath(), 1000);
+        SegmentWriter writer = new SegmentWriter(file, 1000);
+        // Crash before the first frame: an empty file and an empty index
+        journal.close();
+
+        assertNull(recoverOnly(directory));
+        assertFalse(file.exists());
+        assertFalse(FrameIndex.fileFor(file).exists());
+        assertFalse(new File(file.getPath() + SegmentWriter.INDEX_SPOOL_SUFFIX).exists());
+        writer.close();
+    }
+
+    @Test
+    public void missingSegmentIsDropped() throws Exception {
+        File directory = folder.newFolder("missing");
+        SegmentJournal journal = new SegmentJournal(new File(directory, "recording.journal"));
+        // Crash between the OPEN record and creating the file
+        journal.opened("cam", new File(directory, "cam.avi").getAbsolutePath(), 1000);
+        journal.close();
+
+        assertNull(recoverOnly(directory));
+        assertTrue(new SegmentJournal(new File(directory, "recording.journal")).takeOrphans().isEmpty());
+    }
+
+    // Returns the number of frames recovered
+    private int crashAndRecover(File directory, int trial) throws IOException {
+        File journalFile = new File(directory, "recording.journal");
+        File file = new File(directory, "cam_" + trial + ".avi");
+        File indexFile = FrameIndex.fileFor(file);
+        long start = 1700000000000L + random.nextInt(100000);
+
+        int count = 1 + random.nextInt(200);
+        List<byte[]> frames = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        long t = start;
+        long streamBytes = AviMuxer.HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            byte[] jpeg = AviFiles.jpeg(random, WIDTH, HEIGHT);
+            frames.add(jpeg);
+            times.add(t);
+            t += 20 + random.nextInt(40);
+            streamBytes += 8 + jpeg.length + (jpeg.length & 1);
+        }
+        // Sometimes inside the header itself
+        long kill = random.nextInt(10) == 0
+            ? random.nextInt(AviMuxer.HEADER_SIZE + 1)
+            : (long) (random.nextDouble() * streamBytes);
+
+        SegmentJournal journal = new SegmentJournal(journalFile);
+        journal.opened("cam", file.getAbsolutePath(), start);
+        SegmentWriter writer = new SegmentWriter(file, start);
+        long lastSync = start;
+        long durable = 0;
+        for (int i = 0; i < count; i++) {
+            writer.append(TestFrames.wrap("cam", frames.get(i), times.get(i)));
+            if (times.get(i) - lastSync >= SYNC_INTERVAL_MS) {
+                long synced = writer.sync();
+                if (synced > kill) {
+                    // Died before this sync completed
+                    break;
+                }
+                durable = synced;
+                journal.durable(file.getAbsolutePath(), synced, writer.getFrames(), times.get(i));
+                lastSync = times.get(i);
+            }
+            if (file.length() >= kill) {
+                // Everything up to the kill point has been written
+                break;
+            }
+        }
+        // The process dies here: nothing is closed or finalized
+        journal.close();
+
+        RandomAccessFile segment = new RandomAccessFile(file, "rw");
+        try {
+            if (segment.length() > kill) {
+                segment.setLength(kill);
+            }
+            if (random.nextInt(3) == 0) {
+                // Allocated but never written blocks, or junk
+                byte[] junk = new byte[1 + random.nextInt(20000)];
+                if (random.nextBoolean()) {
+                    random.nextBytes(junk);
+                }
+                segment.seek(segment.length());
+                segment.write(junk);
+            }
+        } finally {
+            segment.close();
+        }
+        if (random.nextBoolean() && indexFile.length() > 0) {
+            // The frame index trails the segment and may be cut anywhere
+            RandomAccessFile index = new RandomAccessFile(indexFile, "rw");
+            index.setLength((long) (random.nextDouble() * index.length()));
+            index.close();
+        }
+        if (random.nextBoolean()) {
+            FileOutputStream torn = new FileOutputStream(journalFile, true);
+            byte[] junk = new byte[random.nextInt(30)];
+            random.nextBytes(junk);
+            torn.write(junk);
+            torn.close();
+        }
+
+        // Every frame whose chunk was complete before the kill point
+        int expected = 0;
+        long pos = AviMuxer.HEADER_SIZE;
+        if (kill >= AviMuxer.HEADER_SIZE) {
+            for (byte[] frame : frames) {
+                if (pos + 8 + frame.length > kill) {
+                    break;
+                }
+                expected++;
+                pos += 8 + frame.length + (frame.length & 1);
+            }
+        }
+
+        SegmentJournal reopened = new SegmentJournal(journalFile);
+        List<SegmentJournal.Entry> orphans = reopened.takeOrphans();
+        String context = "trial " + trial + ", kill at " + kill;
+        assertEquals(context, 1, orphans.size());
+        SegmentJournal.Entry entry = orphans.get(0);
+        assertTrue(context, entry.durableBytes <= durable);
+        Segment recovered = SegmentRecovery.recover(entry);
+
+        if (expected == 0) {
+            assertNull(context, recovered);
+            assertFalse(context, file.exists());
+            assertFalse(context, indexFile.exists());
+        } else {
+            assertNotNull(context, recovered);
+            assertEquals(context, expected, recovered.frames);
+            AviFiles.verify(file, frames.subList(0, expected), true, WIDTH, HEIGHT);
+            assertEquals(context, file.length(), recovered.bytes);
+            assertIndexMatches(context, indexFile, file, frames.subList(0, expected), start);
+            assertEquals(context, start, recovered.startTimeMs);
+
+            // Recovering again changes nothing
+            byte[] segmentBytes = Files.readAllBytes(file.toPath());
+            byte[] indexBytes = Files.readAllBytes(indexFile.toPath());
+            Segment again = SegmentRecovery.recover(entry);
+            assertNotNull(context, again);
+            assertEquals(context, expected, again.frames);
+            assertArrayEquals(context, segmentBytes, Files.readAllBytes(file.toPath()));
+            assertArrayEquals(context, indexBytes, Files.readAllBytes(indexFile.toPath()));
+        }
+        assertFalse(context, new File(file.getPath() + SegmentWriter.INDEX_SPOOL_SUFFIX).exists());
+
+        reopened.saved(entry.path);
+        reopened.close();
+        assertTrue(context, new SegmentJournal(journalFile).takeOrphans().isEmpty());
+        return expected;
+    }
+
+    private static void assertIndexMatches(String context, File indexFile, File segment, List<byte[]> frames,
+                                           long start) throws IOException {
+        FrameIndex index = FrameIndex.open(indexFile);
+        assertEquals(context, frames.size(), index.size());
+        assertEquals(context, start, index.timestampMs(0));
+        RandomAccessFile raf = new RandomAccessFile(segment, "r");
+        try {
+            for (int i = 0; i < frames.size(); i++) {
+                if (i > 0) {
+                    assertTrue(context, index.timestampMs(i) >= index.timestampMs(i - 1));
+                }
+                ByteBuffer jpeg = ByteBuffer.allocate(index.length(i));
+                index.readFrame(raf.getChannel(), i, jpeg);
+                assertArrayEquals(context + ", frame " + i, frames.get(i), jpeg.array());
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static Segment recoverOnly(File directory) throws IOException {
+        SegmentJournal journal = new SegmentJournal(new File(directory, "recording.journal"));
+        List<SegmentJournal.Entry> orphans = journal.takeOrphans();
+        assertEquals(1, orphans.size());
+        Segment segment = SegmentRecovery.recover(orphans.get(0));
+        journal.saved(orphans.get(0).path);
+        journal.close();
+        return segment;
+    }
+}
@@ -0,0 +1,188 @@
+package com.nvr.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Checks lookups against a brute-force scan of every segment added
+public class TimeIndexTest {
+    private static final long EPOCH = 1700000000000L;
+    private static final String[] CAMERAS = {"192.168.1.10", "192.168.1.11", "cam3", "a", "zz"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(3);
+    private final List<Segment> all = new ArrayList<>();
+    private final Map<String, Long> clock = new HashMap<>();
+
+    @Test
+    public void matchesBruteForceAcrossReopenAndTornLog() throws Exception {
+        File directory = folder.newFolder("index");
+        TimeIndex index = new TimeIndex(directory);
+        index.open();
+        for (int i = 0; i < 1500; i++) {
+            index.add(nextSegment(i));
+            if (i == 700) {
+                index.close();
+                index = new TimeIndex(directory);
+                index.open();
+            }
+        }
+        // Same path added again (e.g. recovered after a crash): newest wins
+        Segment last = all.get(all.size() - 1);
+        Segment updated = new Segment(last.cameraId, last.path, last.startTimeMs, last.endTimeMs + 10,
+            last.frames + 1, last.bytes);
+        index.add(updated);
+        all.set(all.size() - 1, updated);
+
+        for (int pass = 0; pass < 3; pass++) {
+            assertMatches(index);
+            index.close();
+            if (pass == 1) {
+                // Torn record at the end of the log
+                RandomAccessFile log = new RandomAccessFile(new File(directory, "segments.log"), "rw");
+                log.seek(log.length());
+                log.write(new byte[]{0, 40, 1});
+                log.close();
+            }
+            index = new TimeIndex(directory);
+            index.open();
+        }
+        // Still appendable after a torn tail was dropped
+        Segment more = nextSegment(1500);
+        index.add(more);
+        assertEquals(more.path, index.find(more.cameraId, more.startTimeMs).path);
+        index.close();
+    }
+
+    @Test
+    public void zeroFilledOrCorruptTailIsDropped() throws Exception {
+        File directory = folder.newFolder("tail");
+        TimeIndex index = new TimeIndex(directory);
+        index.open();
+        for (int i = 0; i < 10; i++) {
+            index.add(nextSegment(i));
+        }
+        index.close();
+        File logFile = new File(directory, "segments.log");
+        long valid = logFile.length();
+
+        // A flipped byte in the last record, then a block the filesystem
+        // extended with zeros but never wrote
+        RandomAccessFile log = new RandomAccessFile(logFile, "rw");
+        log.seek(valid - 6);
+        log.write(log.readByte() ^ 0x40);
+        log.seek(valid);
+        log.write(new byte[4096]);
+        log.close();
+        all.remove(all.size() - 1);
+
+        index = new TimeIndex(directory);
+        index.open();
+        assertFalse(index.cameras().contains(""));
+        assertTrue(logFile.length() < valid);
+        for (Segment segment : all) {
+            assertEquals(segment.path, index.find(segment.cameraId, segment.startTimeMs).path);
+        }
+        // Still appendable, and the new record survives another reopen
+        Segment more = nextSegment(10);
+        index.add(more);
+        index.close();
+        index = new TimeIndex(directory);
+        index.open();
+        assertEquals(more.path, index.find(more.cameraId, more.startTimeMs).path);
+        int total = 0;
+        for (String camera : index.cameras()) {
+            total += index.range(camera, 0, Long.MAX_VALUE).size();
+        }
+        assertEquals(all.size(), total);
+        index.close();
+    }
+
+    @Test
+    public void interruptedFlushLeavesNoTrace() throws Exception {
+        File directory = folder.newFolder("tmp");
+        new File(directory, "run-7.tmp").createNewFile();
+        TimeIndex index = new TimeIndex(directory);
+        index.open();
+        Segment segment = new Segment("cam", "/rec/cam/0.avi", EPOCH, EPOCH + 1000, 30, 1000);
+        index.add(segment);
+        assertEquals(segment.path, index.find("cam", EPOCH + 500).path);
+        assertFalse(new File(directory, "run-7.tmp").exists());
+        index.close();
+    }
+
+    @Test
+    public void emptyIndex() throws Exception {
+        TimeIndex index = new TimeIndex(folder.newFolder("empty"));
+        index.open();
+        assertNull(index.find("cam", EPOCH));
+        assertEquals(0, index.range("cam", 0, Long.MAX_VALUE).size());
+        assertEquals(0, index.cameras().size());
+        index.close();
+    }
+
+    private Segment nextSegment(int i) {
+        String camera = CAMERAS[random.nextInt(CAMERAS.length)];
+        Long previous = clock.get(camera);
+        long start = (previous != null ? previous : EPOCH) + random.nextInt(5000);
+        long end = start + 1000 + random.nextInt(3600000);
+        clock.put(camera, end);
+        Segment segment = new Segment(camera, "/rec/" + camera + "/" + i + ".avi", start, end,
+            random.nextInt(1000), random.nextInt(100000));
+        all.add(segment);
+        return segment;
+    }
+
+    private void assertMatches(TimeIndex index) {
+        assertEquals(new HashSet<>(Arrays.asList(CAMERAS)), new HashSet<>(index.cameras()));
+        for (int k = 0; k < 5000; k++) {
+            String camera = CAMERAS[random.nextInt(CAMERAS.length)];
+            long from = EPOCH + (long) (random.nextDouble() * (clock.get(camera) - EPOCH + 10000));
+
+            Segment expected = null;
+            for (Segment segment : all) {
+                if (segment.cameraId.equals(camera) && segment.startTimeMs <= from && segment.endTimeMs >= from) {
+                    expected = segment;
+                }
+            }
+            Segment found = index.find(camera, from);
+            if (expected == null) {
+                assertNull("find " + camera + " " + from, found);
+            } else {
+                assertEquals("find " + camera + " " + from, expected.path, found != null ? found.path : null);
+                assertEquals(expected.endTimeMs, found.endTimeMs);
+                assertEquals(expected.frames, found.frames);
+            }
+
+            long to = from + random.nextInt(20000000);
+            List<String> expectedRange = new ArrayList<>();
+            for (Segment segment : all) {
+                if (segment.cameraId.equals(camera) && segment.startTimeMs <= to && segment.endTimeMs >= from) {
+                    expectedRange.add(segment.path);
+                }
+            }
+            List<String> range = new ArrayList<>();
+            for (Segment segment : index.range(camera, from, to)) {
+                range.add(segment.path);
+            }
+            assertEquals("range " + camera + " " + from + ".." + to, expectedRange, range);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.nvr.wifi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ScanColumnsTest {
+    private static final String[] CAPABILITIES = {"[WPA2-PSK-CCMP][ESS]", "[ESS]", "[WPA2-EAP-CCMP][ESS]",
+        "[WPA-PSK-TKIP][WPA2-PSK-CCMP][ESS][WPS]", "[RSN-SAE-CCMP][ESS]"};
+
+    @Test
+    public void rowsStayAlignedAndHiddenNetworksAreSkipped() {
+        ScanColumns columns = new ScanColumns(4);
+        columns.add("cam-ap", "aa:bb:cc:00:00:01", -40, 2412, "[WPA2-PSK-CCMP][ESS]");
+        columns.add("", "aa:bb:cc:00:00:02", -50, 2437, "[ESS]");
+        columns.add(null, "aa:bb:cc:00:00:03", -60, 2462, "[ESS]");
+        columns.add("open", "aa:bb:cc:00:00:04", -70, 5180, "[ESS]");
+        columns.trim();
+
+        assertEquals(2, columns.count);
+        assertArrayEquals(new String[]{"cam-ap", "open"}, columns.ssids);
+        assertArrayEquals(new String[]{"aa:bb:cc:00:00:01", "aa:bb:cc:00:00:04"}, columns.bssids);
+        assertArrayEquals(new int[]{-40, -70}, columns.levels);
+        assertArrayEquals(new int[]{2412, 5180}, columns.frequencies);
+        assertArrayEquals(new int[]{ScanSecurity.flagsOf("[WPA2-PSK-CCMP][ESS]"), 0}, columns.security);
+    }
+
+    @Test
+    public void growsPastItsCapacity() {
+        ScanColumns columns = new ScanColumns(0);
+        for (int i = 0; i < 100; i++) {
+            columns.add("ap" + i, "bssid" + i, -i, 2412 + i, CAPABILITIES[i % CAPABILITIES.length]);
+        }
+        columns.trim();
+
+        assertEquals(100, columns.count);
+        assertEquals(100, columns.security.length);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("ap" + i, columns.ssids[i]);
+            assertEquals("bssid" + i, columns.bssids[i]);
+            assertEquals(-i, columns.levels[i]);
+            assertEquals(2412 + i, columns.frequencies[i]);
+            assertEquals(ScanSecurity.flagsOf(CAPABILITIES[i % CAPABILITIES.length]), columns.security[i]);
+        }
+    }
+
+    @Test
+    public void emptyScan() {
+        ScanColumns columns = new ScanColumns(0);
+        columns.trim();
+        assertEquals(0, columns.count);
+        assertEquals(0, columns.ssids.length);
+    }
+
+    // The compact form against the per-network maps of toWritableMap, for
+    // 50/200/500-AP scans. Writable maps and arrays are native-backed, so
+    // HashMaps and the primitive columns stand in for what gets built on
+    // the Java side; the serialized size is the JSON each form would be.
+    @Test
+    public void compactFormIsSmallerThanPerNetworkMaps() {
+        for (int networks : new int[]{50, 200, 500}) {
+            String[] ssids = new String[networks];
+            String[] bssids = new String[networks];
+            for (int i = 0; i < networks; i++) {
+                ssids[i] = "Camera-AP-" + i;
+                bssids[i] = String.format("aa:bb:cc:%02x:%02x:%02x", i >> 16 & 0xff, i >> 8 & 0xff, i & 0xff);
+            }
+
+            List<Map<String, Object>> maps = perNetworkMaps(ssids, bssids);
+            ScanColumns columns = columns(ssids, bssids);
+            long mapsJson = jsonLength(maps);
+            long columnsJson = jsonLength(columns);
+            assertTrue(networks + " APs: " + columnsJson + " vs " + mapsJson + " bytes of JSON",
+                columnsJson * 2 < mapsJson);
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+            com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+            assumeTrue(allocation.isThreadAllocatedMemorySupported());
+            allocation.setThreadAllocatedMemoryEnabled(true);
+            long thread = Thread.currentThread().getId();
+
+            int rounds = 200;
+            long sink = 0;
+            for (int warmup = 0; warmup < 2; warmup++) {
+                long before = allocation.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < rounds; i++) {
+                    sink += perNetworkMaps(ssids, bssids).size();
+                }
+                long mapsBytes = (allocation.getThreadAllocatedBytes(thread) - before) / rounds;
+
+                before = allocation.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < rounds; i++) {
+                    sink += columns(ssids, bssids).count;
+                }
+                long columnsBytes = (allocation.getThreadAllocatedBytes(thread) - before) / rounds;
+
+                if (warmup == 1) {
+                    assertTrue(networks + " APs: " + columnsBytes + " vs " + mapsBytes + " bytes allocated",
+                        columnsBytes * 3 < mapsBytes);
+                }
+            }
+            assertEquals((long) networks * rounds * 4, sink);
+        }
+    }
+
+    // What toWritableArray builds: one map per network
+    private static List<Map<String, Object>> perNetworkMaps(String[] ssids, String[] bssids) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 0; i < ssids.length; i++) {
+            String capabilities = CAPABILITIES[i % CAPABILITIES.length];
+            Map<String, Object> map = new HashMap<>();
+            map.put("SSID", ssids[i]);
+            map.put("BSSID", bssids[i]);
+            map.put("level", -30 - i % 60);
+            map.put("frequency", 2412 + i % 13 * 5);
+            map.put("capabilities", capabilities);
+            map.put("isSecured", ScanSecurity.isSecured(ScanSecurity.flagsOf(capabilities)));
+            list.add(map);
+        }
+        return list;
+    }
+
+    // What toPackedMap builds
+    private static ScanColumns columns(String[] ssids, String[] bssids) {
+        ScanColumns columns = new ScanColumns(ssids.length);
+        for (int i = 0; i < ssids.length; i++) {
+            columns.add(ssids[i], bssids[i], -30 - i % 60, 2412 + i % 13 * 5, CAPABILITIES[i % CAPABILITIES.length]);
+        }
+        columns.trim();
+        return columns;
+    }
+
+    private static long jsonLength(List<Map<String, Object>> maps) {
+        long length = 2 + Math.max(0, maps.size() - 1);
+        for (Map<String, Object> map : maps) {
+            length += 2 + map.size() - 1;
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                length += entry.getKey().length() + 3 + valueLength(entry.getValue());
+            }
+        }
+        return length;
+    }
+
+    private static long jsonLength(ScanColumns columns) {
+        long length = 2 + "\"count\":".length() + String.valueOf(columns.count).length();
+        Object[][] keyed = {{"SSID", columns.ssids}, {"BSSID", columns.bssids}};
+        for (Object[] column : keyed) {
+            length += 1 + column[0].toString().length() + 3 + 2;
+            for (String value : (String[]) column[1]) {
+                length += valueLength(value) + 1;
+            }
+        }
+        Object[][] numbers = {{"level", columns.levels}, {"frequency", columns.frequencies},
+            {"security", columns.security}};
+        for (Object[] column : numbers) {
+            length += 1 + column[0].toString().length() + 3 + 2;
+            for (int value : (int[]) column[1]) {
+                length += valueLength(value) + 1;
+            }
+        }
+        return length;
+    }
+
+    private static long valueLength(Object value) {
+        return value instanceof String ? ((String) value).length() + 2 : String.valueOf(value).length();
+    }
+}
@@ -0,0 +1,56 @@
+package com.nvr.wifi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ScanSecurityTest {
+    @Test
+    public void parsesCommonCapabilityStrings() {
+        assertEquals(0, ScanSecurity.flagsOf("[ESS]"));
+        assertEquals(0, ScanSecurity.flagsOf(""));
+        assertEquals(0, ScanSecurity.flagsOf(null));
+        assertEquals(ScanSecurity.WEP, ScanSecurity.flagsOf("[WEP][ESS]"));
+        assertEquals(ScanSecurity.WPA | ScanSecurity.PSK, ScanSecurity.flagsOf("[WPA-PSK-TKIP][ESS]"));
+        assertEquals(ScanSecurity.WPA | ScanSecurity.WPA2 | ScanSecurity.PSK,
+            ScanSecurity.flagsOf("[WPA2-PSK-CCMP][ESS]"));
+        assertEquals(ScanSecurity.WPA | ScanSecurity.WPA2 | ScanSecurity.PSK,
+            ScanSecurity.flagsOf("[WPA-PSK-CCMP+TKIP][WPA2-PSK-CCMP+TKIP][ESS][WPS]"));
+        assertEquals(ScanSecurity.WPA | ScanSecurity.WPA2 | ScanSecurity.EAP,
+            ScanSecurity.flagsOf("[WPA2-EAP-CCMP][ESS]"));
+        assertEquals(ScanSecurity.WPA2 | ScanSecurity.WPA3, ScanSecurity.flagsOf("[RSN-SAE-CCMP][ESS]"));
+        assertEquals(ScanSecurity.WPA | ScanSecurity.WPA2 | ScanSecurity.WPA3 | ScanSecurity.PSK,
+            ScanSecurity.flagsOf("[WPA2-PSK-CCMP][RSN-PSK+SAE-CCMP][ESS]"));
+    }
+
+    @Test
+    public void isCaseInsensitive() {
+        assertEquals(ScanSecurity.flagsOf("[WPA2-PSK-CCMP][ESS]"), ScanSecurity.flagsOf("[wpa2-psk-ccmp][ess]"));
+    }
+
+    @Test
+    public void securedMatchesTheOriginalRule() {
+        // The original check: capabilities containing WEP, WPA or PSK
+        String[] samples = {"[ESS]", "[WEP]", "[WPA-PSK-TKIP]", "[WPA2-EAP-CCMP]", "[IBSS]", "[RSN-PSK-CCMP]",
+            "[ESS][WPS]", ""};
+        for (String capabilities : samples) {
+            boolean original = capabilities.contains("WEP") || capabilities.contains("WPA")
+                || capabilities.contains("PSK");
+            assertEquals(capabilities, original, ScanSecurity.isSecured(ScanSecurity.flagsOf(capabilities)));
+        }
+        assertTrue(ScanSecurity.isSecured(ScanSecurity.PSK));
+        assertFalse(ScanSecurity.isSecured(ScanSecurity.EAP | ScanSecurity.WPA2));
+    }
+
+    @Test
+    public void cacheOverflowKeepsAnswersCorrect() {
+        for (int i = 0; i < 1000; i++) {
+            String capabilities = i % 2 == 0 ? "[WPA2-PSK-CCMP][ESS]" + i : "[ESS]" + i;
+            int expected = i % 2 == 0 ? ScanSecurity.WPA | ScanSecurity.WPA2 | ScanSecurity.PSK : 0;
+            assertEquals(capabilities, expected, ScanSecurity.flagsOf(capabilities));
+            assertEquals(capabilities, expected, ScanSecurity.flagsOf(capabilities));
+        }
+    }
+}
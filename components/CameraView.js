@@ -7,6 +7,7 @@ import RecordingControls from './RecordingControls';
 import RecordingsScreen from './RecordingsScreen';
 import * as ScreenOrientation from 'expo-screen-orientation';
 import recordingService from './RecordingService';
+import { CameraStreamView } from '../CameraStream';
 
 const CameraView = ({ cameraName, videoConfig, handleDisconnect, webViewRef, webViewHTML, frameRate, setFrameRate, handleLogout, camera }) => {
   const [isFullScreen, setIsFullScreen] = useState(false);
@@ -190,7 +191,7 @@ const CameraView = ({ cameraName, videoConfig, handleDisconnect, webViewRef, web
         </View>
       )}
 
-      {/* WebView for Video Stream */}
+      {/* Native stream view where available, WebView otherwise */}
       <View style={[
         styles.cameraView, 
         isFullScreen && {
@@ -199,23 +200,31 @@ const CameraView = ({ cameraName, videoConfig, handleDisconnect, webViewRef, web
           height: dimensions.height
         }
       ]}>
-        <WebView
-          ref={webViewRef}
-          originWhitelist={['*']}
-          source={{ html: webViewHTML }}
-          style={styles.webview}
-          mediaPlaybackRequiresUserAction={false}
-          allowsInlineMediaPlayback={true}
-          javaScriptEnabled={true}
-          domStorageEnabled={true}
-          javaScriptCanOpenWindowsAutomatically={false}
-          startInLoadingState={false}
-          renderToHardwareTextureAndroid={true}
-          androidLayerType={Platform.OS === 'android' ? 'hardware' : undefined}
-          cacheEnabled={true}
-          cacheMode="LOAD_NO_CACHE"
-          onError={(err) => console.log('WebView error:', err)}
-        />
+        {CameraStreamView && camera ? (
+          <CameraStreamView
+            cameraId={camera.ip}
+            resizeMode="contain"
+            style={styles.webview}
+          />
+        ) : (
+          <WebView
+            ref={webViewRef}
+            originWhitelist={['*']}
+            source={{ html: webViewHTML }}
+            style={styles.webview}
+            mediaPlaybackRequiresUserAction={false}
+            allowsInlineMediaPlayback={true}
+            javaScriptEnabled={true}
+            domStorageEnabled={true}
+            javaScriptCanOpenWindowsAutomatically={false}
+            startInLoadingState={false}
+            renderToHardwareTextureAndroid={true}
+            androidLayerType={Platform.OS === 'android' ? 'hardware' : undefined}
+            cacheEnabled={true}
+            cacheMode="LOAD_NO_CACHE"
+            onError={(err) => console.log('WebView error:', err)}
+          />
+        )}
       </View>
 
       {/* Recording Controls */}
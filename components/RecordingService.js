@@ -2,6 +2,8 @@ import * as FileSystem from 'expo-file-system';
 import * as MediaLibrary from 'expo-media-library';
 import { format } from 'date-fns';
 import AsyncStorage from '@react-native-async-storage/async-storage';
+import CameraHealth from '../CameraHealth';
+import NativeRecorder from '../NativeRecorder';
 
 const AUTO_RECORDING_STORAGE_KEY = 'AUTO_RECORDING_CAMERAS';
 
@@ -30,6 +32,118 @@ class RecordingService {
     // Load auto-recording cameras on init
     this._loadAutoRecordingCameras();
     this._checkPermissions();
+    this._subscribeNativeRecorder();
+  }
+
+  /**
+   * Track native recorders: cache their stats for the UI and save each
+   * finished segment, and each one recovered after a crash, to the
+   * camera's album. A segment is only marked saved once it is in the
+   * album, so a failed save is offered again on the next start.
+   * @private
+   */
+  _subscribeNativeRecorder() {
+    if (!NativeRecorder.isAvailable()) {
+      return;
+    }
+
+    NativeRecorder.onStats((stats) => {
+      const recording = this.activeRecordings[stats.cameraId];
+      if (!recording || !recording.native) return;
+      recording.frameCount = stats.frames;
+      recording.frameRate = Math.round(stats.fps);
+      recording.totalSize = stats.bytes;
+      recording.currentFileSize = stats.currentFileSize;
+      recording.currentFilePath = stats.currentPath || null;
+      recording.droppedFrames = stats.droppedFrames;
+      if (stats.lastFrameTime > 0) {
+        recording.lastFrameTime = stats.lastFrameTime;
+        recording.lastWriteTime = stats.lastFrameTime;
+      }
+    });
+
+    NativeRecorder.onSegment(async (segment) => {
+      const recording = this.activeRecordings[segment.cameraId];
+      if (recording) {
+        recording.successfulWrites = (recording.successfulWrites || 0) + 1;
+        if (!recording.allFiles) recording.allFiles = [];
+        recording.allFiles.push(`file://${segment.path}`);
+      }
+      if (segment.frames > 0) {
+        const camera = recording ? recording.camera : await this._findSavedCamera(segment.cameraId);
+        await this._saveNativeSegment(segment, camera);
+      }
+    });
+
+    // Segments cut short by a crash never reached onSegment, and earlier
+    // saves may not have finished; save them now
+    NativeRecorder.getRecoveredSegments()
+      .then(async (segments) => {
+        for (const segment of segments) {
+          console.log(`Recovered ${segment.frames} frames of ${segment.path}`);
+          await this._saveNativeSegment(segment, await this._findSavedCamera(segment.cameraId));
+        }
+      })
+      .catch((error) => {
+        console.error('Failed to collect recovered recordings:', error);
+      });
+
+    NativeRecorder.onStateChange(({ cameraId, state, message }) => {
+      const recording = this.activeRecordings[cameraId];
+      if (state === 'error' && recording && recording.native) {
+        // The recorder has stopped itself; its segments are already saved
+        console.error(`Native recording failed for camera ${cameraId}: ${message}`);
+        delete this.activeRecordings[cameraId];
+        delete this.recordingStats[cameraId];
+      }
+    });
+  }
+
+  /**
+   * Save a native segment to the camera's album, then tell the recorder
+   * @param {Object} segment - Segment from onSegment or getRecoveredSegments
+   * @param {Object|string} camera - Camera object or identifier
+   * @private
+   */
+  async _saveNativeSegment(segment, camera) {
+    const albumName = await this._saveToCameraAlbum(`file://${segment.path}`, camera);
+    if (!albumName) return;
+    try {
+      await NativeRecorder.markSaved(segment.path);
+    } catch (error) {
+      console.error('Failed to mark recording as saved:', error);
+    }
+  }
+
+  /**
+   * Find a camera by address among the saved cameras, so segments recorded
+   * in an earlier run land in the same album as live ones
+   * @param {string} cameraId - Camera address
+   * @returns {Promise<Object|string>} Camera object, or cameraId if unknown
+   * @private
+   */
+  async _findSavedCamera(cameraId) {
+    const recording = this.activeRecordings[cameraId];
+    if (recording && recording.camera && typeof recording.camera !== 'string') {
+      return recording.camera;
+    }
+    const autoCamera = (await this.getAutoRecordingCameras()).find(cam => cam.ip === cameraId);
+    if (autoCamera) {
+      return autoCamera;
+    }
+    try {
+      const storedUsers = await AsyncStorage.getItem('users');
+      const users = storedUsers ? JSON.parse(storedUsers) : [];
+      for (const user of users) {
+        const camera = (user.cameras || []).find(cam => cam.ip === cameraId);
+        if (camera) {
+          return camera;
+        }
+      }
+    } catch (error) {
+      console.error('Failed to load saved cameras:', error);
+    }
+    return cameraId;
   }
 
   /**
@@ -126,6 +240,15 @@ class RecordingService {
    * @returns {Promise<string>} 'Online' or 'Offline'
    */
   async checkCameraStatus(camera) {
+    if (CameraHealth.isAvailable()) {
+      try {
+        const [result] = await CameraHealth.check([camera.ip]);
+        return CameraHealth.toDisplayStatus(result.status);
+      } catch (error) {
+        return 'Offline';
+      }
+    }
+
     try {
       // Format IP properly for WebSocket URL
       let formattedIP = camera.ip;
@@ -191,6 +314,10 @@ class RecordingService {
       
       console.log(`Starting recording for camera ${cameraName}`);
       
+      if (NativeRecorder.isAvailable()) {
+        return await this._startNativeRecording(camera, cameraId, cameraName);
+      }
+      
       // Initialize recording state with optimized settings
       this.activeRecordings[cameraId] = {
         camera: camera,
@@ -229,6 +356,50 @@ class RecordingService {
     }
   }
 
+  /**
+   * Start a native recorder: frames go from the camera socket to segment
+   * files without passing through JS
+   * @param {Object|string} camera - Camera object or identifier
+   * @param {string} cameraId - Camera address
+   * @param {string} cameraName - Display name
+   * @returns {Promise<boolean>} - Whether recording was started
+   * @private
+   */
+  async _startNativeRecording(camera, cameraId, cameraName) {
+    const safeCameraName = cameraName.replace(/[^a-z0-9]/gi, '_');
+    this.activeRecordings[cameraId] = {
+      camera: camera,
+      native: true,
+      isActive: true,
+      startTime: Date.now(),
+      frameCount: 0,
+      lastFrameTime: Date.now(),
+      frameRate: 0,
+      frameSizes: [],
+      totalSize: 0,
+      currentFileSize: 0,
+      frameBuffer: [],
+      useImageFallback: false,
+      base64ErrorCount: 0,
+      lastWriteTime: Date.now(),
+      droppedFrames: 0,
+    };
+
+    try {
+      const status = await NativeRecorder.start(cameraId, camera.ip || cameraId, {
+        directory: `${FileSystem.documentDirectory}recordings/${safeCameraName}`,
+        filePrefix: safeCameraName,
+        segmentDurationMs: this.recordingConfig.fileRotationIntervalMs,
+      });
+      this.activeRecordings[cameraId].startTime = status.startTime;
+      return true;
+    } catch (error) {
+      console.error('Failed to start native recording:', error);
+      delete this.activeRecordings[cameraId];
+      return false;
+    }
+  }
+
   /**
    * Stop recording for a camera
    * @param {Object|string} camera - Camera object or identifier
@@ -250,6 +421,15 @@ class RecordingService {
       // Mark recording as inactive
       recording.isActive = false;
       
+      if (recording.native) {
+        // Resolves once the last segment is closed; its segment event saves it
+        await NativeRecorder.stop(cameraId);
+        delete this.activeRecordings[cameraId];
+        delete this.recordingStats[cameraId];
+        console.log(`Successfully stopped recording for camera ${cameraId}`);
+        return true;
+      }
+      
       // Close WebSocket connection if open
       if (recording.ws) {
         try {
@@ -393,7 +573,9 @@ class RecordingService {
   }
 
   /**
-   * Generate a file name for recording based on camera and current time
+   * Generate a file name for recording based on camera and current time.
+   * This path writes raw concatenated JPEGs, so the name says MJPEG; the
+   * native recorder writes proper AVI segments instead.
    * @param {Object|string} camera - Camera object or identifier
    * @returns {string}
    * @private
@@ -403,19 +585,19 @@ class RecordingService {
     
     // Handle case where camera is undefined or not an object
     if (!camera) {
-      return `recording_${dateTimeString}.mp4`;
+      return `recording_${dateTimeString}.mjpeg`;
     }
     
     // Handle case where camera is a string (IP or ID)
     if (typeof camera === 'string') {
       const safeNameString = camera.replace(/[^a-z0-9]/gi, '_');
-      return `${safeNameString}_${dateTimeString}.mp4`;
+      return `${safeNameString}_${dateTimeString}.mjpeg`;
     }
     
     // Handle case where camera is an object but name is not defined
     const cameraName = camera.name || camera.ip || 'unknown';
     const safeNameString = cameraName.replace(/[^a-z0-9]/gi, '_');
-    return `${safeNameString}_${dateTimeString}.mp4`;
+    return `${safeNameString}_${dateTimeString}.mjpeg`;
   }
 
   /**
@@ -575,35 +757,9 @@ class RecordingService {
       
       // Add to media library if video recording was successful
       if (recording.successfulWrites > 0 && !recording.useImageFallback) {
-        try {
-          // Save to media library
-          const asset = await MediaLibrary.createAssetAsync(recording.currentFilePath);
-          
-          // Create a custom album for camera recordings
-          const cameraName = typeof recording.camera === 'string' 
-            ? recording.camera
-            : (recording.camera && recording.camera.name) 
-                ? recording.camera.name 
-                : (recording.camera && recording.camera.ip) 
-                    ? recording.camera.ip 
-                    : 'unknown';
-                    
-          // Make the camera name safe for file system
-          const safeCameraName = cameraName.replace(/[^a-z0-9]/gi, '_');
-            
-          const albumName = `Security Recordings - ${safeCameraName}`;
-          const albums = await MediaLibrary.getAlbumsAsync();
-          let album = albums.find(a => a.title === albumName);
-          
-          if (!album) {
-            album = await MediaLibrary.createAlbumAsync(albumName, asset, false);
-          } else {
-            await MediaLibrary.addAssetsToAlbumAsync([asset], album, false);
-          }
-          
+        const albumName = await this._saveToCameraAlbum(recording.currentFilePath, recording.camera);
+        if (albumName) {
           console.log(`Finalized recording file: ${recording.currentFileName} and saved to album: ${albumName}`);
-        } catch (mediaError) {
-          console.error('Failed to save to media library:', mediaError);
         }
       } else if (recording.useImageFallback && recording.imageCount > 0) {
         // For image fallback mode, log success
@@ -620,6 +776,46 @@ class RecordingService {
     }
   }
 
+  /**
+   * Save a finished recording file to the camera's album
+   * @param {string} fileUri - Recording file URI
+   * @param {Object|string} camera - Camera object or identifier
+   * @returns {Promise<string|null>} Album name, or null if saving failed
+   * @private
+   */
+  async _saveToCameraAlbum(fileUri, camera) {
+    try {
+      // Save to media library
+      const asset = await MediaLibrary.createAssetAsync(fileUri);
+      
+      // Create a custom album for camera recordings
+      const cameraName = typeof camera === 'string' 
+        ? camera
+        : (camera && camera.name) 
+            ? camera.name 
+            : (camera && camera.ip) 
+                ? camera.ip 
+                : 'unknown';
+                
+      // Make the camera name safe for file system
+      const safeCameraName = cameraName.replace(/[^a-z0-9]/gi, '_');
+        
+      const albumName = `Security Recordings - ${safeCameraName}`;
+      const albums = await MediaLibrary.getAlbumsAsync();
+      let album = albums.find(a => a.title === albumName);
+      
+      if (!album) {
+        album = await MediaLibrary.createAlbumAsync(albumName, asset, false);
+      } else {
+        await MediaLibrary.addAssetsToAlbumAsync([asset], album, false);
+      }
+      return albumName;
+    } catch (mediaError) {
+      console.error('Failed to save to media library:', mediaError);
+      return null;
+    }
+  }
+
   /**
    * Get a list of recordings for a camera
    * @param {Object} camera - Camera object
@@ -673,6 +869,25 @@ class RecordingService {
     }
   }
 
+  /**
+   * Find what a camera recorded at a given time, down to the frame
+   * @param {Object|string} camera - Camera object or identifier
+   * @param {number|Date} time - Time to look up
+   * @returns {Promise<Object|null>} Segment and frame position, or null
+   */
+  async findRecordingAt(camera, time) {
+    if (!camera || !NativeRecorder.isAvailable()) return null;
+    
+    const cameraId = typeof camera === 'string' ? camera : camera.ip;
+    const timestamp = time instanceof Date ? time.getTime() : time;
+    try {
+      return await NativeRecorder.findRecording(cameraId, timestamp);
+    } catch (error) {
+      console.error('Failed to look up recording:', error);
+      return null;
+    }
+  }
+
   /**
    * Delete a recording
    * @param {string} assetId - Asset ID to delete
@@ -104,6 +104,26 @@ const WifiSetupModal = ({ visible, onClose, onSave }) => {
     }
   };
 
+  // Keep the list fresh from the native scan stream while the modal is open
+  useEffect(() => {
+    if (!visible) return undefined;
+    return WifiScanner.startScanStream((streamedNetworks) => {
+      if (streamedNetworks && streamedNetworks.length > 0) {
+        applyNetworks(streamedNetworks);
+      }
+    }, { minEmitIntervalMs: 1000 });
+  }, [visible]);
+
+  const applyNetworks = (availableNetworks) => {
+    // Remove duplicates by SSID and sort by signal strength
+    const uniqueNetworks = [...new Map(availableNetworks.map(item => 
+      [item.SSID, item])).values()];
+    
+    uniqueNetworks.sort((a, b) => b.level - a.level);
+    
+    setNetworks(uniqueNetworks);
+  };
+
   const scanNetworks = async () => {
     if (Platform.OS !== 'android' && Platform.OS !== 'ios') return;
     
@@ -119,13 +139,7 @@ const WifiSetupModal = ({ visible, onClose, onSave }) => {
         return;
       }
       
-      // Remove duplicates by SSID and sort by signal strength
-      const uniqueNetworks = [...new Map(availableNetworks.map(item => 
-        [item.SSID, item])).values()];
-      
-      uniqueNetworks.sort((a, b) => b.level - a.level);
-      
-      setNetworks(uniqueNetworks);
+      applyNetworks(availableNetworks);
       setShowNetworks(true);
       setErrorMessage('');
     } catch (error) {